@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import material.Position;
+
+
+/**
+ * Measures the queries of AncestorIndex against walking up with parent(),
+ * which is what they cost without the index.
+ *
+ * <pre>
+ * java AncestorIndexBenchmark --sizes=10000,100000 --shapes=DEEP,RANDOM
+ *                             --warmup=3 --iterations=5 --out=results.json
+ * </pre>
+ *
+ * DEPTH, IS_ANCESTOR, LCA and KTH run the same random queries with the index
+ * and with the parent walk; IS_ANCESTOR also runs with the Euler tour labels
+ * LinkedTree keeps in its nodes through every change. BUILD is the
+ * cost of building the index, per node. The parent walk on the DEEP shape is
+ * O(n) per query, so it is only measured on a few queries.
+ */
+public class AncestorIndexBenchmark {
+
+    private static final long SEED = 42;
+
+    /** Number of queries timed with the index. */
+    private static final int QUERIES = 100000;
+
+    /** Number of queries timed with the parent walk. */
+    private static final int WALKS = 1000;
+
+    private static int depth(Tree<Integer> tree, Position<Integer> p) {
+        int d = 0;
+        for (Position<Integer> q = tree.parent(p); q != null; q = tree.parent(q)) {
+            d++;
+        }
+        return d;
+    }
+
+    private static Position<Integer> up(Tree<Integer> tree, Position<Integer> p, int k) {
+        for (; k > 0 && p != null; k--) {
+            p = tree.parent(p);
+        }
+        return p;
+    }
+
+    private static boolean isAncestor(Tree<Integer> tree, Position<Integer> v, Position<Integer> w) {
+        for (Position<Integer> q = w; q != null; q = tree.parent(q)) {
+            if (q == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Position<Integer> lca(Tree<Integer> tree, Position<Integer> v, Position<Integer> w) {
+        int dv = depth(tree, v);
+        int dw = depth(tree, w);
+        v = up(tree, v, dv - dw);
+        w = up(tree, w, dw - dv);
+        while (v != w) {
+            v = tree.parent(v);
+            w = tree.parent(w);
+        }
+        return v;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = BenchmarkRunner.options(args);
+        BenchmarkRunner runner = new BenchmarkRunner(options);
+        List<String> sizes = BenchmarkRunner.list(options, "sizes", "10000,100000");
+        List<String> shapes = BenchmarkRunner.list(options, "shapes", "DEEP,RANDOM");
+
+        for (String shapeName : shapes) {
+            TreeShape shape = TreeShape.valueOf(shapeName);
+            for (String size : sizes) {
+                int n = Integer.parseInt(size);
+                int[] parents = shape.parents(n, SEED);
+                List<Integer> elements = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    elements.add(i);
+                }
+                LinkedTree<Integer> tree = LinkedTree.build(elements, TreeTopology.fromParents(parents));
+                Position<Integer>[] positions = TreeShape.positions(n);
+                int next = 0;
+                for (Position<Integer> p : tree) {
+                    positions[next++] = p;
+                }
+                AncestorIndex<Integer> index = new AncestorIndex<>(tree);
+                Random random = new Random(SEED);
+                int[] v = new int[QUERIES];
+                int[] w = new int[QUERIES];
+                int[] k = new int[QUERIES];
+                for (int i = 0; i < QUERIES; i++) {
+                    v[i] = random.nextInt(n);
+                    w[i] = random.nextInt(n);
+                    k[i] = random.nextInt(index.depth(positions[w[i]]) + 1);
+                }
+
+                Map<String, String> params = BenchmarkRunner.params("shape", shape, "size", size);
+                runner.run("ancestor.build", params, () -> () -> {
+                    BenchmarkRunner.sink += new AncestorIndex<>(tree).depth(positions[n - 1]);
+                    return n;
+                });
+                runner.run("ancestor.is_ancestor", BenchmarkRunner.params("method", "labels", "shape", shape, "size", size), () -> () -> {
+                    long count = 0;
+                    for (int i = 0; i < QUERIES; i++) {
+                        count += tree.isAncestor(positions[v[i]], positions[w[i]]) ? 1 : 0;
+                    }
+                    BenchmarkRunner.sink += count;
+                    return QUERIES;
+                });
+                for (String method : new String[]{"index", "walk"}) {
+                    boolean indexed = method.equals("index");
+                    int queries = indexed ? QUERIES : WALKS;
+                    Map<String, String> p = BenchmarkRunner.params("method", method, "shape", shape, "size", size);
+                    runner.run("ancestor.depth", p, () -> () -> {
+                        long sum = 0;
+                        for (int i = 0; i < queries; i++) {
+                            sum += indexed ? index.depth(positions[w[i]]) : depth(tree, positions[w[i]]);
+                        }
+                        BenchmarkRunner.sink += sum;
+                        return queries;
+                    });
+                    runner.run("ancestor.is_ancestor", p, () -> () -> {
+                        long count = 0;
+                        for (int i = 0; i < queries; i++) {
+                            boolean a = indexed ? index.isAncestor(positions[v[i]], positions[w[i]])
+                                    : isAncestor(tree, positions[v[i]], positions[w[i]]);
+                            count += a ? 1 : 0;
+                        }
+                        BenchmarkRunner.sink += count;
+                        return queries;
+                    });
+                    runner.run("ancestor.lca", p, () -> () -> {
+                        long sum = 0;
+                        for (int i = 0; i < queries; i++) {
+                            Position<Integer> l = indexed ? index.lca(positions[v[i]], positions[w[i]])
+                                    : lca(tree, positions[v[i]], positions[w[i]]);
+                            sum += l.getElement();
+                        }
+                        BenchmarkRunner.sink += sum;
+                        return queries;
+                    });
+                    runner.run("ancestor.kth", p, () -> () -> {
+                        long sum = 0;
+                        for (int i = 0; i < queries; i++) {
+                            Position<Integer> a = indexed ? index.kthAncestor(positions[w[i]], k[i])
+                                    : up(tree, positions[w[i]], k[i]);
+                            sum += a.getElement();
+                        }
+                        BenchmarkRunner.sink += sum;
+                        return queries;
+                    });
+                }
+            }
+        }
+        runner.writeJson(options);
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import material.Position;
+
+
+/**
+ * Measures build-and-discard workloads, where many short-lived trees are
+ * filled with add(e, p) and thrown away, with and without an LCRSTree.Arena.
+ *
+ * <pre>
+ * java ArenaBenchmark --sizes=100,10000 --shapes=RANDOM,KARY --impls=LinkedTree,LCRSTree,ArrayTree
+ *                     --warmup=3 --iterations=5 --out=results.json
+ * </pre>
+ *
+ * Every operation is one node added; a round builds a tree and then drops it,
+ * or clears it when its nodes come from an arena (the "LCRSTree+arena" case).
+ * Besides the time, the bytes allocated per node are printed, read from the
+ * allocation counter of the thread, which is what drives the young
+ * collections. The elements are boxed beforehand, so they are not counted.
+ */
+public class ArenaBenchmark {
+
+    private static final long SEED = 42;
+
+    /** Number of nodes added per measured sample. */
+    private static final int NODES = 1000000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Fills an empty tree following the given parent array.
+     */
+    private static void fill(NAryTree<Integer> tree, Integer[] elements, int[] parents, Position<Integer>[] positions) {
+        positions[0] = tree.addRoot(elements[0]);
+        for (int i = 1; i < parents.length; i++) {
+            positions[i] = tree.add(elements[i], positions[parents[i]]);
+        }
+    }
+
+    /**
+     * Builds and discards trees until NODES nodes were added, and returns the
+     * number of nodes added.
+     */
+    private static long rounds(Supplier<NAryTree<Integer>> factory, boolean clear, Integer[] elements,
+                               int[] parents, Position<Integer>[] positions) {
+        int rounds = Math.max(1, NODES / parents.length);
+        for (int r = 0; r < rounds; r++) {
+            NAryTree<Integer> tree = factory.get();
+            fill(tree, elements, parents, positions);
+            BenchmarkRunner.sink += tree.subtreeSize(tree.root());
+            if (clear) {
+                ((LCRSTree<Integer>) tree).clear();
+            }
+        }
+        return (long) rounds * parents.length;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = BenchmarkRunner.options(args);
+        BenchmarkRunner runner = new BenchmarkRunner(options);
+        List<String> sizes = BenchmarkRunner.list(options, "sizes", "100,10000");
+        List<String> shapes = BenchmarkRunner.list(options, "shapes", "RANDOM,KARY");
+        List<String> impls = new ArrayList<>(BenchmarkRunner.list(options, "impls", "LinkedTree,LCRSTree,ArrayTree"));
+        impls.add("LCRSTree+arena");
+
+        for (String shapeName : shapes) {
+            TreeShape shape = TreeShape.valueOf(shapeName);
+            for (String size : sizes) {
+                int n = Integer.parseInt(size);
+                int[] parents = shape.parents(n, SEED);
+                Integer[] elements = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    elements[i] = i;
+                }
+                Position<Integer>[] positions = TreeShape.positions(n);
+                for (String name : impls) {
+                    boolean arena = name.equals("LCRSTree+arena");
+                    Supplier<NAryTree<Integer>> factory;
+                    if (arena) {
+                        LCRSTree.Arena shared = new LCRSTree.Arena(n);
+                        factory = () -> new LCRSTree<>(shared);
+                    } else {
+                        TreeImplementation implementation = TreeImplementation.all().get(name);
+                        factory = implementation::newTree;
+                    }
+                    Map<String, String> params = BenchmarkRunner.params("impl", name, "shape", shape, "size", size);
+                    runner.run("arena.build_discard", params,
+                            () -> () -> rounds(factory, arena, elements, parents, positions));
+
+                    long threadId = Thread.currentThread().getId();
+                    long before = THREADS.getThreadAllocatedBytes(threadId);
+                    long nodes = rounds(factory, arena, elements, parents, positions);
+                    long allocated = THREADS.getThreadAllocatedBytes(threadId) - before;
+                    System.out.println(String.format("%-28s %-60s %14.2f bytes/op",
+                            "arena.allocation", params, (double) allocated / nodes));
+                }
+            }
+        }
+        runner.writeJson(options);
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Minimal benchmark harness shared by every benchmark of the project. Each
+ * trial is run a number of warmup iterations and then measured; the results
+ * are printed and can be exported as JSON to compare releases.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * One benchmark case. prepare() builds the untimed state and returns the
+     * timed part, which returns how many operations it performed.
+     */
+    public interface Trial {
+        LongSupplier prepare();
+    }
+
+    /**
+     * Measured values of one benchmark case, in nanoseconds per operation.
+     */
+    public static class Result {
+        private final String benchmark;
+        private final Map<String, String> params;
+        private final double[] samples;
+        private final long operations;
+
+        public Result(String benchmark, Map<String, String> params, double[] samples, long operations) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.samples = samples;
+            this.operations = operations;
+        }
+
+        public double mean() {
+            double sum = 0;
+            for (double sample : samples) {
+                sum += sample;
+            }
+            return sum / samples.length;
+        }
+
+        public double min() {
+            return Arrays.stream(samples).min().orElse(Double.NaN);
+        }
+
+        public double stdev() {
+            double mean = mean();
+            double sum = 0;
+            for (double sample : samples) {
+                sum += (sample - mean) * (sample - mean);
+            }
+            return samples.length > 1 ? Math.sqrt(sum / (samples.length - 1)) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-28s %-60s %14.2f ns/op  (min %.2f, sd %.2f)",
+                    benchmark, params, mean(), min(), stdev());
+        }
+    }
+
+    /** Written to by the benchmarks so that the JIT cannot drop their results. */
+    public static volatile long sink;
+
+    private final int warmup;
+    private final int iterations;
+    private final List<Result> results = new ArrayList<>();
+
+    public BenchmarkRunner(int warmup, int iterations) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Builds a runner from the --warmup and --iterations options.
+     */
+    public BenchmarkRunner(Map<String, String> options) {
+        this(Integer.parseInt(options.getOrDefault("warmup", "3")),
+                Integer.parseInt(options.getOrDefault("iterations", "5")));
+    }
+
+    /**
+     * Runs a trial and records its result.
+     *
+     * @param benchmark name of the benchmark
+     * @param params    parameters of this case, in the order they are reported
+     * @param trial     the case to measure
+     * @return the recorded result
+     */
+    public Result run(String benchmark, Map<String, String> params, Trial trial) {
+        for (int i = 0; i < warmup; i++) {
+            sink += trial.prepare().getAsLong();
+        }
+        double[] samples = new double[iterations];
+        long operations = 0;
+        for (int i = 0; i < iterations; i++) {
+            LongSupplier task = trial.prepare();
+            long start = System.nanoTime();
+            operations = task.getAsLong();
+            long elapsed = System.nanoTime() - start;
+            samples[i] = (double) elapsed / Math.max(1, operations);
+        }
+        Result result = new Result(benchmark, new LinkedHashMap<>(params), samples, operations);
+        results.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    public List<Result> results() {
+        return results;
+    }
+
+    /**
+     * Exports every recorded result as a JSON array.
+     */
+    public void writeJson(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                out.write("  {\"benchmark\": " + quote(r.benchmark) + ", \"params\": {");
+                int j = 0;
+                for (Map.Entry<String, String> param : r.params.entrySet()) {
+                    out.write((j++ > 0 ? ", " : "") + quote(param.getKey()) + ": " + quote(param.getValue()));
+                }
+                out.write("}, \"unit\": \"ns/op\", \"operationsPerIteration\": " + r.operations);
+                out.write(", \"mean\": " + r.mean() + ", \"min\": " + r.min() + ", \"stdev\": " + r.stdev());
+                out.write(", \"samples\": " + Arrays.toString(r.samples) + "}");
+                out.write(i < results.size() - 1 ? ",\n" : "\n");
+            }
+            out.write("]\n");
+        }
+    }
+
+    /**
+     * Writes the results to the file given with --out, if any.
+     */
+    public void writeJson(Map<String, String> options) throws IOException {
+        String out = options.get("out");
+        if (out != null) {
+            writeJson(Paths.get(out));
+            System.out.println("Results written to " + out);
+        }
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Parses command line options of the form --key=value.
+     */
+    public static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Returns a comma separated option as a list, or the default values.
+     */
+    public static List<String> list(Map<String, String> options, String key, String defaults) {
+        return Arrays.asList(options.getOrDefault(key, defaults).split(","));
+    }
+
+    /**
+     * Shorthand to build an ordered parameter map from key/value pairs.
+     */
+    public static Map<String, String> params(Object... keyValues) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            params.put(String.valueOf(keyValues[i]), String.valueOf(keyValues[i + 1]));
+        }
+        return params;
+    }
+}
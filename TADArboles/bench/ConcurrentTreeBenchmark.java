@@ -0,0 +1,179 @@
+import material.Position;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * Contention benchmark: several threads mix reads and adds on one tree, either
+ * each under its own branch (DISJOINT) or all under the same few nodes
+ * (SHARED). ConcurrentTree is compared with a LinkedTree behind a global
+ * read-write lock, which is what callers had to do before.
+ *
+ * <pre>
+ * java ConcurrentTreeBenchmark --threads=1,2,4,8,16,32,64 --modes=DISJOINT,SHARED
+ *                              --reads=50,90 --ops=20000 --warmup=3 --iterations=5
+ * </pre>
+ *
+ * --ops is the number of operations per thread; --reads the percentage of them
+ * that list the children of a node. Results are ns per operation over all
+ * threads, so perfect scaling divides them by the number of threads.
+ */
+public class ConcurrentTreeBenchmark {
+
+    private static final int BRANCHES = 64;
+    private static final int SHARED_PARENTS = 4;
+
+    /**
+     * The operations of the workload on one kind of tree.
+     */
+    interface Target {
+        Position<Integer> root();
+
+        Position<Integer> add(int e, Position<Integer> p);
+
+        long read(Position<Integer> p);
+    }
+
+    static Target concurrent() {
+        ConcurrentTree<Integer> tree = new ConcurrentTree<>();
+        tree.addRoot(0);
+        return new Target() {
+            @Override
+            public Position<Integer> root() {
+                return tree.root();
+            }
+
+            @Override
+            public Position<Integer> add(int e, Position<Integer> p) {
+                return tree.add(e, p);
+            }
+
+            @Override
+            public long read(Position<Integer> p) {
+                long sum = 0;
+                for (Position<Integer> c : tree.children(p)) {
+                    sum += c.getElement();
+                }
+                return sum;
+            }
+        };
+    }
+
+    static Target locked() {
+        LinkedTree<Integer> tree = new LinkedTree<>();
+        tree.addRoot(0);
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        return new Target() {
+            @Override
+            public Position<Integer> root() {
+                return tree.root();
+            }
+
+            @Override
+            public Position<Integer> add(int e, Position<Integer> p) {
+                lock.writeLock().lock();
+                try {
+                    return tree.add(e, p);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public long read(Position<Integer> p) {
+                lock.readLock().lock();
+                try {
+                    long sum = 0;
+                    for (Position<Integer> c : tree.children(p)) {
+                        sum += c.getElement();
+                    }
+                    return sum;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    static long run(Target target, int threads, boolean shared, int reads, int ops) {
+        Position<Integer> root = target.root();
+        List<Position<Integer>> branches = new ArrayList<>();
+        for (int i = 0; i < BRANCHES; i++) {
+            branches.add(target.add(i, root));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(id);
+                List<Position<Integer>> mine = new ArrayList<>();
+                mine.add(shared ? branches.get(id % SHARED_PARENTS) : branches.get(id % BRANCHES));
+                long sum = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < ops; i++) {
+                    Position<Integer> p = shared
+                            ? branches.get(random.nextInt(SHARED_PARENTS))
+                            : mine.get(random.nextInt(mine.size()));
+                    if (random.nextInt(100) < reads) {
+                        sum += target.read(p);
+                    } else {
+                        Position<Integer> added = target.add(i, p);
+                        if (!shared && mine.size() < 1024) {
+                            mine.add(added);
+                        }
+                    }
+                }
+                BenchmarkRunner.sink += sum;
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return (long) threads * ops;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = BenchmarkRunner.options(args);
+        BenchmarkRunner runner = new BenchmarkRunner(options);
+        List<String> threads = BenchmarkRunner.list(options, "threads", "1,2,4,8,16,32,64");
+        List<String> modes = BenchmarkRunner.list(options, "modes", "DISJOINT,SHARED");
+        List<String> reads = BenchmarkRunner.list(options, "reads", "50,90");
+        List<String> impls = BenchmarkRunner.list(options, "impls", "ConcurrentTree,LockedLinkedTree");
+        int ops = Integer.parseInt(options.getOrDefault("ops", "20000"));
+
+        for (String mode : modes) {
+            boolean shared = mode.equals("SHARED");
+            for (String read : reads) {
+                for (String thread : threads) {
+                    for (String impl : impls) {
+                        runner.run("concurrent.mixed",
+                                BenchmarkRunner.params("impl", impl, "mode", mode, "reads", read, "threads", thread),
+                                () -> {
+                                    Target target = impl.equals("ConcurrentTree") ? concurrent() : locked();
+                                    return () -> run(target, Integer.parseInt(thread), shared, Integer.parseInt(read), ops);
+                                });
+                    }
+                }
+            }
+        }
+        runner.writeJson(options);
+    }
+}
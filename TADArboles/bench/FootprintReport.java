@@ -0,0 +1,128 @@
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import material.Position;
+
+
+/**
+ * Estimates the memory taken per node by every NAryTree implementation, so the
+ * representation of a tree can be chosen by its memory as well as its speed.
+ *
+ * <pre>
+ * java FootprintReport --sizes=100000 --shapes=RANDOM,KARY,WIDE --iterations=3
+ * </pre>
+ *
+ * Every tree is filled with add(e, p) from elements boxed beforehand, so the
+ * figures are the structure alone, without the elements, except for the trees
+ * that store the elements unboxed. LinkedTree is also measured after compact()
+ * and when made by its bulk builder. The estimate is the growth of the used
+ * heap plus the direct buffers, where OffHeapTree keeps its nodes, after a few
+ * System.gc() calls, so it is noisy for small trees; the median of the
+ * iterations is reported. DEEP is left out by default because PersistentTree
+ * copies the whole path on every add.
+ */
+public class FootprintReport {
+
+    private static final long SEED = 42;
+
+    private static final BufferPoolMXBean DIRECT = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)
+            .stream().filter(pool -> pool.getName().equals("direct")).findFirst().orElse(null);
+
+    /**
+     * Returns the used heap plus the memory of the direct buffers. The buffers
+     * dropped by a tree are only released by the collector, hence the gc calls.
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long direct = (DIRECT == null) ? 0 : DIRECT.getMemoryUsed();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory() + direct);
+        }
+        return used;
+    }
+
+    private static NAryTree<Integer> fill(NAryTree<Integer> tree, Integer[] elements, int[] parents) {
+        Position<Integer>[] positions = TreeShape.positions(parents.length);
+        positions[0] = tree.addRoot(elements[0]);
+        for (int i = 1; i < parents.length; i++) {
+            positions[i] = tree.add(elements[i], positions[parents[i]]);
+        }
+        return tree;
+    }
+
+    private interface Filler {
+        NAryTree<Integer> fill();
+    }
+
+    /**
+     * Returns the median number of bytes per node taken by the trees the filler
+     * makes.
+     */
+    private static double bytesPerNode(Filler filler, int n, int iterations) {
+        double[] samples = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long before = usedMemory();
+            NAryTree<Integer> tree = filler.fill();
+            long after = usedMemory();
+            samples[i] = (double) (after - before) / n;
+            BenchmarkRunner.sink += tree.isEmpty() ? 0 : 1;
+            if (tree instanceof OffHeapTree) {
+                ((OffHeapTree<Integer>) tree).close();
+            }
+        }
+        Arrays.sort(samples);
+        return samples[iterations / 2];
+    }
+
+    private static void report(String implementation, String method, TreeShape shape, int n, double bytes) {
+        Map<String, String> params = BenchmarkRunner.params("impl", implementation, "method", method,
+                "shape", shape, "size", n);
+        System.out.println(String.format("%-28s %-60s %10.1f bytes/node", "footprint", params, bytes));
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = BenchmarkRunner.options(args);
+        List<String> sizes = BenchmarkRunner.list(options, "sizes", "100000");
+        List<String> shapes = BenchmarkRunner.list(options, "shapes", "RANDOM,KARY,WIDE");
+        List<String> impls = BenchmarkRunner.list(options, "impls",
+                String.join(",", TreeImplementation.all().keySet()));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "3"));
+
+        for (String shapeName : shapes) {
+            TreeShape shape = TreeShape.valueOf(shapeName);
+            for (String size : sizes) {
+                int n = Integer.parseInt(size);
+                int[] parents = shape.parents(n, SEED);
+                Integer[] elements = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    elements[i] = i;
+                }
+                for (String name : impls) {
+                    TreeImplementation implementation = TreeImplementation.all().get(name);
+                    report(name, "add", shape, n, bytesPerNode(
+                            () -> fill(implementation.newTree(), elements, parents), n, iterations));
+                }
+                if (impls.contains("LinkedTree")) {
+                    report("LinkedTree", "add+compact", shape, n, bytesPerNode(() -> {
+                        LinkedTree<Integer> tree = (LinkedTree<Integer>) fill(new LinkedTree<>(), elements, parents);
+                        tree.compact();
+                        return tree;
+                    }, n, iterations));
+                    TreeTopology topology = TreeTopology.fromParents(parents);
+                    report("LinkedTree", "build", shape, n, bytesPerNode(
+                            () -> LinkedTree.build(Arrays.asList(elements), topology), n, iterations));
+                }
+            }
+        }
+    }
+}
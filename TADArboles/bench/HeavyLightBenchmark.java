@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import material.Position;
+
+
+/**
+ * Measures the path queries and updates of HeavyLightDecomposition against
+ * walking up with parent(), which is what they cost without it.
+ *
+ * <pre>
+ * java HeavyLightBenchmark --sizes=10000,100000 --shapes=DEEP_RANDOM,RANDOM
+ *                          --warmup=3 --iterations=5 --out=results.json
+ * </pre>
+ *
+ * ROOT_SUM sums the values from a random node up to the root, PATH_SUM between
+ * two random nodes, and PATH_ADD adds to the values between two random nodes;
+ * the walk keeps its values in an array indexed by element. BUILD is the cost
+ * of building the decomposition, per node. The parent walk on the deep shapes
+ * is O(n) per query, so it is only measured on a few queries.
+ */
+public class HeavyLightBenchmark {
+
+    private static final long SEED = 42;
+
+    /** Number of queries timed with the decomposition. */
+    private static final int QUERIES = 100000;
+
+    /** Number of queries timed with the parent walk. */
+    private static final int WALKS = 1000;
+
+    private static int depth(Tree<Integer> tree, Position<Integer> p) {
+        int d = 0;
+        for (Position<Integer> q = tree.parent(p); q != null; q = tree.parent(q)) {
+            d++;
+        }
+        return d;
+    }
+
+    /**
+     * Sums the values on the path from v to w, adding delta to them first.
+     */
+    private static long walk(Tree<Integer> tree, long[] values, Position<Integer> v, Position<Integer> w, long delta) {
+        int dv = depth(tree, v);
+        int dw = depth(tree, w);
+        long sum = 0;
+        for (; dv > dw; dv--) {
+            sum += values[v.getElement()] += delta;
+            v = tree.parent(v);
+        }
+        for (; dw > dv; dw--) {
+            sum += values[w.getElement()] += delta;
+            w = tree.parent(w);
+        }
+        while (v != w) {
+            sum += values[v.getElement()] += delta;
+            sum += values[w.getElement()] += delta;
+            v = tree.parent(v);
+            w = tree.parent(w);
+        }
+        return sum + (values[v.getElement()] += delta);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = BenchmarkRunner.options(args);
+        BenchmarkRunner runner = new BenchmarkRunner(options);
+        List<String> sizes = BenchmarkRunner.list(options, "sizes", "10000,100000");
+        List<String> shapes = BenchmarkRunner.list(options, "shapes", "DEEP_RANDOM,RANDOM");
+
+        for (String shapeName : shapes) {
+            TreeShape shape = TreeShape.valueOf(shapeName);
+            for (String size : sizes) {
+                int n = Integer.parseInt(size);
+                int[] parents = shape.parents(n, SEED);
+                List<Integer> elements = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    elements.add(i);
+                }
+                LinkedTree<Integer> tree = LinkedTree.build(elements, TreeTopology.fromParents(parents));
+                Position<Integer>[] positions = TreeShape.positions(n);
+                for (Position<Integer> p : tree) {
+                    positions[p.getElement()] = p;
+                }
+                HeavyLightDecomposition<Integer> hld = new HeavyLightDecomposition<>(tree, x -> x);
+                long[] values = new long[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = i;
+                }
+                Random random = new Random(SEED);
+                int[] v = new int[QUERIES];
+                int[] w = new int[QUERIES];
+                for (int i = 0; i < QUERIES; i++) {
+                    v[i] = random.nextInt(n);
+                    w[i] = random.nextInt(n);
+                }
+                Position<Integer> root = tree.root();
+
+                Map<String, String> params = BenchmarkRunner.params("shape", shape, "size", size);
+                runner.run("heavy_light.build", params, () -> () -> {
+                    BenchmarkRunner.sink += new HeavyLightDecomposition<>(tree, x -> x).value(root);
+                    return n;
+                });
+                for (String method : new String[]{"hld", "walk"}) {
+                    boolean decomposed = method.equals("hld");
+                    int queries = decomposed ? QUERIES : WALKS;
+                    Map<String, String> p = BenchmarkRunner.params("method", method, "shape", shape, "size", size);
+                    runner.run("heavy_light.root_sum", p, () -> () -> {
+                        long sum = 0;
+                        for (int i = 0; i < queries; i++) {
+                            sum += decomposed ? hld.pathSum(root, positions[w[i]])
+                                    : walk(tree, values, root, positions[w[i]], 0);
+                        }
+                        BenchmarkRunner.sink += sum;
+                        return queries;
+                    });
+                    runner.run("heavy_light.path_sum", p, () -> () -> {
+                        long sum = 0;
+                        for (int i = 0; i < queries; i++) {
+                            sum += decomposed ? hld.pathSum(positions[v[i]], positions[w[i]])
+                                    : walk(tree, values, positions[v[i]], positions[w[i]], 0);
+                        }
+                        BenchmarkRunner.sink += sum;
+                        return queries;
+                    });
+                    runner.run("heavy_light.path_add", p, () -> () -> {
+                        for (int i = 0; i < queries; i++) {
+                            if (decomposed) {
+                                hld.pathAdd(positions[v[i]], positions[w[i]], 1);
+                            } else {
+                                walk(tree, values, positions[v[i]], positions[w[i]], 1);
+                            }
+                        }
+                        return queries;
+                    });
+                }
+            }
+        }
+        runner.writeJson(options);
+    }
+}
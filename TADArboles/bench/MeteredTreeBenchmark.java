@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import material.Position;
+
+
+/**
+ * Measures the overhead of MeteredTree over the tree it decorates.
+ *
+ * <pre>
+ * java MeteredTreeBenchmark --sizes=10000,100000 --shapes=RANDOM --impls=LinkedTree,LCRSTree,ArrayTree
+ *                           --warmup=3 --iterations=5 --rounds=3 --out=results.json
+ * </pre>
+ *
+ * ADD fills an empty tree, ITERATE walks it with iterator() and CHILDREN asks
+ * for the children of every node and goes through them. Each runs on the plain
+ * tree ("plain"), on a MeteredTree with its default sampling, one call in 64
+ * ("metered"), and on one that samples every call ("metered_all"). The
+ * three take turns for the given number of rounds, so that a collection or a
+ * recompilation in one run does not decide the figures, and after each
+ * operation the overhead of the metered runs over the plain one is printed,
+ * from the fastest sample of every method. The implementations share the
+ * call sites of the benchmark, so run one per JVM (--impls=LCRSTree) to see
+ * the overhead an application that uses a single one would see. The figures
+ * for ITERATE and CHILDREN move by tens of percent from run to run, far more
+ * than the 5% a decorator left on in production could be allowed.
+ */
+public class MeteredTreeBenchmark {
+
+    private static final long SEED = 42;
+
+    private interface Workload {
+        long run(NAryTree<Integer> tree);
+    }
+
+    private static Position<Integer>[] fill(NAryTree<Integer> tree, Integer[] elements, int[] parents) {
+        Position<Integer>[] positions = TreeShape.positions(parents.length);
+        positions[0] = tree.addRoot(elements[0]);
+        for (int i = 1; i < parents.length; i++) {
+            positions[i] = tree.add(elements[i], positions[parents[i]]);
+        }
+        return positions;
+    }
+
+    private static NAryTree<Integer> wrap(NAryTree<Integer> tree, String method) {
+        switch (method) {
+            case "metered":
+                return new MeteredTree<>(tree);
+            case "metered_all":
+                return new MeteredTree<>(tree, 1);
+            default:
+                return tree;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = BenchmarkRunner.options(args);
+        BenchmarkRunner runner = new BenchmarkRunner(options);
+        List<String> sizes = BenchmarkRunner.list(options, "sizes", "10000,100000");
+        List<String> shapes = BenchmarkRunner.list(options, "shapes", "RANDOM");
+        List<String> impls = BenchmarkRunner.list(options, "impls", "LinkedTree,LCRSTree,ArrayTree");
+        String[] methods = {"plain", "metered", "metered_all"};
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "3"));
+
+        for (String shapeName : shapes) {
+            TreeShape shape = TreeShape.valueOf(shapeName);
+            for (String size : sizes) {
+                int n = Integer.parseInt(size);
+                int[] parents = shape.parents(n, SEED);
+                Integer[] elements = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    elements[i] = i;
+                }
+                for (String name : impls) {
+                    TreeImplementation implementation = TreeImplementation.all().get(name);
+                    // ITERATE and CHILDREN decorate the same tree, so that the
+                    // three methods walk the same nodes in memory.
+                    NAryTree<Integer> shared = implementation.newTree();
+                    Position<Integer>[] positions = fill(shared, elements, parents);
+                    String[] ops = {"add", "iterate", "children"};
+                    for (int op = 0; op < ops.length; op++) {
+                        String opName = ops[op];
+                        double[] best = new double[methods.length];
+                        Arrays.fill(best, Double.POSITIVE_INFINITY);
+                        for (int round = 0; round < rounds; round++) {
+                            for (int m = 0; m < methods.length; m++) {
+                                String method = methods[m];
+                                Map<String, String> params = BenchmarkRunner.params("impl", name, "method", method,
+                                        "shape", shape, "size", size);
+                                BenchmarkRunner.Result result;
+                                if (opName.equals("add")) {
+                                    result = runner.run("metered.add", params, () -> {
+                                        NAryTree<Integer> tree = wrap(implementation.newTree(), method);
+                                        return () -> {
+                                            fill(tree, elements, parents);
+                                            return n;
+                                        };
+                                    });
+                                } else {
+                                    NAryTree<Integer> tree = wrap(shared, method);
+                                    boolean iterate = opName.equals("iterate");
+                                    result = runner.run("metered." + opName, params, () -> () -> {
+                                        long sum = 0;
+                                        if (iterate) {
+                                            for (Position<Integer> p : tree) {
+                                                sum += p.getElement();
+                                            }
+                                        } else {
+                                            for (Position<Integer> p : positions) {
+                                                for (Position<Integer> c : tree.children(p)) {
+                                                    sum += c.getElement();
+                                                }
+                                            }
+                                        }
+                                        BenchmarkRunner.sink += sum;
+                                        return n;
+                                    });
+                                }
+                                best[m] = Math.min(best[m], result.min());
+                            }
+                        }
+                        for (int m = 1; m < methods.length; m++) {
+                            Map<String, String> params = BenchmarkRunner.params("impl", name, "method", methods[m],
+                                    "shape", shape, "size", size);
+                            System.out.println(String.format("%-28s %-60s %+14.1f %%",
+                                    "metered.overhead", params, 100 * (best[m] / best[0] - 1)));
+                        }
+                    }
+                }
+            }
+        }
+        runner.writeJson(options);
+    }
+}
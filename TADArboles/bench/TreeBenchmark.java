@@ -0,0 +1,347 @@
+import material.Position;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Compares the NAryTree implementations on every operation of the interface,
+ * for several tree shapes and sizes.
+ *
+ * <pre>
+ * java TreeBenchmark --sizes=1000,10000,100000 --shapes=WIDE,DEEP,RANDOM,KARY
+ *                    --impls=LinkedTree,LCRSTree --ops=ADD,PREORDEN
+ *                    --warmup=3 --iterations=5 --out=results.json
+ * </pre>
+ *
+ * Every option is optional. Sizes up to 10^7 need a large heap (-Xmx8g).
+ * ADD appends every node as the last child of its parent and PREPEND inserts it
+ * as the first one; on the WIDE shape they show the cost of reaching either end
+ * of a long list of children. BUILD loads the same tree with the bulk builder,
+ * from the parent array. REDUCE sums every element with the parallel
+ * reduce, to compare against the single-threaded PREORDEN scan. SNAPSHOT takes
+ * a point-in-time copy of the tree and then changes one element, as a writer
+ * serving readers does: PersistentTree uses snapshot(), the others a deep copy.
+ */
+public class TreeBenchmark {
+
+    /** Maximum number of operations timed by the non-scanning benchmarks. */
+    private static final int BATCH = 10000;
+
+    /** Number of copies timed by SNAPSHOT. */
+    private static final int SNAPSHOTS = 100;
+
+    private static final long SEED = 42;
+
+    /**
+     * A tree built with a given shape, plus the untimed data the operations need.
+     */
+    static class Fixture implements AutoCloseable {
+        final TreeImplementation implementation;
+        final int[] parents;
+        final NAryTree<Integer> tree;
+        final Position<Integer>[] positions;
+        final int[] childCount;
+        final Random random = new Random(SEED);
+        /**
+         * Trees built beforehand by the operations that need more than one, or
+         * built by the timed part, kept to be closed.
+         */
+        final List<NAryTree<Integer>> others = new ArrayList<>();
+        /** Nodes picked beforehand by the operations that need them. */
+        int[] targets;
+
+        /**
+         * @param built whether to build the tree of the given shape, or leave
+         *              it empty for the operations that time building it.
+         */
+        Fixture(TreeImplementation implementation, int[] parents, boolean built) {
+            this.implementation = implementation;
+            this.parents = parents;
+            this.tree = implementation.newTree();
+            this.positions = built ? TreeShape.build(tree, parents) : null;
+            this.childCount = new int[parents.length];
+            for (int i = 1; i < parents.length; i++) {
+                childCount[parents[i]]++;
+            }
+        }
+
+        int batch() {
+            return Math.min(BATCH, positions.length);
+        }
+
+        int randomNode() {
+            return random.nextInt(positions.length);
+        }
+
+        /**
+         * Releases the trees that hold memory outside the heap, which the
+         * garbage collector would not reclaim in time between samples.
+         */
+        @Override
+        public void close() {
+            close(tree);
+            for (NAryTree<Integer> other : others) {
+                close(other);
+            }
+            others.clear();
+        }
+
+        private static void close(NAryTree<Integer> tree) {
+            if (tree instanceof OffHeapTree) {
+                ((OffHeapTree<Integer>) tree).close();
+            }
+        }
+    }
+
+    /**
+     * The benchmarked operations. Only what run() does is timed.
+     */
+    enum Operation {
+        ADD {
+            @Override
+            Fixture fixture(TreeImplementation implementation, int[] parents) {
+                return new Fixture(implementation, parents, false);
+            }
+
+            @Override
+            long run(Fixture f) {
+                NAryTree<Integer> tree = f.implementation.newTree();
+                f.others.add(tree);
+                TreeShape.build(tree, f.parents);
+                return f.parents.length;
+            }
+        },
+        BUILD {
+            @Override
+            Fixture fixture(TreeImplementation implementation, int[] parents) {
+                return new Fixture(implementation, parents, false);
+            }
+
+            @Override
+            long run(Fixture f) {
+                NAryTree<Integer> tree = f.implementation.build(TreeTopology.fromParents(f.parents));
+                f.others.add(tree);
+                BenchmarkRunner.sink += tree.isEmpty() ? 0 : 1;
+                return f.parents.length;
+            }
+        },
+        PREPEND {
+            @Override
+            Fixture fixture(TreeImplementation implementation, int[] parents) {
+                return new Fixture(implementation, parents, false);
+            }
+
+            @Override
+            long run(Fixture f) {
+                NAryTree<Integer> tree = f.implementation.newTree();
+                f.others.add(tree);
+                Position<Integer>[] positions = TreeShape.positions(f.parents.length);
+                positions[0] = tree.addRoot(0);
+                for (int i = 1; i < f.parents.length; i++) {
+                    positions[i] = tree.add(i, positions[f.parents[i]], 0);
+                }
+                return f.parents.length;
+            }
+        },
+        ADD_AT {
+            @Override
+            long run(Fixture f) {
+                int batch = f.batch();
+                for (int i = 0; i < batch; i++) {
+                    int node = f.randomNode();
+                    f.tree.add(-i, f.positions[node], f.childCount[node] / 2);
+                    f.childCount[node]++;
+                }
+                return batch;
+            }
+        },
+        REMOVE {
+            @Override
+            long run(Fixture f) {
+                int removed = 0;
+                for (int i = f.positions.length - 1; i > 0 && removed < f.batch(); i--) {
+                    if (f.childCount[i] == 0) {
+                        f.tree.remove(f.positions[i]);
+                        removed++;
+                    }
+                }
+                return removed;
+            }
+        },
+        SUBTREE {
+            @Override
+            long run(Fixture f) {
+                int batch = f.batch();
+                for (int i = 0; i < batch; i++) {
+                    NAryTree<Integer> subTree = f.tree.subTree(f.positions[f.randomNode()]);
+                    f.others.add(subTree);
+                    BenchmarkRunner.sink += subTree.isEmpty() ? 0 : 1;
+                }
+                return batch;
+            }
+        },
+        ATTACH {
+            @Override
+            Fixture fixture(TreeImplementation implementation, int[] parents) {
+                Fixture f = new Fixture(implementation, parents, true);
+                int batch = f.batch();
+                int[] smallParents = TreeShape.KARY.parents(16, SEED);
+                f.targets = new int[batch];
+                for (int i = 0; i < batch; i++) {
+                    NAryTree<Integer> small = implementation.newTree();
+                    TreeShape.build(small, smallParents);
+                    f.others.add(small);
+                    f.targets[i] = f.randomNode();
+                }
+                return f;
+            }
+
+            @Override
+            long run(Fixture f) {
+                int batch = f.targets.length;
+                for (int i = 0; i < batch; i++) {
+                    f.tree.attach(f.positions[f.targets[i]], f.others.get(i));
+                }
+                return batch;
+            }
+        },
+        CHILDREN {
+            @Override
+            long run(Fixture f) {
+                int batch = f.batch();
+                long visited = 0;
+                for (int i = 0; i < batch; i++) {
+                    for (Position<Integer> child : f.tree.children(f.positions[f.randomNode()])) {
+                        visited += child.getElement();
+                    }
+                }
+                BenchmarkRunner.sink += visited;
+                return batch;
+            }
+        },
+        ITERATOR {
+            @Override
+            long run(Fixture f) {
+                return scan(f.tree.iterator());
+            }
+        },
+        PREORDEN {
+            @Override
+            long run(Fixture f) {
+                return scan(f.implementation.iteratorPreOrden(f.tree));
+            }
+        },
+        POSTORDEN {
+            @Override
+            long run(Fixture f) {
+                return scan(f.implementation.iteratorPostOrden(f.tree));
+            }
+        },
+        SNAPSHOT {
+            @Override
+            long run(Fixture f) {
+                int batch = Math.min(SNAPSHOTS, f.positions.length);
+                for (int i = 0; i < batch; i++) {
+                    NAryTree<Integer> copy = (f.tree instanceof PersistentTree)
+                            ? ((PersistentTree<Integer>) f.tree).snapshot()
+                            : copy(f.implementation, f.tree);
+                    f.others.add(copy);
+                    BenchmarkRunner.sink += copy.isEmpty() ? 0 : 1;
+                    f.tree.replace(f.positions[f.randomNode()], -i);
+                }
+                return batch;
+            }
+        },
+        REDUCE {
+            @Override
+            long run(Fixture f) {
+                BenchmarkRunner.sink += f.tree.reduce(0L, (acc, e) -> acc + e, Long::sum);
+                return f.positions.length;
+            }
+        };
+
+        /**
+         * Builds the untimed state of a run: by default, the tree of the given
+         * shape.
+         */
+        Fixture fixture(TreeImplementation implementation, int[] parents) {
+            return new Fixture(implementation, parents, true);
+        }
+
+        /**
+         * The timed part; returns the number of operations performed.
+         */
+        abstract long run(Fixture f);
+
+        /**
+         * Copies a tree node by node, through the NAryTree interface.
+         */
+        static NAryTree<Integer> copy(TreeImplementation implementation, NAryTree<Integer> tree) {
+            NAryTree<Integer> copy = implementation.newTree();
+            Map<Position<Integer>, Position<Integer>> copies = new HashMap<>();
+            for (Position<Integer> p : tree) {
+                Position<Integer> parent = tree.parent(p);
+                copies.put(p, (parent == null) ? copy.addRoot(p.getElement()) : copy.add(p.getElement(), copies.get(parent)));
+            }
+            return copy;
+        }
+
+        static long scan(Iterator<Position<Integer>> it) {
+            long count = 0;
+            long sum = 0;
+            while (it.hasNext()) {
+                sum += it.next().getElement();
+                count++;
+            }
+            BenchmarkRunner.sink += sum;
+            return count;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = BenchmarkRunner.options(args);
+        BenchmarkRunner runner = new BenchmarkRunner(options);
+        List<String> sizes = BenchmarkRunner.list(options, "sizes", "1000,10000,100000");
+        List<String> shapes = BenchmarkRunner.list(options, "shapes", "WIDE,DEEP,RANDOM,KARY");
+        List<String> impls = BenchmarkRunner.list(options, "impls", String.join(",", TreeImplementation.all().keySet()));
+        List<String> ops = BenchmarkRunner.list(options, "ops", "ADD,BUILD,PREPEND,ADD_AT,REMOVE,SUBTREE,ATTACH,CHILDREN,ITERATOR,PREORDEN,POSTORDEN,REDUCE,SNAPSHOT");
+
+        for (String op : ops) {
+            Operation operation = Operation.valueOf(op);
+            for (String shapeName : shapes) {
+                TreeShape shape = TreeShape.valueOf(shapeName);
+                for (String size : sizes) {
+                    int[] parents = shape.parents(Integer.parseInt(size), SEED);
+                    for (String impl : impls) {
+                        TreeImplementation implementation = TreeImplementation.all().get(impl);
+                        if (implementation == null) {
+                            throw new IllegalArgumentException("Unknown implementation " + impl);
+                        }
+                        // The fixture of a sample is closed when the next one is
+                        // prepared, and the last one after the run, so closing is
+                        // never timed.
+                        Fixture[] last = new Fixture[1];
+                        runner.run("tree." + operation.name().toLowerCase(),
+                                BenchmarkRunner.params("impl", impl, "shape", shape, "size", size),
+                                () -> {
+                                    if (last[0] != null) {
+                                        last[0].close();
+                                    }
+                                    Fixture f = operation.fixture(implementation, parents);
+                                    last[0] = f;
+                                    return () -> operation.run(f);
+                                });
+                        last[0].close();
+                    }
+                }
+            }
+        }
+        runner.writeJson(options);
+    }
+}
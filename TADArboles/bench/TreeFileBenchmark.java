@@ -0,0 +1,91 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import material.Position;
+
+
+/**
+ * Measures saving and loading trees with TreeFile against rebuilding them node
+ * by node, which is what a restart costs without a saved file.
+ *
+ * <pre>
+ * java TreeFileBenchmark --sizes=100000,1000000 --shapes=RANDOM,DEEP
+ *                        --warmup=3 --iterations=5 --out=results.json
+ * </pre>
+ *
+ * REBUILD adds every node to a LinkedTree, WRITE saves it, READ_LINKED and
+ * READ_LCRS load the file into a tree and MAPPED scans the file in place
+ * through MappedTree. All of them report ns per node.
+ */
+public class TreeFileBenchmark {
+
+    private static final long SEED = 42;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = BenchmarkRunner.options(args);
+        BenchmarkRunner runner = new BenchmarkRunner(options);
+        List<String> sizes = BenchmarkRunner.list(options, "sizes", "100000,1000000");
+        List<String> shapes = BenchmarkRunner.list(options, "shapes", "RANDOM,KARY");
+        Path path = Files.createTempFile("tree", ".bin");
+        try {
+            for (String shapeName : shapes) {
+                TreeShape shape = TreeShape.valueOf(shapeName);
+                for (String size : sizes) {
+                    int[] parents = shape.parents(Integer.parseInt(size), SEED);
+                    Map<String, String> params = BenchmarkRunner.params("shape", shape, "size", size);
+                    LinkedTree<Integer> tree = new LinkedTree<>();
+                    TreeShape.build(tree, parents);
+                    TreeFile.write(tree, ElementCodec.INTEGER, path);
+
+                    runner.run("file.rebuild", params, () -> () -> {
+                        TreeShape.build(new LinkedTree<>(), parents);
+                        return parents.length;
+                    });
+                    runner.run("file.write", params, () -> () -> {
+                        try {
+                            TreeFile.write(tree, ElementCodec.INTEGER, path);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return parents.length;
+                    });
+                    runner.run("file.read_linked", params, () -> () -> {
+                        try {
+                            return TreeFile.readLinkedTree(path, ElementCodec.INTEGER).size();
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    runner.run("file.read_lcrs", params, () -> () -> {
+                        try {
+                            return TreeFile.readLCRSTree(path, ElementCodec.INTEGER).size();
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    runner.run("file.mapped", params, () -> () -> {
+                        try {
+                            MappedTree<Integer> mapped = TreeFile.map(path, ElementCodec.INTEGER);
+                            long sum = 0;
+                            Iterator<Position<Integer>> it = mapped.iteratorPreOrden();
+                            while (it.hasNext()) {
+                                sum += it.next().getElement();
+                            }
+                            BenchmarkRunner.sink += sum;
+                            return mapped.size();
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                }
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+        runner.writeJson(options);
+    }
+}
@@ -0,0 +1,118 @@
+import material.Position;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+/**
+ * The NAryTree implementations known by the benchmarks, together with the way
+ * to reach their pre-order and post-order iterators, which are not part of the
+ * NAryTree interface, and to their bulk builders.
+ */
+public final class TreeImplementation {
+
+    private static final Map<String, TreeImplementation> IMPLEMENTATIONS = new LinkedHashMap<>();
+
+    static {
+        register(new TreeImplementation("LinkedTree", LinkedTree::new,
+                t -> LinkedTree.build(numbers(t.size()), t),
+                t -> ((LinkedTree<Integer>) t).iteratorPreOrden(),
+                t -> ((LinkedTree<Integer>) t).iteratorPostOrden()));
+        register(new TreeImplementation("LCRSTree", LCRSTree::new,
+                t -> LCRSTree.build(numbers(t.size()), t),
+                t -> ((LCRSTree<Integer>) t).iteratorPreOrden(),
+                t -> ((LCRSTree<Integer>) t).iteratorPostOrden()));
+        register(new TreeImplementation("ArrayTree", ArrayTree::new,
+                t -> ArrayTree.build(numbers(t.size()), t),
+                t -> ((ArrayTree<Integer>) t).iteratorPreOrden(),
+                t -> ((ArrayTree<Integer>) t).iteratorPostOrden()));
+        register(new TreeImplementation("IntArrayTree", IntArrayTree::new,
+                t -> {
+                    int[] elements = new int[t.size()];
+                    for (int i = 0; i < elements.length; i++) {
+                        elements[i] = i;
+                    }
+                    return IntArrayTree.build(elements, t);
+                },
+                t -> ((IntArrayTree) t).iteratorPreOrden(),
+                t -> ((IntArrayTree) t).iteratorPostOrden()));
+        register(new TreeImplementation("OffHeapTree", () -> new OffHeapTree<>(FixedWidthCodec.INTEGER),
+                t -> OffHeapTree.build(FixedWidthCodec.INTEGER, numbers(t.size()), t),
+                t -> ((OffHeapTree<Integer>) t).iteratorPreOrden(),
+                t -> ((OffHeapTree<Integer>) t).iteratorPostOrden()));
+        register(new TreeImplementation("PersistentTree", PersistentTree::new,
+                t -> PersistentTree.build(numbers(t.size()), t),
+                t -> ((PersistentTree<Integer>) t).iteratorPreOrden(),
+                t -> ((PersistentTree<Integer>) t).iteratorPostOrden()));
+    }
+
+    private final String name;
+    private final Supplier<NAryTree<Integer>> factory;
+    private final Function<TreeTopology, NAryTree<Integer>> builder;
+    private final Function<NAryTree<Integer>, Iterator<Position<Integer>>> preOrden;
+    private final Function<NAryTree<Integer>, Iterator<Position<Integer>>> postOrden;
+
+    public TreeImplementation(String name, Supplier<NAryTree<Integer>> factory,
+                              Function<TreeTopology, NAryTree<Integer>> builder,
+                              Function<NAryTree<Integer>, Iterator<Position<Integer>>> preOrden,
+                              Function<NAryTree<Integer>, Iterator<Position<Integer>>> postOrden) {
+        this.name = name;
+        this.factory = factory;
+        this.builder = builder;
+        this.preOrden = preOrden;
+        this.postOrden = postOrden;
+    }
+
+    public static void register(TreeImplementation implementation) {
+        IMPLEMENTATIONS.put(implementation.name, implementation);
+    }
+
+    public static Map<String, TreeImplementation> all() {
+        return IMPLEMENTATIONS;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public NAryTree<Integer> newTree() {
+        return factory.get();
+    }
+
+    /**
+     * Builds a tree with the bulk builder of the implementation; node i holds i.
+     */
+    public NAryTree<Integer> build(TreeTopology topology) {
+        return builder.apply(topology);
+    }
+
+    /**
+     * The numbers 0..n-1, boxed on demand like the elements given to add.
+     */
+    private static List<Integer> numbers(int n) {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int i) {
+                return i;
+            }
+
+            @Override
+            public int size() {
+                return n;
+            }
+        };
+    }
+
+    public Iterator<Position<Integer>> iteratorPreOrden(NAryTree<Integer> tree) {
+        return preOrden.apply(tree);
+    }
+
+    public Iterator<Position<Integer>> iteratorPostOrden(NAryTree<Integer> tree) {
+        return postOrden.apply(tree);
+    }
+}
@@ -0,0 +1,101 @@
+import material.Position;
+
+import java.util.Random;
+
+
+/**
+ * Shapes of the trees used by the benchmarks. Every shape numbers its nodes
+ * 0..n-1 in insertion order and only says who the parent of each node is, so
+ * any NAryTree implementation can be built with addRoot and add(e, p).
+ */
+public enum TreeShape {
+
+    /** A root with n-1 leaves hanging from it. */
+    WIDE {
+        @Override
+        int parent(int i, Random random) {
+            return 0;
+        }
+    },
+
+    /** A single chain n nodes deep. */
+    DEEP {
+        @Override
+        int parent(int i, Random random) {
+            return i - 1;
+        }
+    },
+
+    /** Every node picks a uniformly random parent among the previous nodes. */
+    RANDOM {
+        @Override
+        int parent(int i, Random random) {
+            return random.nextInt(i);
+        }
+    },
+
+    /**
+     * Every node picks a random parent among the three previous nodes, so the
+     * tree branches but is still about n/2 deep.
+     */
+    DEEP_RANDOM {
+        @Override
+        int parent(int i, Random random) {
+            return Math.max(0, i - 1 - random.nextInt(3));
+        }
+    },
+
+    /** A complete tree where every internal node has ARITY children. */
+    KARY {
+        @Override
+        int parent(int i, Random random) {
+            return (i - 1) / ARITY;
+        }
+    };
+
+    public static final int ARITY = 4;
+
+    /**
+     * Returns the parent of node i, which is always a node smaller than i.
+     */
+    abstract int parent(int i, Random random);
+
+    /**
+     * Returns the parent of every node; the entry of the root is -1.
+     *
+     * @param n    number of nodes
+     * @param seed seed used by the random shape
+     * @return the parent array
+     */
+    public int[] parents(int n, long seed) {
+        Random random = new Random(seed);
+        int[] parents = new int[n];
+        parents[0] = -1;
+        for (int i = 1; i < n; i++) {
+            parents[i] = parent(i, random);
+        }
+        return parents;
+    }
+
+    /**
+     * Fills an empty tree following the given parent array.
+     *
+     * @return the position of every node, indexed by node number
+     */
+    public static Position<Integer>[] build(NAryTree<Integer> tree, int[] parents) {
+        Position<Integer>[] positions = positions(parents.length);
+        positions[0] = tree.addRoot(0);
+        for (int i = 1; i < parents.length; i++) {
+            positions[i] = tree.add(i, positions[parents[i]]);
+        }
+        return positions;
+    }
+
+    /**
+     * Returns an empty array for the positions of n nodes.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> Position<E>[] positions(int n) {
+        return (Position<E>[]) new Position<?>[n];
+    }
+}
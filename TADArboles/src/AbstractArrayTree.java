@@ -0,0 +1,678 @@
+import material.Position;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+
+/**
+ * Base class of the NAryTree implementations that keep the nodes in parallel
+ * arrays (struct of arrays). A node is just an index into the parent, firstChild,
+ * lastChild, nextSibling, subtree size and stamp columns (six ints per node), so
+ * the tree holds no object per node and a traversal reads a few contiguous int
+ * arrays. Subclasses only decide how the element column is stored.
+ *
+ * The positions handed out are small handles made of an index and a stamp. Slots
+ * freed by remove are reused by later insertions; the stamp changes when a slot
+ * is freed, so a handle to a removed node is rejected instead of aliasing the new one.
+ *
+ * subTree returns a copy of the subtree and attach copies the attached tree,
+ * because the nodes of two array trees live in different arrays.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public abstract class AbstractArrayTree<E> implements NAryTree<E> {
+
+    protected static final int NONE = -1;
+    private static final int FREE = -2;
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    private class ArrayPosition implements Position<E> {
+        private final int index;
+        private final int stamp;
+
+        public ArrayPosition(int index) {
+            this.index = index;
+            this.stamp = stamps[index];
+        }
+
+        @Override
+        public E getElement() {
+            return element(checkIndex(this));
+        }
+
+        private AbstractArrayTree<E> tree() {
+            return AbstractArrayTree.this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AbstractArrayTree.ArrayPosition)) {
+                return false;
+            }
+            AbstractArrayTree<?>.ArrayPosition other = (AbstractArrayTree<?>.ArrayPosition) o;
+            return other.tree() == tree() && other.index == index && other.stamp == stamp;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * index + stamp;
+        }
+    }
+
+    private int[] parent;
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] nextSibling;
+    private int[] subtreeSizes;
+    private int[] stamps;
+
+    private int root = NONE;
+    private int size;
+    /** Number of slots ever used; slots from here on have never been allocated. */
+    private int used;
+    /** First free slot, the free slots are chained through nextSibling. */
+    private int freeHead = NONE;
+
+    protected AbstractArrayTree(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        subtreeSizes = new int[capacity];
+        stamps = new int[capacity];
+    }
+
+    /**
+     * Returns the number of slots the columns can hold without growing.
+     */
+    protected int capacity() {
+        return parent.length;
+    }
+
+    /**
+     * Returns the element of slot i, boxed if the subclass stores primitives.
+     */
+    protected abstract E element(int i);
+
+    protected abstract void setElement(int i, E e);
+
+    /**
+     * Rejects an element the element column cannot hold. It is called before the
+     * tree changes, so a failed add leaves no node behind. By default every
+     * element, null included, is accepted.
+     */
+    protected void checkElement(E e) {
+    }
+
+    protected abstract void swapElements(int i, int j);
+
+    /**
+     * Copies the element of slot from of another tree of the same class into slot to.
+     */
+    protected abstract void copyElement(AbstractArrayTree<E> from, int fromIndex, int to);
+
+    /**
+     * Drops whatever the element column keeps alive for the slots in [from, to).
+     */
+    protected abstract void clearElements(int from, int to);
+
+    /**
+     * Resizes the element column to the given capacity.
+     */
+    protected abstract void resizeElements(int capacity);
+
+    /**
+     * Creates an empty tree of the same class, used by subTree.
+     */
+    protected abstract AbstractArrayTree<E> newTree(int initialCapacity);
+
+    private int checkIndex(ArrayPosition p) {
+        if (p.tree() != this || p.index >= used || parent[p.index] == FREE || stamps[p.index] != p.stamp) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return p.index;
+    }
+
+    /**
+     * Returns the slot of a position of this tree.
+     */
+    @SuppressWarnings("unchecked")
+    protected int checkPosition(Position<E> p) {
+        if (!(p instanceof AbstractArrayTree.ArrayPosition)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return checkIndex((ArrayPosition) p);
+    }
+
+    protected Position<E> position(int i) {
+        return (i == NONE) ? null : new ArrayPosition(i);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > parent.length) {
+            int newCapacity = Math.max(capacity, parent.length + (parent.length >> 1) + 1);
+            parent = Arrays.copyOf(parent, newCapacity);
+            firstChild = Arrays.copyOf(firstChild, newCapacity);
+            lastChild = Arrays.copyOf(lastChild, newCapacity);
+            nextSibling = Arrays.copyOf(nextSibling, newCapacity);
+            subtreeSizes = Arrays.copyOf(subtreeSizes, newCapacity);
+            stamps = Arrays.copyOf(stamps, newCapacity);
+            resizeElements(newCapacity);
+        }
+    }
+
+    /**
+     * Takes a slot from the free list, or a new one at the end of the columns.
+     * The caller is in charge of writing its element.
+     */
+    private int allocate(int parentIndex) {
+        int i;
+        if (freeHead != NONE) {
+            i = freeHead;
+            freeHead = nextSibling[i];
+        } else {
+            ensureCapacity(used + 1);
+            i = used++;
+        }
+        parent[i] = parentIndex;
+        firstChild[i] = NONE;
+        lastChild[i] = NONE;
+        nextSibling[i] = NONE;
+        subtreeSizes[i] = 1;
+        size++;
+        return i;
+    }
+
+    private void free(int i) {
+        parent[i] = FREE;
+        clearElements(i, i + 1);
+        stamps[i]++;
+        nextSibling[i] = freeHead;
+        freeHead = i;
+        size--;
+    }
+
+    private void appendChild(int parentIndex, int child) {
+        parent[child] = parentIndex;
+        nextSibling[child] = NONE;
+        if (firstChild[parentIndex] == NONE) {
+            firstChild[parentIndex] = child;
+        } else {
+            nextSibling[lastChild[parentIndex]] = child;
+        }
+        lastChild[parentIndex] = child;
+    }
+
+    /**
+     * Adds delta to the subtree size of node and of all its ancestors.
+     */
+    private void updateSubtreeSizes(int node, int delta) {
+        while (node != NONE) {
+            subtreeSizes[node] += delta;
+            node = parent[node];
+        }
+    }
+
+    /**
+     * Creates the root slot of an empty tree and returns it.
+     */
+    protected int insertRoot() {
+        if (!isEmpty()) {
+            throw new RuntimeException("The tree is not empty, it already has a root");
+        }
+        root = allocate(NONE);
+        return root;
+    }
+
+    /**
+     * Creates a slot as the last child of parentIndex and returns it.
+     */
+    protected int insertChild(int parentIndex) {
+        int child = allocate(parentIndex);
+        appendChild(parentIndex, child);
+        updateSubtreeSizes(parentIndex, 1);
+        return child;
+    }
+
+    /**
+     * Creates a slot as the n-th child of parentIndex and returns it.
+     */
+    protected int insertChild(int parentIndex, int n) {
+        if (n < 0) {
+            throw new RuntimeException("The position of the child is invalid");
+        }
+        int previous = NONE;
+        for (int i = 0; i < n; i++) {
+            int next = (previous == NONE) ? firstChild[parentIndex] : nextSibling[previous];
+            if (next == NONE) {
+                throw new RuntimeException("The position of the child is invalid");
+            }
+            previous = next;
+        }
+        int child = allocate(parentIndex);
+        if (previous == NONE) {
+            nextSibling[child] = firstChild[parentIndex];
+            firstChild[parentIndex] = child;
+        } else {
+            nextSibling[child] = nextSibling[previous];
+            nextSibling[previous] = child;
+        }
+        if (nextSibling[child] == NONE) {
+            lastChild[parentIndex] = child;
+        }
+        updateSubtreeSizes(parentIndex, 1);
+        return child;
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        checkElement(e);
+        int i = insertRoot();
+        setElement(i, e);
+        return position(i);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        checkElement(element);
+        int i = insertChild(checkPosition(p));
+        setElement(i, element);
+        return position(i);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        checkElement(element);
+        int i = insertChild(checkPosition(p), n);
+        setElement(i, element);
+        return position(i);
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        swapElements(checkPosition(p1), checkPosition(p2));
+    }
+
+    @Override
+    public E replace(Position<E> p, E e) {
+        int i = checkPosition(p);
+        checkElement(e);
+        E old = element(i);
+        setElement(i, e);
+        return old;
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        int node = checkPosition(p);
+        if (node == root) {
+            clear();
+            return;
+        }
+        int parentIndex = parent[node];
+        if (firstChild[parentIndex] == node) {
+            firstChild[parentIndex] = nextSibling[node];
+            if (lastChild[parentIndex] == node) {
+                lastChild[parentIndex] = NONE;
+            }
+        } else {
+            int previous = firstChild[parentIndex];
+            while (nextSibling[previous] != node) {
+                previous = nextSibling[previous];
+            }
+            nextSibling[previous] = nextSibling[node];
+            if (lastChild[parentIndex] == node) {
+                lastChild[parentIndex] = previous;
+            }
+        }
+        updateSubtreeSizes(parentIndex, -subtreeSizes[node]);
+        freeSubtree(node);
+    }
+
+    /**
+     * Frees every slot of an unlinked subtree. The walk is a stackless post-order,
+     * so each slot is freed once its children are, and its links are read before
+     * they are overwritten by the free list.
+     */
+    private void freeSubtree(int node) {
+        int current = firstLeaf(node);
+        while (current != NONE) {
+            int next;
+            if (current == node) {
+                next = NONE;
+            } else if (nextSibling[current] != NONE) {
+                next = firstLeaf(nextSibling[current]);
+            } else {
+                next = parent[current];
+            }
+            free(current);
+            current = next;
+        }
+    }
+
+    private int firstLeaf(int node) {
+        while (firstChild[node] != NONE) {
+            node = firstChild[node];
+        }
+        return node;
+    }
+
+    /**
+     * Loads the shape of a topology into an empty tree in one O(n) pass: node i
+     * of the topology takes slot i. The caller writes the elements afterwards.
+     */
+    protected void load(TreeTopology topology) {
+        if (!isEmpty()) {
+            throw new RuntimeException("The tree is not empty");
+        }
+        int n = topology.size();
+        clear();
+        ensureCapacity(n);
+        int[] sizes = topology.subtreeSizes();
+        for (int v = 0; v < n; v++) {
+            parent[v] = topology.parent(v);
+            int children = topology.childCount(v);
+            firstChild[v] = (children == 0) ? NONE : topology.child(v, 0);
+            lastChild[v] = (children == 0) ? NONE : topology.child(v, children - 1);
+            for (int c = 0; c < children; c++) {
+                nextSibling[topology.child(v, c)] = (c + 1 < children) ? topology.child(v, c + 1) : NONE;
+            }
+            subtreeSizes[v] = sizes[v];
+        }
+        if (n > 0) {
+            nextSibling[topology.root()] = NONE;
+        }
+        root = (n == 0) ? NONE : topology.root();
+        size = n;
+        used = n;
+    }
+
+    /**
+     * Removes every node. The columns keep their capacity for the next insertions.
+     */
+    public void clear() {
+        clearElements(0, used);
+        for (int i = 0; i < used; i++) {
+            stamps[i]++;
+        }
+        root = NONE;
+        size = 0;
+        used = 0;
+        freeHead = NONE;
+    }
+
+    /**
+     * Returns the next node of a pre-order walk restricted to the subtree of top.
+     */
+    private int nextPreOrden(int node, int top) {
+        if (firstChild[node] != NONE) {
+            return firstChild[node];
+        }
+        while (node != top && nextSibling[node] == NONE) {
+            node = parent[node];
+        }
+        return (node == top) ? NONE : nextSibling[node];
+    }
+
+    /**
+     * Copies the subtree rooted at source of tree from under the node target of
+     * this tree, or as the root if target is NONE. The copied nodes take their
+     * subtree sizes from the source, so only the ancestors of target are updated.
+     */
+    private void copySubtree(AbstractArrayTree<E> from, int source, int target) {
+        ensureCapacity(used + from.subtreeSizes[source]);
+        int copy;
+        if (target == NONE) {
+            copy = insertRoot();
+        } else {
+            copy = allocate(target);
+            appendChild(target, copy);
+            updateSubtreeSizes(target, from.subtreeSizes[source]);
+        }
+        copyElement(from, source, copy);
+        subtreeSizes[copy] = from.subtreeSizes[source];
+        int node = source;
+        int next = from.nextPreOrden(node, source);
+        while (next != NONE) {
+            while (node != from.parent[next]) {
+                node = from.parent[node];
+                copy = parent[copy];
+            }
+            int child = allocate(copy);
+            appendChild(copy, child);
+            copyElement(from, next, child);
+            subtreeSizes[child] = from.subtreeSizes[next];
+            node = next;
+            copy = child;
+            next = from.nextPreOrden(next, source);
+        }
+    }
+
+    /**
+     * Returns the number of nodes of the subtree rooted at v, kept up to date in
+     * its own column.
+     */
+    @Override
+    public int subtreeSize(Position<E> v) {
+        return subtreeSizes[checkPosition(v)];
+    }
+
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        int node = checkPosition(v);
+        AbstractArrayTree<E> tree = newTree(subtreeSizes[node]);
+        tree.copySubtree(this, node, NONE);
+        return tree;
+    }
+
+    private AbstractArrayTree<E> checkTree(NAryTree<E> t) {
+        if (t == null || t.getClass() != getClass()) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        return (AbstractArrayTree<E>) t;
+    }
+
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        int node = (p == null) ? root : checkPosition(p);
+        AbstractArrayTree<E> tree = checkTree(t);
+        if (tree.isEmpty()) {
+            return;
+        }
+        if (node == NONE) {
+            throw new RuntimeException("The tree is empty, there is no node to attach to");
+        }
+        copySubtree(tree, tree.root, node);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Position<E> root() {
+        return position(root);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        return position(parent[checkPosition(v)]);
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        int node = checkPosition(v);
+        return () -> positions(new PrimitiveIterator.OfInt() {
+            private int next = firstChild[node];
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int child = next;
+                next = nextSibling[child];
+                return child;
+            }
+        });
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        return firstChild[checkPosition(v)] != NONE;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        return firstChild[checkPosition(v)] == NONE;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        return checkPosition(v) == root;
+    }
+
+    /**
+     * Turns an iterator over slots into an iterator over positions.
+     */
+    protected Iterator<Position<E>> positions(PrimitiveIterator.OfInt indices) {
+        return new Iterator<Position<E>>() {
+            @Override
+            public boolean hasNext() {
+                return indices.hasNext();
+            }
+
+            @Override
+            public Position<E> next() {
+                return position(indices.nextInt());
+            }
+        };
+    }
+
+    /**
+     * Breadth-first walk over the slots. The queue is a ring buffer of ints that
+     * holds the first child of every pending group of siblings.
+     */
+    protected PrimitiveIterator.OfInt breadthFirstIndices() {
+        return new PrimitiveIterator.OfInt() {
+            private int[] queue = new int[16];
+            private int head;
+            private int count;
+            private int next = root;
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int node = next;
+                if (firstChild[node] != NONE) {
+                    if (count == queue.length) {
+                        int[] bigger = new int[queue.length * 2];
+                        for (int i = 0; i < count; i++) {
+                            bigger[i] = queue[(head + i) % queue.length];
+                        }
+                        queue = bigger;
+                        head = 0;
+                    }
+                    queue[(head + count++) % queue.length] = firstChild[node];
+                }
+                if (node != root && nextSibling[node] != NONE) {
+                    next = nextSibling[node];
+                } else if (count > 0) {
+                    next = queue[head];
+                    head = (head + 1) % queue.length;
+                    count--;
+                } else {
+                    next = NONE;
+                }
+                return node;
+            }
+        };
+    }
+
+    /**
+     * Stackless pre-order walk over the slots.
+     */
+    protected PrimitiveIterator.OfInt preOrdenIndices() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = root;
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int node = next;
+                next = nextPreOrden(node, root);
+                return node;
+            }
+        };
+    }
+
+    /**
+     * Stackless post-order walk over the slots.
+     */
+    protected PrimitiveIterator.OfInt postOrdenIndices() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = (root == NONE) ? NONE : firstLeaf(root);
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int node = next;
+                if (node == root) {
+                    next = NONE;
+                } else if (nextSibling[node] != NONE) {
+                    next = firstLeaf(nextSibling[node]);
+                } else {
+                    next = parent[node];
+                }
+                return node;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return positions(breadthFirstIndices());
+    }
+
+    public Iterator<Position<E>> iteratorPreOrden() {
+        return positions(preOrdenIndices());
+    }
+
+    public Iterator<Position<E>> iteratorPostOrden() {
+        return positions(postOrdenIndices());
+    }
+
+    public int size() {
+        return size;
+    }
+}
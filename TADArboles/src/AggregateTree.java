@@ -0,0 +1,216 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+
+/**
+ * A decorator that keeps, for every node, an aggregate of the elements of its
+ * subtree, so aggregate(p) is a lookup instead of a walk of the subtree.
+ *
+ * The aggregate is defined by a monoid: lift turns an element into a value,
+ * combine joins two values and must be associative, and identity is the value
+ * of an empty tree. The aggregate of a node is
+ * lift(element) combine agg(child 1) combine ... combine agg(child k), in
+ * preorder, so combine does not need to be commutative. Sums, counts, minimums
+ * and maximums are all monoids.
+ *
+ * Every change recomputes the aggregates on the path from the changed node to
+ * the root, and each of them combines the cached aggregates of its children:
+ * an update costs O(depth) combines for trees of bounded degree, O(sum of the
+ * degrees on the path) in general. add(e, p) appends to the aggregate of p
+ * instead of recomputing it, so the degree of p itself does not count. remove also drops the cached values of the
+ * removed subtree, and attach computes those of the attached one. Changes made
+ * to the decorated tree directly, or to the trees returned by subTree, are not
+ * seen; rebuild() computes every aggregate again after them.
+ *
+ * @param <E> the type of elements stored in the tree
+ * @param <A> the type of the aggregates
+ */
+public class AggregateTree<E, A> extends ForwardingNAryTree<E> {
+
+    private final Function<? super E, ? extends A> lift;
+    private final BinaryOperator<A> combine;
+    private final A identity;
+    private final Map<Position<E>, A> aggregates = new HashMap<>();
+
+    /**
+     * Decorates a tree, computing the aggregates of the nodes it already has.
+     *
+     * @param tree the tree to decorate.
+     * @param lift the value of a single element.
+     * @param combine joins two consecutive values; it must be associative.
+     * @param identity the value of an empty tree, neutral for combine.
+     */
+    public AggregateTree(NAryTree<E> tree, Function<? super E, ? extends A> lift, BinaryOperator<A> combine, A identity) {
+        super(tree);
+        this.lift = lift;
+        this.combine = combine;
+        this.identity = identity;
+        rebuild();
+    }
+
+    /**
+     * Computes every aggregate again, in O(n).
+     */
+    public void rebuild() {
+        aggregates.clear();
+        if (!isEmpty()) {
+            computeSubtree(root());
+        }
+    }
+
+    /**
+     * Returns the aggregate of the subtree rooted at p, in O(1).
+     */
+    public A aggregate(Position<E> p) {
+        A a = aggregates.get(p);
+        if (a == null && !aggregates.containsKey(p)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return a;
+    }
+
+    /**
+     * Returns the aggregate of the whole tree, or identity if it is empty.
+     */
+    public A aggregate() {
+        return isEmpty() ? identity : aggregate(root());
+    }
+
+    private A combineChildren(Position<E> p) {
+        A a = lift.apply(p.getElement());
+        for (Position<E> c : children(p)) {
+            a = combine.apply(a, aggregates.get(c));
+        }
+        return a;
+    }
+
+    /**
+     * Recomputes the aggregates of p and of all its ancestors.
+     */
+    private void refresh(Position<E> p) {
+        while (p != null) {
+            aggregates.put(p, combineChildren(p));
+            p = parent(p);
+        }
+    }
+
+    /**
+     * Computes the aggregates of the subtree rooted at p, children first,
+     * without recursion so that deep trees do not overflow the stack.
+     */
+    private void computeSubtree(Position<E> p) {
+        Deque<Position<E>> nodes = new ArrayDeque<>();
+        Deque<Iterator<? extends Position<E>>> pending = new ArrayDeque<>();
+        nodes.push(p);
+        pending.push(children(p).iterator());
+        while (!nodes.isEmpty()) {
+            if (pending.peek().hasNext()) {
+                Position<E> c = pending.peek().next();
+                nodes.push(c);
+                pending.push(children(c).iterator());
+            } else {
+                pending.pop();
+                Position<E> q = nodes.pop();
+                aggregates.put(q, combineChildren(q));
+            }
+        }
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        Position<E> p = super.addRoot(e);
+        aggregates.put(p, lift.apply(e));
+        return p;
+    }
+
+    /**
+     * Adds element as the last child of p. Its value goes at the end of the
+     * aggregate of p, so p is updated with a single combine and only the
+     * ancestors above it are recomputed: filling a node with k children costs
+     * O(k), not O(k^2).
+     */
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        Position<E> node = super.add(element, p);
+        A value = lift.apply(element);
+        aggregates.put(node, value);
+        aggregates.put(p, combine.apply(aggregates.get(p), value));
+        refresh(parent(p));
+        return node;
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        Position<E> node = super.add(element, p, n);
+        aggregates.put(node, lift.apply(element));
+        refresh(p);
+        return node;
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        super.swapElements(p1, p2);
+        refresh(p1);
+        refresh(p2);
+    }
+
+    @Override
+    public E replace(Position<E> p, E e) {
+        E old = super.replace(p, e);
+        refresh(p);
+        return old;
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        Position<E> parent = parent(p);
+        forgetSubtree(p);
+        super.remove(p);
+        refresh(parent);
+    }
+
+    @Override
+    public void removeChild(Position<E> p, int n) {
+        forgetSubtree(child(p, n));
+        super.removeChild(p, n);
+        refresh(p);
+    }
+
+    private void forgetSubtree(Position<E> p) {
+        Deque<Position<E>> pending = new ArrayDeque<>();
+        pending.push(p);
+        while (!pending.isEmpty()) {
+            Position<E> q = pending.pop();
+            aggregates.remove(q);
+            for (Position<E> c : children(q)) {
+                pending.push(c);
+            }
+        }
+    }
+
+    /**
+     * Attaches t as the last child of p and computes the aggregates of its
+     * nodes where they are after the attach, since the array trees copy them.
+     */
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        if (t.isEmpty()) {
+            return;
+        }
+        Position<E> parent = (p == null) ? root() : p;
+        super.attach(p, t);
+        Position<E> top = null;
+        for (Position<E> c : children(parent)) {
+            top = c;
+        }
+        computeSubtree(top);
+        refresh(parent);
+    }
+}
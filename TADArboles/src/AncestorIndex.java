@@ -0,0 +1,293 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * An index over the ancestors of the nodes of a tree, to answer depth,
+ * isAncestor, lca and kthAncestor without walking up with parent().
+ *
+ * Nodes are numbered in preorder when the index is built, so the subtree of a
+ * node v is the range [v, v + subtreeSize(v)) and isAncestor is a range check,
+ * O(1). For lca and kthAncestor every node keeps its 2^k-th ancestor for every
+ * k (binary lifting), which answers them in O(log n) and takes O(n log n)
+ * memory.
+ *
+ * The index is a picture of the tree when it was built and the tree does not
+ * tell it about changes, so they have to be reported:
+ * <ul>
+ * <li>replace and swapElements do not change the shape and need nothing.</li>
+ * <li>After remove, the answers about the nodes left are still right; the
+ * removed ones are forgotten with removed(), before the tree removes them.</li>
+ * <li>A new leaf is patched in with added(), in O(log n). Nodes added this way
+ * answer isAncestor in O(log n), with binary lifting.</li>
+ * <li>Anything else (attach, addRoot, changes to the tree of subTree) needs
+ * rebuild(), O(n log n).</li>
+ * </ul>
+ * When the tree is a ModCountTree, every call checks its count of changes
+ * against the changes reported, and throws if one went unreported. With other
+ * trees an unreported change is not detected and the answers may be wrong.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class AncestorIndex<E> {
+
+    private final Tree<E> tree;
+    /** The tree as a ModCountTree, or null if it does not count its changes. */
+    private final ModCountTree<E> counted;
+    /** Changes of counted seen so far. */
+    private long modifications;
+    /** Removals reported with removed() and not seen yet. */
+    private int announced;
+    private final Map<Position<E>, Integer> ids = new HashMap<>();
+    private Position<E>[] nodes;
+    private int[] depth;
+    /** End of the preorder range of every node numbered by the last build. */
+    private int[] end;
+    /** up[k][v] is the 2^k-th ancestor of v, or the root if v is not so deep. */
+    private int[][] up;
+    private int size;
+    /** Nodes below this id were numbered by the last build, in preorder. */
+    private int built;
+
+    /**
+     * Builds the index of a tree, in O(n log n).
+     *
+     * @param tree the tree to index.
+     */
+    public AncestorIndex(Tree<E> tree) {
+        this.tree = tree;
+        this.counted = (tree instanceof ModCountTree) ? (ModCountTree<E>) tree : null;
+        rebuild();
+    }
+
+    /**
+     * Takes in the changes of the tree made since the last call, which must be
+     * no more than the ones reported.
+     */
+    private void checkModifications() {
+        if (counted == null) {
+            return;
+        }
+        long unseen = counted.modifications() - modifications;
+        if (unseen < 0 || unseen > announced) {
+            throw new RuntimeException("The tree has changed since the index was built, rebuild it");
+        }
+        announced -= (int) unseen;
+        modifications += unseen;
+    }
+
+    /**
+     * Builds the index again from the current shape of the tree.
+     */
+    @SuppressWarnings("unchecked")
+    public void rebuild() {
+        if (counted != null) {
+            modifications = counted.modifications();
+            announced = 0;
+        }
+        ids.clear();
+        int n = tree.isEmpty() ? 0 : tree.subtreeSize(tree.root());
+        nodes = (Position<E>[]) new Position<?>[Math.max(n, 1)];
+        depth = new int[nodes.length];
+        end = new int[nodes.length];
+        int[] parent = new int[nodes.length];
+        int maxDepth = 0;
+        if (n > 0) {
+            Deque<Iterator<? extends Position<E>>> stack = new ArrayDeque<>();
+            int[] open = new int[16];
+            Position<E> p = tree.root();
+            int id = 0;
+            while (p != null) {
+                nodes[id] = p;
+                ids.put(p, id);
+                int d = stack.size();
+                depth[id] = d;
+                parent[id] = (d == 0) ? id : open[d - 1];
+                end[id] = id + tree.subtreeSize(p);
+                maxDepth = Math.max(maxDepth, d);
+                if (d == open.length) {
+                    open = Arrays.copyOf(open, open.length * 2);
+                }
+                open[d] = id++;
+                stack.push(tree.children(p).iterator());
+                p = null;
+                while (p == null && !stack.isEmpty()) {
+                    if (stack.peek().hasNext()) {
+                        p = stack.peek().next();
+                    } else {
+                        stack.pop();
+                    }
+                }
+            }
+        }
+        size = n;
+        built = n;
+        up = new int[levels(maxDepth)][];
+        up[0] = parent;
+        for (int k = 1; k < up.length; k++) {
+            int[] previous = up[k - 1];
+            int[] level = new int[nodes.length];
+            for (int v = 0; v < n; v++) {
+                level[v] = previous[previous[v]];
+            }
+            up[k] = level;
+        }
+    }
+
+    /**
+     * Number of levels of binary lifting needed to jump maxDepth nodes.
+     */
+    private static int levels(int maxDepth) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxDepth));
+    }
+
+    /**
+     * Patches a new leaf into the index, in O(log n). The leaf must have been
+     * added to the tree and its parent must be in the index.
+     *
+     * @param p the new leaf.
+     */
+    public void added(Position<E> p) {
+        announced++;
+        checkModifications();
+        if (tree.subtreeSize(p) != 1) {
+            throw new RuntimeException("Only leaves can be added to the index, rebuild it instead");
+        }
+        Position<E> parent = tree.parent(p);
+        if (parent == null) {
+            throw new RuntimeException("The root cannot be added to the index, rebuild it instead");
+        }
+        int father = id(parent);
+        int v = size;
+        if (v == nodes.length) {
+            int capacity = nodes.length * 2;
+            nodes = Arrays.copyOf(nodes, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            for (int k = 0; k < up.length; k++) {
+                up[k] = Arrays.copyOf(up[k], capacity);
+            }
+        }
+        depth[v] = depth[father] + 1;
+        if (levels(depth[v]) > up.length) {
+            // One more level, computed for the nodes already there.
+            int k = up.length;
+            up = Arrays.copyOf(up, k + 1);
+            int[] previous = up[k - 1];
+            up[k] = new int[nodes.length];
+            for (int w = 0; w < size; w++) {
+                up[k][w] = previous[previous[w]];
+            }
+        }
+        up[0][v] = father;
+        for (int k = 1; k < up.length; k++) {
+            up[k][v] = up[k - 1][up[k - 1][v]];
+        }
+        nodes[v] = p;
+        ids.put(p, v);
+        size++;
+    }
+
+    /**
+     * Forgets p and its descendants, which are about to be removed from the
+     * tree. The answers about the rest of the nodes do not change.
+     *
+     * @param p the root of the subtree that will be removed.
+     */
+    public void removed(Position<E> p) {
+        checkModifications();
+        announced++;
+        Deque<Position<E>> pending = new ArrayDeque<>();
+        pending.push(p);
+        while (!pending.isEmpty()) {
+            Position<E> q = pending.pop();
+            Integer v = ids.remove(q);
+            if (v != null) {
+                nodes[v] = null;
+            }
+            for (Position<E> child : tree.children(q)) {
+                pending.push(child);
+            }
+        }
+    }
+
+    private int id(Position<E> p) {
+        checkModifications();
+        Integer v = ids.get(p);
+        if (v == null) {
+            throw new RuntimeException("The position is not in the index");
+        }
+        return v;
+    }
+
+    /**
+     * Returns the number of nodes above p; the root is at depth 0. O(1).
+     */
+    public int depth(Position<E> p) {
+        return depth[id(p)];
+    }
+
+    /**
+     * Returns true if v is w or an ancestor of w.
+     */
+    public boolean isAncestor(Position<E> v, Position<E> w) {
+        int a = id(v);
+        int b = id(w);
+        if (a < built && b < built) {
+            return a <= b && b < end[a];
+        }
+        return depth[a] <= depth[b] && ancestor(b, depth[b] - depth[a]) == a;
+    }
+
+    /**
+     * Returns the ancestor of p k levels above it: p itself for k = 0, its
+     * parent for k = 1, and null if p is not that deep. O(log n).
+     */
+    public Position<E> kthAncestor(Position<E> p, int k) {
+        int v = id(p);
+        if (k < 0) {
+            throw new RuntimeException("The number of levels cannot be negative");
+        }
+        return (k > depth[v]) ? null : nodes[ancestor(v, k)];
+    }
+
+    /**
+     * Returns the lowest common ancestor of v and w: the deepest node that is
+     * an ancestor of both, each node counting as an ancestor of itself.
+     * O(log n).
+     */
+    public Position<E> lca(Position<E> v, Position<E> w) {
+        int a = id(v);
+        int b = id(w);
+        if (depth[a] < depth[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        a = ancestor(a, depth[a] - depth[b]);
+        if (a == b) {
+            return nodes[a];
+        }
+        for (int k = up.length - 1; k >= 0; k--) {
+            if (up[k][a] != up[k][b]) {
+                a = up[k][a];
+                b = up[k][b];
+            }
+        }
+        return nodes[up[0][a]];
+    }
+
+    private int ancestor(int v, int k) {
+        for (int level = 0; k > 0; level++, k >>>= 1) {
+            if ((k & 1) != 0) {
+                v = up[level][v];
+            }
+        }
+        return v;
+    }
+}
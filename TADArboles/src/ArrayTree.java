@@ -0,0 +1,83 @@
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * An implementation of the NAryTree interface that keeps the nodes in parallel
+ * arrays (struct of arrays), see AbstractArrayTree. The elements are kept in an
+ * Object column next to the topology columns.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class ArrayTree<E> extends AbstractArrayTree<E> {
+
+    private Object[] elements;
+
+    public ArrayTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ArrayTree(int initialCapacity) {
+        super(initialCapacity);
+        elements = new Object[capacity()];
+    }
+
+    /**
+     * Builds a tree in one O(n) pass, see AbstractArrayTree.load. Node i of the
+     * topology gets elements.get(i).
+     *
+     * @param elements the element of every node.
+     * @param topology the shape of the tree.
+     * @return the new tree.
+     */
+    public static <E> ArrayTree<E> build(List<? extends E> elements, TreeTopology topology) {
+        int n = topology.size();
+        if (elements.size() != n) {
+            throw new RuntimeException("The tree has " + n + " nodes but " + elements.size() + " elements");
+        }
+        ArrayTree<E> tree = new ArrayTree<>(n);
+        tree.load(topology);
+        for (int i = 0; i < n; i++) {
+            tree.elements[i] = elements.get(i);
+        }
+        return tree;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected E element(int i) {
+        return (E) elements[i];
+    }
+
+    @Override
+    protected void setElement(int i, E e) {
+        elements[i] = e;
+    }
+
+    @Override
+    protected void swapElements(int i, int j) {
+        Object aux = elements[i];
+        elements[i] = elements[j];
+        elements[j] = aux;
+    }
+
+    @Override
+    protected void copyElement(AbstractArrayTree<E> from, int fromIndex, int to) {
+        elements[to] = ((ArrayTree<E>) from).elements[fromIndex];
+    }
+
+    @Override
+    protected void clearElements(int from, int to) {
+        Arrays.fill(elements, from, to, null);
+    }
+
+    @Override
+    protected void resizeElements(int capacity) {
+        elements = Arrays.copyOf(elements, capacity);
+    }
+
+    @Override
+    protected AbstractArrayTree<E> newTree(int initialCapacity) {
+        return new ArrayTree<>(initialCapacity);
+    }
+}
@@ -0,0 +1,483 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * A thread-safe implementation of the NAryTree interface.
+ *
+ * Reads never lock. Every node keeps its children in an array that is copied
+ * on every change and published through a volatile field, so parent, children,
+ * isLeaf and the traversals see a consistent list of children for every node
+ * they visit, although a traversal that runs during writes may see some of
+ * them and miss others (it is weakly consistent, like the iterators of
+ * java.util.concurrent).
+ *
+ * Writes lock only what they change. add, replace and swapElements take the
+ * lock of a stripe chosen by the node they modify, so adds under different
+ * parents run in parallel, and share the structure lock with each other. remove
+ * and attach move whole subtrees, so they take the structure lock exclusively;
+ * that keeps the subtree sizes, which adds update with atomic increments on
+ * the way to the root, exact.
+ *
+ * The price of lock-free reads is that an add copies the children array of its
+ * parent, which is O(k) on a node with k children, so filling a node with k
+ * children one add at a time costs O(k^2) in total. The tree suits shallow
+ * fan-outs; wide nodes are better built elsewhere and attached in one go.
+ *
+ * subTree returns a copy, taken while no subtree is being moved, and attach
+ * copies the attached tree, which may be of any class and is left untouched.
+ *
+ * @param <E> the type of element stored in the tree
+ */
+public class ConcurrentTree<E> implements NAryTree<E> {
+
+    private static final int STRIPES = 64;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Node> SUBTREE_SIZE =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "subtreeSize");
+
+    private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+
+    private static class Node<T> implements Position<T> {
+        private volatile T element;
+        private volatile Node<T> parent;
+        private volatile Node<T>[] children;
+        private volatile int subtreeSize;
+        private final Object tree;
+        private final int stripe = ThreadLocalRandom.current().nextInt();
+
+        public Node(Object tree, T element, Node<T> parent) {
+            this.tree = tree;
+            this.element = element;
+            this.parent = parent;
+            this.children = nodes(0);
+            this.subtreeSize = 1;
+        }
+
+        @Override
+        public T getElement() {
+            return element;
+        }
+    }
+
+    /**
+     * Returns an array for n children; every childless node shares the empty one.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] nodes(int n) {
+        return (Node<T>[]) ((n == 0) ? NO_CHILDREN : new Node<?>[n]);
+    }
+
+    private volatile Node<E> root;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+
+    public ConcurrentTree() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private ReentrantLock lock(Node<E> node) {
+        return locks[node.stripe & (STRIPES - 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<E> checkPosition(Position<E> p) {
+        if (!(p instanceof Node) || ((Node<E>) p).tree != this) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return (Node<E>) p;
+    }
+
+    /**
+     * Checks that a node still hangs from the root. Only called while the
+     * structure lock is held, so no subtree can move during the walk.
+     */
+    private Node<E> checkAttached(Position<E> p) {
+        Node<E> node = checkPosition(p);
+        Node<E> top = node;
+        while (top.parent != null) {
+            top = top.parent;
+        }
+        if (top != root) {
+            throw new RuntimeException("The position is invalid, it has been removed");
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void updateSubtreeSizes(Node<E> node, int delta) {
+        while (node != null) {
+            SUBTREE_SIZE.getAndAdd(node, delta);
+            node = node.parent;
+        }
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        structure.writeLock().lock();
+        try {
+            if (root != null) {
+                throw new RuntimeException("The tree is not empty, it already has a root");
+            }
+            root = new Node<>(this, e, null);
+            return root;
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        return insert(element, p, -1);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        if (n < 0) {
+            throw new RuntimeException("The position of the child is invalid");
+        }
+        return insert(element, p, n);
+    }
+
+    /**
+     * Adds a node as the n-th child of p, or as the last one if n is -1.
+     */
+    private Position<E> insert(E element, Position<E> p, int n) {
+        structure.readLock().lock();
+        try {
+            Node<E> parent = checkAttached(p);
+            Node<E> node = new Node<>(this, element, parent);
+            ReentrantLock lock = lock(parent);
+            lock.lock();
+            try {
+                Node<E>[] children = parent.children;
+                int index = (n < 0) ? children.length : n;
+                if (index > children.length) {
+                    throw new RuntimeException("The position of the child is invalid");
+                }
+                Node<E>[] copy = Arrays.copyOf(children, children.length + 1);
+                System.arraycopy(children, index, copy, index + 1, children.length - index);
+                copy[index] = node;
+                parent.children = copy;
+            } finally {
+                lock.unlock();
+            }
+            updateSubtreeSizes(parent, 1);
+            return node;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        structure.readLock().lock();
+        try {
+            Node<E> node1 = checkAttached(p1);
+            Node<E> node2 = checkAttached(p2);
+            // Both stripes are taken in index order, so two swaps cannot deadlock.
+            ReentrantLock first = lock(node1);
+            ReentrantLock second = lock(node2);
+            if ((node1.stripe & (STRIPES - 1)) > (node2.stripe & (STRIPES - 1))) {
+                first = lock(node2);
+                second = lock(node1);
+            }
+            first.lock();
+            second.lock();
+            try {
+                E aux = node1.element;
+                node1.element = node2.element;
+                node2.element = aux;
+            } finally {
+                second.unlock();
+                first.unlock();
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public E replace(Position<E> p, E e) {
+        structure.readLock().lock();
+        try {
+            Node<E> node = checkAttached(p);
+            ReentrantLock lock = lock(node);
+            lock.lock();
+            try {
+                E old = node.element;
+                node.element = e;
+                return old;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        structure.writeLock().lock();
+        try {
+            Node<E> node = checkAttached(p);
+            Node<E> parent = node.parent;
+            if (parent == null) {
+                root = null;
+                return;
+            }
+            Node<E>[] children = parent.children;
+            int index = 0;
+            while (children[index] != node) {
+                index++;
+            }
+            Node<E>[] copy = Arrays.copyOf(children, children.length - 1);
+            System.arraycopy(children, index + 1, copy, index, children.length - index - 1);
+            parent.children = copy;
+            updateSubtreeSizes(parent, -node.subtreeSize);
+            node.parent = null;
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the subtree of another tree rooted at v, without publishing it.
+     */
+    private Node<E> copy(Tree<E> from, Position<E> v, Node<E> parent) {
+        Node<E> top = new Node<>(this, v.getElement(), parent);
+        Deque<Node<E>> nodes = new ArrayDeque<>();
+        Deque<Position<E>> positions = new ArrayDeque<>();
+        nodes.push(top);
+        positions.push(v);
+        while (!nodes.isEmpty()) {
+            Node<E> node = nodes.pop();
+            Position<E> p = positions.pop();
+            Node<E>[] children = nodes(from.subtreeSize(p) == 1 ? 0 : count(from.children(p)));
+            int i = 0;
+            for (Position<E> c : from.children(p)) {
+                children[i] = new Node<>(this, c.getElement(), node);
+                nodes.push(children[i]);
+                positions.push(c);
+                i++;
+            }
+            node.children = children;
+            node.subtreeSize = from.subtreeSize(p);
+        }
+        return top;
+    }
+
+    private static int count(Iterable<?> it) {
+        int count = 0;
+        for (Object o : it) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        structure.writeLock().lock();
+        try {
+            Node<E> node = checkAttached(v);
+            ConcurrentTree<E> tree = new ConcurrentTree<>();
+            tree.root = tree.copy(this, node, null);
+            return tree;
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        if (t == this) {
+            throw new RuntimeException("A tree cannot be attached to itself");
+        }
+        if (t.isEmpty()) {
+            return;
+        }
+        Node<E> top = copy(t, t.root(), null);
+        structure.writeLock().lock();
+        try {
+            Node<E> parent = (p == null) ? root : checkAttached(p);
+            if (parent == null) {
+                throw new RuntimeException("The tree is empty, there is no node to attach to");
+            }
+            top.parent = parent;
+            Node<E>[] children = parent.children;
+            Node<E>[] copy = Arrays.copyOf(children, children.length + 1);
+            copy[children.length] = top;
+            parent.children = copy;
+            updateSubtreeSizes(parent, top.subtreeSize);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public Position<E> root() {
+        return root;
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        return checkPosition(v).parent;
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        return Collections.unmodifiableList(Arrays.asList(checkPosition(v).children));
+    }
+
+    @Override
+    public Position<E> child(Position<E> v, int n) {
+        Node<E>[] children = checkPosition(v).children;
+        if (n < 0 || n >= children.length) {
+            throw new RuntimeException("The position of the child is invalid");
+        }
+        return children[n];
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        return checkPosition(v).children.length > 0;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        return checkPosition(v).children.length == 0;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        return checkPosition(v) == root;
+    }
+
+    @Override
+    public int subtreeSize(Position<E> v) {
+        return checkPosition(v).subtreeSize;
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int size() {
+        Node<E> r = root;
+        return (r == null) ? 0 : r.subtreeSize;
+    }
+
+    /**
+     * Breadth first iterator, lock-free and weakly consistent.
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        Deque<Node<E>> queue = new ArrayDeque<>();
+        Node<E> r = root;
+        if (r != null) {
+            queue.add(r);
+        }
+        return new Iterator<Position<E>>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Position<E> next() {
+                if (queue.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<E> node = queue.poll();
+                queue.addAll(Arrays.asList(node.children));
+                return node;
+            }
+        };
+    }
+
+    /**
+     * Preorder iterator, lock-free and weakly consistent.
+     */
+    public Iterator<Position<E>> iteratorPreOrden() {
+        Deque<Node<E>> stack = new ArrayDeque<>();
+        Node<E> r = root;
+        if (r != null) {
+            stack.push(r);
+        }
+        return new Iterator<Position<E>>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Position<E> next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<E> node = stack.pop();
+                Node<E>[] children = node.children;
+                for (int i = children.length - 1; i >= 0; i--) {
+                    stack.push(children[i]);
+                }
+                return node;
+            }
+        };
+    }
+
+    /**
+     * Postorder iterator, lock-free and weakly consistent. Every node is visited
+     * after the children it had when the walk reached it.
+     */
+    public Iterator<Position<E>> iteratorPostOrden() {
+        Deque<Node<E>> nodes = new ArrayDeque<>();
+        Deque<Node<E>[]> childrenOf = new ArrayDeque<>();
+        Deque<Integer> next = new ArrayDeque<>();
+        Node<E> r = root;
+        if (r != null) {
+            nodes.push(r);
+            childrenOf.push(r.children);
+            next.push(0);
+        }
+        return new Iterator<Position<E>>() {
+            @Override
+            public boolean hasNext() {
+                return !nodes.isEmpty();
+            }
+
+            @Override
+            public Position<E> next() {
+                if (nodes.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                while (next.peek() < childrenOf.peek().length) {
+                    Node<E> child = childrenOf.peek()[next.peek()];
+                    next.push(next.pop() + 1);
+                    nodes.push(child);
+                    childrenOf.push(child.children);
+                    next.push(0);
+                }
+                childrenOf.pop();
+                next.pop();
+                return nodes.pop();
+            }
+        };
+    }
+}
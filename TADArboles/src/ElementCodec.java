@@ -0,0 +1,86 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Encodes the elements of a tree saved with TreeFile. Every element may take a
+ * different number of bytes; the file keeps the offset of each one, so the
+ * codec does not need to store lengths.
+ *
+ * @param <E> the type of the encoded elements
+ */
+public interface ElementCodec<E> {
+
+    /**
+     * Returns the number of bytes write will use for an element.
+     */
+    public int size(E e);
+
+    /**
+     * Writes an element at the position of the buffer, advancing it by size(e).
+     */
+    public void write(ByteBuffer buffer, E e);
+
+    /**
+     * Reads an element of the given length from the position of the buffer.
+     */
+    public E read(ByteBuffer buffer, int length);
+
+    /**
+     * Adapts a fixed width codec, so trees of numbers cost no more than their
+     * values.
+     */
+    public static <E> ElementCodec<E> of(FixedWidthCodec<E> codec) {
+        return new ElementCodec<E>() {
+            @Override
+            public int size(E e) {
+                return codec.width();
+            }
+
+            @Override
+            public void write(ByteBuffer buffer, E e) {
+                codec.write(buffer, buffer.position(), e);
+                buffer.position(buffer.position() + codec.width());
+            }
+
+            @Override
+            public E read(ByteBuffer buffer, int length) {
+                return codec.read(buffer, buffer.position());
+            }
+        };
+    }
+
+    /**
+     * Strings in UTF-8. null is not supported.
+     */
+    public static final ElementCodec<String> STRING = new ElementCodec<String>() {
+        @Override
+        public int size(String e) {
+            int size = e.length();
+            for (int i = 0; i < e.length(); i++) {
+                char c = e.charAt(i);
+                if (c >= 0x80) {
+                    // Count the bytes of the non ASCII tail the slow way.
+                    return i + e.substring(i).getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, String e) {
+            buffer.put(e.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String read(ByteBuffer buffer, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    public static final ElementCodec<Integer> INTEGER = of(FixedWidthCodec.INTEGER);
+
+    public static final ElementCodec<Long> LONG = of(FixedWidthCodec.LONG);
+}
@@ -0,0 +1,82 @@
+import java.nio.ByteBuffer;
+
+
+/**
+ * Encodes elements in a fixed number of bytes, so they can be stored inside the
+ * node records of an off-heap tree.
+ *
+ * @param <E> the type of the encoded elements
+ */
+public interface FixedWidthCodec<E> {
+
+    /**
+     * Returns the number of bytes taken by every element.
+     */
+    public int width();
+
+    /**
+     * Writes an element at an absolute offset of a buffer.
+     */
+    public void write(ByteBuffer buffer, int offset, E e);
+
+    /**
+     * Reads the element stored at an absolute offset of a buffer.
+     */
+    public E read(ByteBuffer buffer, int offset);
+
+    /**
+     * Codec for trees that only keep the topology: it takes no space and every
+     * element reads as null.
+     */
+    public static <E> FixedWidthCodec<E> none() {
+        return new FixedWidthCodec<E>() {
+            @Override
+            public int width() {
+                return 0;
+            }
+
+            @Override
+            public void write(ByteBuffer buffer, int offset, E e) {
+            }
+
+            @Override
+            public E read(ByteBuffer buffer, int offset) {
+                return null;
+            }
+        };
+    }
+
+    public static final FixedWidthCodec<Integer> INTEGER = new FixedWidthCodec<Integer>() {
+        @Override
+        public int width() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Integer e) {
+            buffer.putInt(offset, e);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+    };
+
+    public static final FixedWidthCodec<Long> LONG = new FixedWidthCodec<Long>() {
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Long e) {
+            buffer.putLong(offset, e);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+    };
+}
@@ -0,0 +1,163 @@
+import material.Position;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+
+/**
+ * An NAryTree that forwards every call to another tree. Decorators extend it
+ * and override only the methods they add behaviour to, so the rest keep the
+ * cost of the tree they wrap, including the defaults that tree overrides
+ * (child, removeChild, isAncestor...).
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public abstract class ForwardingNAryTree<E> implements NAryTree<E> {
+
+    private final NAryTree<E> delegate;
+
+    protected ForwardingNAryTree(NAryTree<E> delegate) {
+        if (delegate == null) {
+            throw new RuntimeException("The tree to decorate cannot be null");
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the tree every call is forwarded to.
+     */
+    public NAryTree<E> delegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the innermost tree under any number of decorators, which is what
+     * the attach of the implementations accepts.
+     */
+    protected static <E> NAryTree<E> unwrap(NAryTree<E> t) {
+        while (t instanceof ForwardingNAryTree) {
+            t = ((ForwardingNAryTree<E>) t).delegate();
+        }
+        return t;
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int size() {
+        return isEmpty() ? 0 : subtreeSize(root());
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        return delegate.addRoot(e);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        return delegate.add(element, p);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        return delegate.add(element, p, n);
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        delegate.swapElements(p1, p2);
+    }
+
+    @Override
+    public E replace(Position<E> p, E e) {
+        return delegate.replace(p, e);
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        delegate.remove(p);
+    }
+
+    @Override
+    public void removeChild(Position<E> p, int n) {
+        delegate.removeChild(p, n);
+    }
+
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        return delegate.subTree(v);
+    }
+
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        delegate.attach(p, unwrap(t));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public Position<E> root() {
+        return delegate.root();
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        return delegate.parent(v);
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        return delegate.children(v);
+    }
+
+    @Override
+    public Position<E> child(Position<E> v, int n) {
+        return delegate.child(v, n);
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        return delegate.isInternal(v);
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        return delegate.isLeaf(v);
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        return delegate.isRoot(v);
+    }
+
+    @Override
+    public int subtreeSize(Position<E> v) {
+        return delegate.subtreeSize(v);
+    }
+
+    @Override
+    public boolean isAncestor(Position<E> v, Position<E> w) {
+        return delegate.isAncestor(v, w);
+    }
+
+    @Override
+    public <R> R reduce(Position<E> v, R identity, BiFunction<R, ? super E, R> accumulator,
+                        BinaryOperator<R> combiner) {
+        return delegate.reduce(v, identity, accumulator, combiner);
+    }
+
+    @Override
+    public Spliterator<Position<E>> spliterator() {
+        return delegate.spliterator();
+    }
+
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return delegate.iterator();
+    }
+}
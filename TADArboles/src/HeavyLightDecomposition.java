@@ -0,0 +1,440 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+
+/**
+ * A heavy-light decomposition of a tree, to sum, take the minimum or maximum
+ * of, and add to, the values on the path between two nodes without walking up
+ * with parent().
+ *
+ * Every node continues the chain of its parent if it is the child with the
+ * largest subtree, and starts a new chain otherwise. Chains are numbered
+ * consecutively, so a chain is a range of a segment tree with lazy additions,
+ * and a path from a node up to the root crosses O(log n) chains, because every
+ * new chain at least halves the size of the subtree. Path queries and updates
+ * cost O(log^2 n).
+ *
+ * Each node has a long value, read from its element when it is first indexed
+ * and kept by the decomposition afterwards: pathAdd and set change the values
+ * here, not the elements of the tree.
+ *
+ * The tree does not tell the decomposition about its changes, so they have to
+ * be reported, as with AncestorIndex:
+ * <ul>
+ * <li>added() patches in a new leaf in O(log n) as a chain of its own. Patched
+ * chains do not follow the heavy rule, so once there are more patched nodes
+ * than a quarter of the indexed ones, the decomposition is built again.</li>
+ * <li>removed() forgets a subtree before it is removed; the paths between the
+ * nodes left do not change.</li>
+ * <li>Anything else needs rebuild(), O(n). The values of the nodes already
+ * indexed are kept.</li>
+ * </ul>
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class HeavyLightDecomposition<E> {
+
+    private static final int NONE = -1;
+
+    private final Tree<E> tree;
+    private final ToLongFunction<? super E> value;
+    private final Map<Position<E>, Integer> ids = new HashMap<>();
+
+    private Position<E>[] nodes;
+    private int[] parent;
+    private int[] depth;
+    private int[] head;
+    /** Slot of every node in the segment tree. */
+    private int[] slot;
+    private int size;
+    private int patched;
+
+    /** Segment tree over the slots, with lazy additions. */
+    private long[] sum;
+    private long[] min;
+    private long[] max;
+    private long[] pending;
+    /** Number of slots in use under every segment, for the sums. */
+    private int[] count;
+    private int capacity;
+
+    /**
+     * Builds the decomposition of a tree, in O(n).
+     *
+     * @param tree the tree to decompose.
+     * @param value the initial value of every node, read from its element.
+     */
+    public HeavyLightDecomposition(Tree<E> tree, ToLongFunction<? super E> value) {
+        this.tree = tree;
+        this.value = value;
+        rebuild();
+    }
+
+    /**
+     * Builds the decomposition again from the current shape of the tree. Nodes
+     * that were indexed keep their values; new ones read them from their
+     * elements.
+     */
+    @SuppressWarnings("unchecked")
+    public void rebuild() {
+        Map<Position<E>, Long> previous = new HashMap<>();
+        for (Map.Entry<Position<E>, Integer> entry : ids.entrySet()) {
+            previous.put(entry.getKey(), get(slot[entry.getValue()]));
+        }
+        ids.clear();
+        int n = tree.isEmpty() ? 0 : tree.subtreeSize(tree.root());
+        nodes = (Position<E>[]) new Position<?>[Math.max(n, 1)];
+        parent = new int[nodes.length];
+        depth = new int[nodes.length];
+        head = new int[nodes.length];
+        slot = new int[nodes.length];
+        int[] heavy = new int[nodes.length];
+        int[] firstChild = new int[nodes.length];
+        int[] nextSibling = new int[nodes.length];
+        long[] values = new long[nodes.length];
+        size = 0;
+        patched = 0;
+
+        if (n > 0) {
+            // Number the nodes in preorder, linking every node to its children
+            // and picking the child with the largest subtree as the heavy one.
+            Deque<Position<E>> stack = new ArrayDeque<>();
+            Deque<Integer> parents = new ArrayDeque<>();
+            stack.push(tree.root());
+            parents.push(NONE);
+            while (!stack.isEmpty()) {
+                Position<E> p = stack.pop();
+                int v = size++;
+                int u = parents.pop();
+                nodes[v] = p;
+                ids.put(p, v);
+                parent[v] = u;
+                depth[v] = (u == NONE) ? 0 : depth[u] + 1;
+                heavy[v] = NONE;
+                firstChild[v] = NONE;
+                Long old = previous.get(p);
+                values[v] = (old != null) ? old : value.applyAsLong(p.getElement());
+                if (u != NONE) {
+                    nextSibling[v] = firstChild[u];
+                    firstChild[u] = v;
+                    if (heavy[u] == NONE || tree.subtreeSize(p) > tree.subtreeSize(nodes[heavy[u]])) {
+                        heavy[u] = v;
+                    }
+                }
+                for (Position<E> c : tree.children(p)) {
+                    stack.push(c);
+                    parents.push(v);
+                }
+            }
+            // Walk every chain from its head, giving its nodes consecutive slots;
+            // the light children start chains of their own.
+            Deque<Integer> heads = new ArrayDeque<>();
+            heads.push(0);
+            int next = 0;
+            while (!heads.isEmpty()) {
+                int h = heads.pop();
+                for (int v = h; v != NONE; v = heavy[v]) {
+                    head[v] = h;
+                    slot[v] = next++;
+                    for (int c = firstChild[v]; c != NONE; c = nextSibling[c]) {
+                        if (c != heavy[v]) {
+                            heads.push(c);
+                        }
+                    }
+                }
+            }
+        }
+        long[] leaves = new long[size];
+        for (int v = 0; v < size; v++) {
+            leaves[slot[v]] = values[v];
+        }
+        buildSegments(leaves, Math.max(size, 1));
+    }
+
+    /**
+     * Patches a new leaf into the decomposition, in O(log n) amortized. The
+     * leaf must have been added to the tree and its parent must be indexed.
+     *
+     * @param p the new leaf.
+     */
+    public void added(Position<E> p) {
+        if (tree.subtreeSize(p) != 1) {
+            throw new RuntimeException("Only leaves can be added to the decomposition, rebuild it instead");
+        }
+        Position<E> father = tree.parent(p);
+        if (father == null) {
+            throw new RuntimeException("The root cannot be added to the decomposition, rebuild it instead");
+        }
+        int u = id(father);
+        if (patched >= (size - patched) / 4) {
+            rebuild();
+            return;
+        }
+        if (size == nodes.length) {
+            int length = nodes.length * 2;
+            nodes = Arrays.copyOf(nodes, length);
+            parent = Arrays.copyOf(parent, length);
+            depth = Arrays.copyOf(depth, length);
+            head = Arrays.copyOf(head, length);
+            slot = Arrays.copyOf(slot, length);
+        }
+        if (size == capacity) {
+            long[] leaves = new long[size];
+            for (int i = 0; i < size; i++) {
+                leaves[i] = get(i);
+            }
+            buildSegments(leaves, capacity * 2);
+        }
+        int v = size++;
+        nodes[v] = p;
+        ids.put(p, v);
+        parent[v] = u;
+        depth[v] = depth[u] + 1;
+        head[v] = v;
+        slot[v] = v;
+        patched++;
+        set(1, 0, capacity - 1, v, value.applyAsLong(p.getElement()));
+    }
+
+    /**
+     * Forgets p and its descendants, which are about to be removed from the
+     * tree. The paths between the rest of the nodes do not change.
+     *
+     * @param p the root of the subtree that will be removed.
+     */
+    public void removed(Position<E> p) {
+        Deque<Position<E>> stack = new ArrayDeque<>();
+        stack.push(p);
+        while (!stack.isEmpty()) {
+            Position<E> q = stack.pop();
+            Integer v = ids.remove(q);
+            if (v != null) {
+                nodes[v] = null;
+            }
+            for (Position<E> c : tree.children(q)) {
+                stack.push(c);
+            }
+        }
+    }
+
+    private int id(Position<E> p) {
+        Integer v = ids.get(p);
+        if (v == null) {
+            throw new RuntimeException("The position is not in the decomposition");
+        }
+        return v;
+    }
+
+    /**
+     * Returns the value of p.
+     */
+    public long value(Position<E> p) {
+        return get(slot[id(p)]);
+    }
+
+    /**
+     * Sets the value of p, in O(log n).
+     */
+    public void set(Position<E> p, long x) {
+        set(1, 0, capacity - 1, slot[id(p)], x);
+    }
+
+    /**
+     * Returns the lowest common ancestor of u and v, in O(log n).
+     */
+    public Position<E> lca(Position<E> u, Position<E> v) {
+        int a = id(u);
+        int b = id(v);
+        while (head[a] != head[b]) {
+            if (depth[head[a]] < depth[head[b]]) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            a = parent[head[a]];
+        }
+        return nodes[(depth[a] < depth[b]) ? a : b];
+    }
+
+    /**
+     * Returns the sum of the values on the path from u to v, both included.
+     */
+    public long pathSum(Position<E> u, Position<E> v) {
+        long[] result = {0, Long.MAX_VALUE, Long.MIN_VALUE};
+        path(id(u), id(v), (from, to) -> query(1, 0, capacity - 1, from, to, result));
+        return result[0];
+    }
+
+    /**
+     * Returns the smallest value on the path from u to v, both included.
+     */
+    public long pathMin(Position<E> u, Position<E> v) {
+        long[] result = {0, Long.MAX_VALUE, Long.MIN_VALUE};
+        path(id(u), id(v), (from, to) -> query(1, 0, capacity - 1, from, to, result));
+        return result[1];
+    }
+
+    /**
+     * Returns the largest value on the path from u to v, both included.
+     */
+    public long pathMax(Position<E> u, Position<E> v) {
+        long[] result = {0, Long.MAX_VALUE, Long.MIN_VALUE};
+        path(id(u), id(v), (from, to) -> query(1, 0, capacity - 1, from, to, result));
+        return result[2];
+    }
+
+    /**
+     * Adds delta to the value of every node on the path from u to v, both
+     * included.
+     */
+    public void pathAdd(Position<E> u, Position<E> v, long delta) {
+        path(id(u), id(v), (from, to) -> add(1, 0, capacity - 1, from, to, delta));
+    }
+
+    private interface SlotRange {
+        void accept(int from, int to);
+    }
+
+    /**
+     * Splits the path from a to b into ranges of slots, one per chain crossed.
+     */
+    private void path(int a, int b, SlotRange range) {
+        while (head[a] != head[b]) {
+            if (depth[head[a]] < depth[head[b]]) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            range.accept(slot[head[a]], slot[a]);
+            a = parent[head[a]];
+        }
+        if (depth[a] > depth[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        range.accept(slot[a], slot[b]);
+    }
+
+    private void buildSegments(long[] leaves, int capacity) {
+        this.capacity = capacity;
+        sum = new long[4 * capacity];
+        min = new long[4 * capacity];
+        max = new long[4 * capacity];
+        pending = new long[4 * capacity];
+        count = new int[4 * capacity];
+        build(1, 0, capacity - 1, leaves);
+    }
+
+    private void build(int node, int from, int to, long[] leaves) {
+        if (from == to) {
+            if (from < leaves.length) {
+                sum[node] = min[node] = max[node] = leaves[from];
+                count[node] = 1;
+            } else {
+                min[node] = Long.MAX_VALUE;
+                max[node] = Long.MIN_VALUE;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        build(2 * node, from, middle, leaves);
+        build(2 * node + 1, middle + 1, to, leaves);
+        pull(node);
+    }
+
+    private void pull(int node) {
+        sum[node] = sum[2 * node] + sum[2 * node + 1];
+        min[node] = Math.min(min[2 * node], min[2 * node + 1]);
+        max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+        count[node] = count[2 * node] + count[2 * node + 1];
+    }
+
+    private void apply(int node, long delta) {
+        if (count[node] > 0) {
+            sum[node] += delta * count[node];
+            min[node] += delta;
+            max[node] += delta;
+            pending[node] += delta;
+        }
+    }
+
+    private void push(int node) {
+        if (pending[node] != 0) {
+            apply(2 * node, pending[node]);
+            apply(2 * node + 1, pending[node]);
+            pending[node] = 0;
+        }
+    }
+
+    private void add(int node, int from, int to, int l, int r, long delta) {
+        if (r < from || to < l) {
+            return;
+        }
+        if (l <= from && to <= r) {
+            apply(node, delta);
+            return;
+        }
+        push(node);
+        int middle = (from + to) >>> 1;
+        add(2 * node, from, middle, l, r, delta);
+        add(2 * node + 1, middle + 1, to, l, r, delta);
+        pull(node);
+    }
+
+    private void query(int node, int from, int to, int l, int r, long[] result) {
+        if (r < from || to < l) {
+            return;
+        }
+        if (l <= from && to <= r) {
+            result[0] += sum[node];
+            result[1] = Math.min(result[1], min[node]);
+            result[2] = Math.max(result[2], max[node]);
+            return;
+        }
+        push(node);
+        int middle = (from + to) >>> 1;
+        query(2 * node, from, middle, l, r, result);
+        query(2 * node + 1, middle + 1, to, l, r, result);
+    }
+
+    private void set(int node, int from, int to, int i, long x) {
+        if (from == to) {
+            sum[node] = min[node] = max[node] = x;
+            count[node] = 1;
+            return;
+        }
+        push(node);
+        int middle = (from + to) >>> 1;
+        if (i <= middle) {
+            set(2 * node, from, middle, i, x);
+        } else {
+            set(2 * node + 1, middle + 1, to, i, x);
+        }
+        pull(node);
+    }
+
+    private long get(int i) {
+        int node = 1;
+        int from = 0;
+        int to = capacity - 1;
+        while (from != to) {
+            push(node);
+            int middle = (from + to) >>> 1;
+            if (i <= middle) {
+                node = 2 * node;
+                to = middle;
+            } else {
+                node = 2 * node + 1;
+                from = middle + 1;
+            }
+        }
+        return sum[node];
+    }
+}
@@ -0,0 +1,279 @@
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+
+/**
+ * A list backed by an implicit treap: a randomized balanced binary tree ordered
+ * by position, where every entry knows the size of its own subtree. get, set,
+ * add(index, e) and remove(index) take O(log n) expected time instead of the
+ * O(n) shifting of an ArrayList, which is what wide nodes of a tree need.
+ * Iteration walks the treap in order in O(1) amortized time per element.
+ *
+ * Every entry also links to its parent, so a handle to an entry can tell where
+ * the entry is now in O(log n), after other entries were added or removed.
+ *
+ * @param <T> the type of elements in the list
+ */
+public class IndexedList<T> extends AbstractList<T> {
+
+    private static class Entry<T> {
+        private T value;
+        private final int priority;
+        private int size = 1;
+        private Entry<T> left;
+        private Entry<T> right;
+        private Entry<T> parent;
+
+        public Entry(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    private final Random random = new Random();
+    private Entry<T> root;
+
+    public IndexedList() {
+    }
+
+    public IndexedList(Collection<? extends T> values) {
+        for (T value : values) {
+            add(value);
+        }
+    }
+
+    private static int size(Entry<?> e) {
+        return (e == null) ? 0 : e.size;
+    }
+
+    private static <T> void update(Entry<T> e) {
+        e.size = 1 + size(e.left) + size(e.right);
+        if (e.left != null) {
+            e.left.parent = e;
+        }
+        if (e.right != null) {
+            e.right.parent = e;
+        }
+    }
+
+    private void setRoot(Entry<T> e) {
+        root = e;
+        if (e != null) {
+            e.parent = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T>[] parts() {
+        return (Entry<T>[]) new Entry<?>[2];
+    }
+
+    /**
+     * Joins two treaps where every entry of a comes before every entry of b.
+     */
+    private Entry<T> merge(Entry<T> a, Entry<T> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    /**
+     * Splits a treap into the first n entries, stored in parts[0], and the rest,
+     * stored in parts[1].
+     */
+    private void split(Entry<T> e, int n, Entry<T>[] parts) {
+        if (e == null) {
+            parts[0] = null;
+            parts[1] = null;
+        } else if (size(e.left) < n) {
+            split(e.right, n - size(e.left) - 1, parts);
+            e.right = parts[0];
+            update(e);
+            parts[0] = e;
+        } else {
+            split(e.left, n, parts);
+            e.left = parts[1];
+            update(e);
+            parts[1] = e;
+        }
+    }
+
+    private Entry<T> entry(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Entry<T> e = root;
+        while (true) {
+            int leftSize = size(e.left);
+            if (index < leftSize) {
+                e = e.left;
+            } else if (index == leftSize) {
+                return e;
+            } else {
+                index -= leftSize + 1;
+                e = e.right;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public T get(int index) {
+        return entry(index).value;
+    }
+
+    @Override
+    public T set(int index, T value) {
+        Entry<T> e = entry(index);
+        T old = e.value;
+        e.value = value;
+        return old;
+    }
+
+    @Override
+    public void add(int index, T value) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Entry<T>[] parts = parts();
+        split(root, index, parts);
+        setRoot(merge(merge(parts[0], new Entry<>(value, random.nextInt())), parts[1]));
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        Entry<T> e = entry(index);
+        Entry<T>[] parts = parts();
+        split(root, index, parts);
+        Entry<T> before = parts[0];
+        split(parts[1], 1, parts);
+        setRoot(merge(before, parts[1]));
+        e.parent = null;
+        modCount++;
+        return e.value;
+    }
+
+    /**
+     * Returns a handle to the entry at the given index. The handle follows its
+     * entry while other entries are added or removed, and stops being valid
+     * when the entry is removed or the list cleared. set() changes the value
+     * of the entry, not its handle.
+     */
+    public Object handle(int index) {
+        return entry(index);
+    }
+
+    /**
+     * Returns the index of the entry of a handle, walking up from it in
+     * O(log n) expected time.
+     *
+     * @throws RuntimeException if the handle is not one of an entry in the list.
+     */
+    public int indexOfHandle(Object handle) {
+        if (!(handle instanceof Entry)) {
+            throw new RuntimeException("The handle is invalid");
+        }
+        Entry<?> e = (Entry<?>) handle;
+        int index = size(e.left);
+        while (e.parent != null) {
+            if (e == e.parent.right) {
+                index += size(e.parent.left) + 1;
+            }
+            e = e.parent;
+        }
+        if (e != root) {
+            throw new RuntimeException("The handle is not in the list");
+        }
+        return index;
+    }
+
+    /**
+     * Scans the list with the in-order iterator, in O(n) instead of the O(n log n)
+     * of calling get(i) for every index.
+     */
+    @Override
+    public int indexOf(Object o) {
+        int index = 0;
+        for (T value : this) {
+            if (o == null ? value == null : o.equals(value)) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    /**
+     * In-order iterator over the treap. It keeps the path to the current entry in
+     * a stack, so it does not pay O(log n) per element like get(i) would.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final Deque<Entry<T>> stack = new ArrayDeque<>();
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Entry<T> e) {
+                while (e != null) {
+                    stack.push(e);
+                    e = e.left;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Entry<T> e = stack.pop();
+                pushLeft(e.right);
+                return e.value;
+            }
+        };
+    }
+}
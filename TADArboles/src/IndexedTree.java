@@ -0,0 +1,259 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+
+/**
+ * A decorator that keeps a hash index from a key of every element to the
+ * positions that hold it, so a node is found in O(1) instead of with a scan.
+ * The key is extracted from the element by a function; Function.identity()
+ * indexes the elements themselves.
+ *
+ * In UNIQUE mode every key is in at most one node, and an add, replace or
+ * attach that would repeat one is rejected before the tree is changed. In
+ * MULTI mode a key may be in any number of nodes.
+ *
+ * The index follows every change made through this tree: add and replace are
+ * O(1), remove is O(size of the removed subtree), since every removed node has
+ * to be taken out, and attach is O(size of the attached tree). Changes made to
+ * the decorated tree directly, or to the trees returned by subTree, are not
+ * seen; rebuild() indexes the tree again after them. The keys must not change
+ * while their elements are in the tree.
+ *
+ * @param <E> the type of elements stored in the tree
+ * @param <K> the type of the keys
+ */
+public class IndexedTree<E, K> extends ForwardingNAryTree<E> {
+
+    public enum Mode {
+        /** Every key is in at most one node. */
+        UNIQUE,
+        /** A key may be in any number of nodes. */
+        MULTI
+    }
+
+    private final Function<? super E, ? extends K> key;
+    private final Mode mode;
+    /** The position of every key, in UNIQUE mode. */
+    private final Map<K, Position<E>> unique = new HashMap<>();
+    /** The positions of every key, in MULTI mode, in the order they were indexed. */
+    private final Map<K, Set<Position<E>>> multi = new HashMap<>();
+
+    /**
+     * Decorates a tree, indexing the nodes it already has.
+     *
+     * @param tree the tree to decorate.
+     * @param key extracts the key of an element.
+     * @param mode whether keys are unique.
+     */
+    public IndexedTree(NAryTree<E> tree, Function<? super E, ? extends K> key, Mode mode) {
+        super(tree);
+        this.key = key;
+        this.mode = mode;
+        rebuild();
+    }
+
+    /**
+     * Indexes every node of the tree again, in O(n).
+     */
+    public void rebuild() {
+        unique.clear();
+        multi.clear();
+        if (isEmpty()) {
+            return;
+        }
+        if (mode == Mode.UNIQUE) {
+            checkUnique(delegate(), null);
+        }
+        for (Position<E> p : delegate()) {
+            index(p);
+        }
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Returns the node whose element has the given key, or any of them in MULTI
+     * mode, or null if there is none.
+     */
+    public Position<E> find(K k) {
+        if (mode == Mode.UNIQUE) {
+            return unique.get(k);
+        }
+        Set<Position<E>> positions = multi.get(k);
+        return (positions == null) ? null : positions.iterator().next();
+    }
+
+    /**
+     * Returns every node whose element has the given key, as a read-only view.
+     */
+    public Collection<Position<E>> findAll(K k) {
+        if (mode == Mode.UNIQUE) {
+            Position<E> p = unique.get(k);
+            return (p == null) ? Collections.emptySet() : Collections.singleton(p);
+        }
+        Set<Position<E>> positions = multi.get(k);
+        return (positions == null) ? Collections.emptySet() : Collections.unmodifiableSet(positions);
+    }
+
+    public boolean contains(K k) {
+        return (mode == Mode.UNIQUE) ? unique.containsKey(k) : multi.containsKey(k);
+    }
+
+    private void index(Position<E> p) {
+        K k = key.apply(p.getElement());
+        if (mode == Mode.UNIQUE) {
+            unique.put(k, p);
+        } else {
+            multi.computeIfAbsent(k, x -> new LinkedHashSet<>()).add(p);
+        }
+    }
+
+    private void unindex(Position<E> p) {
+        K k = key.apply(p.getElement());
+        if (mode == Mode.UNIQUE) {
+            unique.remove(k, p);
+        } else {
+            Set<Position<E>> positions = multi.get(k);
+            if (positions != null && positions.remove(p) && positions.isEmpty()) {
+                multi.remove(k);
+            }
+        }
+    }
+
+    /**
+     * In UNIQUE mode, rejects an element whose key is already in a node other
+     * than p.
+     */
+    private void checkUnique(E e, Position<E> p) {
+        if (mode == Mode.UNIQUE) {
+            Position<E> holder = unique.get(key.apply(e));
+            if (holder != null && !holder.equals(p)) {
+                throw new RuntimeException("The key " + key.apply(e) + " is already in the tree");
+            }
+        }
+    }
+
+    /**
+     * Rejects a tree with a key repeated in it or, when index is not null, also
+     * in this tree.
+     */
+    private void checkUnique(Tree<E> t, Map<K, Position<E>> index) {
+        Set<K> keys = new HashSet<>();
+        for (Position<E> p : t) {
+            K k = key.apply(p.getElement());
+            if (!keys.add(k) || (index != null && index.containsKey(k))) {
+                throw new RuntimeException("The key " + k + " is already in the tree");
+            }
+        }
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        Position<E> p = super.addRoot(e);
+        index(p);
+        return p;
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        checkUnique(element, null);
+        Position<E> node = super.add(element, p);
+        index(node);
+        return node;
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        checkUnique(element, null);
+        Position<E> node = super.add(element, p, n);
+        index(node);
+        return node;
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        unindex(p1);
+        unindex(p2);
+        super.swapElements(p1, p2);
+        index(p1);
+        index(p2);
+    }
+
+    @Override
+    public E replace(Position<E> p, E e) {
+        checkUnique(e, p);
+        unindex(p);
+        E old = super.replace(p, e);
+        index(p);
+        return old;
+    }
+
+    /**
+     * Removes the subtree of p, taking its nodes out of the index first.
+     */
+    @Override
+    public void remove(Position<E> p) {
+        unindexSubtree(p);
+        super.remove(p);
+    }
+
+    @Override
+    public void removeChild(Position<E> p, int n) {
+        unindexSubtree(child(p, n));
+        super.removeChild(p, n);
+    }
+
+    private void unindexSubtree(Position<E> p) {
+        Deque<Position<E>> pending = new ArrayDeque<>();
+        pending.push(p);
+        while (!pending.isEmpty()) {
+            Position<E> q = pending.pop();
+            unindex(q);
+            for (Position<E> c : children(q)) {
+                pending.push(c);
+            }
+        }
+    }
+
+    /**
+     * Attaches t as the last child of p and indexes its nodes. The array trees
+     * copy the nodes of t, so the nodes are indexed where they are after the
+     * attach, as the last child of p.
+     */
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        if (t.isEmpty()) {
+            return;
+        }
+        if (mode == Mode.UNIQUE) {
+            checkUnique(t, unique);
+        }
+        Position<E> parent = (p == null) ? root() : p;
+        super.attach(p, t);
+        Position<E> top = null;
+        for (Position<E> c : children(parent)) {
+            top = c;
+        }
+        Deque<Position<E>> pending = new ArrayDeque<>();
+        pending.push(top);
+        while (!pending.isEmpty()) {
+            Position<E> q = pending.pop();
+            index(q);
+            for (Position<E> c : children(q)) {
+                pending.push(c);
+            }
+        }
+    }
+}
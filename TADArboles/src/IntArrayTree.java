@@ -0,0 +1,150 @@
+import material.Position;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+
+/**
+ * An array tree of int elements, see AbstractArrayTree. The elements live in an
+ * int column, so a node costs seven ints and no object at all; the methods of
+ * IntNAryTree never box.
+ */
+public class IntArrayTree extends AbstractArrayTree<Integer> implements IntNAryTree {
+
+    private int[] elements;
+
+    public IntArrayTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntArrayTree(int initialCapacity) {
+        super(initialCapacity);
+        elements = new int[capacity()];
+    }
+
+    /**
+     * Builds a tree in one O(n) pass, see AbstractArrayTree.load. Node i of the
+     * topology gets elements[i].
+     *
+     * @param elements the element of every node.
+     * @param topology the shape of the tree.
+     * @return the new tree.
+     */
+    public static IntArrayTree build(int[] elements, TreeTopology topology) {
+        int n = topology.size();
+        if (elements.length != n) {
+            throw new RuntimeException("The tree has " + n + " nodes but " + elements.length + " elements");
+        }
+        IntArrayTree tree = new IntArrayTree(n);
+        tree.load(topology);
+        System.arraycopy(elements, 0, tree.elements, 0, n);
+        return tree;
+    }
+
+    @Override
+    protected Integer element(int i) {
+        return elements[i];
+    }
+
+    @Override
+    protected void setElement(int i, Integer e) {
+        elements[i] = e;
+    }
+
+    @Override
+    protected void checkElement(Integer e) {
+        if (e == null) {
+            throw new RuntimeException("This tree cannot hold null elements");
+        }
+    }
+
+    @Override
+    protected void swapElements(int i, int j) {
+        int aux = elements[i];
+        elements[i] = elements[j];
+        elements[j] = aux;
+    }
+
+    @Override
+    protected void copyElement(AbstractArrayTree<Integer> from, int fromIndex, int to) {
+        elements[to] = ((IntArrayTree) from).elements[fromIndex];
+    }
+
+    @Override
+    protected void clearElements(int from, int to) {
+        // Nothing to release in a primitive column.
+    }
+
+    @Override
+    protected void resizeElements(int capacity) {
+        elements = Arrays.copyOf(elements, capacity);
+    }
+
+    @Override
+    protected AbstractArrayTree<Integer> newTree(int initialCapacity) {
+        return new IntArrayTree(initialCapacity);
+    }
+
+    @Override
+    public Position<Integer> addRoot(int e) {
+        int i = insertRoot();
+        elements[i] = e;
+        return position(i);
+    }
+
+    @Override
+    public Position<Integer> add(int element, Position<Integer> p) {
+        int i = insertChild(checkPosition(p));
+        elements[i] = element;
+        return position(i);
+    }
+
+    @Override
+    public Position<Integer> add(int element, Position<Integer> p, int n) {
+        int i = insertChild(checkPosition(p), n);
+        elements[i] = element;
+        return position(i);
+    }
+
+    @Override
+    public int getInt(Position<Integer> p) {
+        return elements[checkPosition(p)];
+    }
+
+    @Override
+    public int replace(Position<Integer> p, int e) {
+        int i = checkPosition(p);
+        int old = elements[i];
+        elements[i] = e;
+        return old;
+    }
+
+    private PrimitiveIterator.OfInt values(PrimitiveIterator.OfInt indices) {
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return indices.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return elements[indices.nextInt()];
+            }
+        };
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt intIterator() {
+        return values(breadthFirstIndices());
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt intIteratorPreOrden() {
+        return values(preOrdenIndices());
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt intIteratorPostOrden() {
+        return values(postOrdenIndices());
+    }
+}
@@ -0,0 +1,71 @@
+import material.Position;
+
+import java.util.PrimitiveIterator;
+
+
+/**
+ * An NAryTree of int elements. The methods of this interface read and write the
+ * elements without boxing them; the inherited ones still work with Integer.
+ */
+public interface IntNAryTree extends NAryTree<Integer> {
+
+    /**
+     * Adds a root node to an empty tree
+     *
+     * @param e The element stored at the new root
+     * @return The position of the new root
+     */
+    public Position<Integer> addRoot(int e);
+
+    /**
+     * Add a new node whose parent is pointed by a given position.
+     *
+     * @param element The element stored in the new created node.
+     * @param p       The position of the parent
+     * @return The position of the new node.
+     */
+    public Position<Integer> add(int element, Position<Integer> p);
+
+    /**
+     * Add a new node whose parent is pointed by a given position, and set the
+     * child at the position n if possible.
+     *
+     * @param element The element stored in the new created node.
+     * @param p       The position of the parent
+     * @param n       The position of the child
+     * @return The position of the new node.
+     */
+    public Position<Integer> add(int element, Position<Integer> p, final int n);
+
+    /**
+     * Returns the element stored at a node.
+     *
+     * @param p The position of the node
+     * @return The element, unboxed
+     */
+    public int getInt(Position<Integer> p);
+
+    /**
+     * Replaces the element at a node.
+     *
+     * @param p The position of the node to be replaced.
+     * @param e The new element
+     * @return The old element
+     */
+    public int replace(Position<Integer> p, int e);
+
+    /**
+     * Returns the elements in breadth-first order, like iterator().
+     */
+    public PrimitiveIterator.OfInt intIterator();
+
+    /**
+     * Returns the elements in pre-order.
+     */
+    public PrimitiveIterator.OfInt intIteratorPreOrden();
+
+    /**
+     * Returns the elements in post-order.
+     */
+    public PrimitiveIterator.OfInt intIteratorPostOrden();
+}
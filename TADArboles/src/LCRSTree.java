@@ -1,8 +1,12 @@
 import material.Position;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 
 /**
@@ -12,7 +16,7 @@ import java.util.List;
  */
 public class LCRSTree<E> implements NAryTree<E> {
 
-    private class LCRSNode<T> implements Position<T> {
+    private static class LCRSNode<T> implements Position<T> {
 
         private T element;
         
@@ -22,6 +26,26 @@ public class LCRSTree<E> implements NAryTree<E> {
 
         private LCRSNode<T> sigSibling;
 
+        /**
+         * Previous sibling, or the last one for the first child, so that the
+         * end of the sigSibling chain that starts at leftChild is
+         * leftChild.antSibling.
+         */
+        private LCRSNode<T> antSibling;
+
+        private int subtreeSize = 1;
+
+        /** Labels of the entries of the node in the Euler tour; see TourLabels. */
+        private int enter;
+        private int exit;
+
+        /**
+         * What only some nodes need, in one field: null, the ArenaPosition of
+         * a node from an arena, or the Extras of a node that has an index of
+         * its children or is in one.
+         */
+        private Object extra;
+
         public LCRSNode(T elem, LCRSNode<T> parent){
             element = elem;
             this.parent = parent;
@@ -47,19 +71,394 @@ public class LCRSTree<E> implements NAryTree<E> {
             return sigSibling;
         }
 
+        public LCRSNode<T> getLastChild(){
+            return (leftChild == null) ? null : leftChild.antSibling;
+        }
+
+        /**
+         * Returns the previous sibling of the node, or null for the first child.
+         */
+        public LCRSNode<T> getAntSibling(){
+            return (parent == null || parent.leftChild == this) ? null : antSibling;
+        }
+
+        /**
+         * Returns the position handed out for the node: the node itself, or an
+         * ArenaPosition when it comes from an arena.
+         */
+        @SuppressWarnings("unchecked")
+        private Position<T> handle(){
+            Object x = extra;
+            if(x == null){
+                return this;
+            }
+            return (x instanceof Extras) ? ((Extras<T>) x).handle : (Position<T>) x;
+        }
+
+        @SuppressWarnings("unchecked")
+        private IndexedList<LCRSNode<T>> childIndex(){
+            return (extra instanceof Extras) ? ((Extras<T>) extra).childIndex : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object entry(){
+            return (extra instanceof Extras) ? ((Extras<T>) extra).entry : null;
+        }
+
+        /**
+         * Returns the Extras of the node, moving its position into them the
+         * first time.
+         */
+        @SuppressWarnings("unchecked")
+        private Extras<T> extras(){
+            if(!(extra instanceof Extras)){
+                Extras<T> extras = new Extras<>();
+                extras.handle = handle();
+                extra = extras;
+            }
+            return (Extras<T>) extra;
+        }
+
+        private void setEntry(Object entry){
+            if(entry != null || extra instanceof Extras){
+                extras().entry = entry;
+            }
+        }
+
+        /**
+         * Gets a released node ready to be handed out again, as if it were new.
+         */
+        private void reset(T elem, LCRSNode<T> parent){
+            this.element = elem;
+            this.parent = parent;
+            this.leftChild = null;
+            this.sigSibling = null;
+            this.antSibling = null;
+            this.extra = null;
+            this.subtreeSize = 1;
+        }
+
     }
 
+    /**
+     * The fields of the few nodes that need more than a position; see
+     * LCRSNode.extra.
+     */
+    private static final class Extras<T> {
+        /** The position handed out for the node. */
+        private Position<T> handle;
+        /**
+         * The children in order, kept once a positional access reaches past
+         * WIDE_NODE of them, or null.
+         */
+        private IndexedList<LCRSNode<T>> childIndex;
+        /** Handle of the node in the childIndex of its parent, or null. */
+        private Object entry;
+    }
+
+    /**
+     * The trees that share the nodes handed out by an arena to one tree in one
+     * generation. attach joins the owner of the attached tree to that of the
+     * host, union-find style, so that the nodes of both check as the host's.
+     */
+    private static final class Owner {
+        private final Arena arena;
+        private final int generation;
+        /** The owner this one was joined to, or null. */
+        private Owner parent;
+
+        private Owner(Arena arena){
+            this.arena = arena;
+            this.generation = arena.generation;
+        }
+
+        private Owner find(){
+            Owner owner = this;
+            while(owner.parent != null){
+                if(owner.parent.parent != null){
+                    owner.parent = owner.parent.parent;
+                }
+                owner = owner.parent;
+            }
+            return owner;
+        }
+
+        /** Returns true if the arena was cleared after the owner was made. */
+        private boolean stale(){
+            return generation != arena.generation;
+        }
+    }
+
+    /**
+     * The position of a node handed out by an arena. The node is reused after
+     * a clear, so it cannot be its own position: every handout gets a new one,
+     * which remembers the owner of the node and, through it, the generation.
+     */
+    private static final class ArenaPosition<T> implements Position<T> {
+        private final LCRSNode<T> node;
+        private final Owner owner;
+
+        private ArenaPosition(LCRSNode<T> node, Owner owner){
+            this.node = node;
+            this.owner = owner;
+        }
+
+        @Override
+        public T getElement() {
+            if(owner.stale()){
+                throw new RuntimeException("invalid position, its arena was cleared");
+            }
+            return node.getElement();
+        }
+    }
+
+    /**
+     * A slab of nodes shared by one or more LCRSTrees, for workloads that build
+     * trees and throw them away. Nodes are handed out in order from the slab,
+     * and clear() gives all of them back at once in O(1): every tree that uses
+     * the arena becomes empty, and the nodes are reused by the trees built next
+     * instead of being left to the garbage collector. Nodes removed from a tree
+     * are only reused after a clear.
+     *
+     * Every node handed out gets a new position, a small object that knows the
+     * tree and the generation of the arena it was handed out in, so positions
+     * of a cleared arena and positions of other trees are rejected as invalid
+     * even when their node has been reused. Once the slab is warm, that
+     * position is the only allocation of an add. The elements of the released
+     * nodes stay reachable until their nodes are reused, or until release()
+     * drops the slab. An arena is not thread safe.
+     */
+    public static final class Arena {
+
+        private LCRSNode<?>[] slab;
+        /** Number of nodes handed out since the last clear. */
+        private int used;
+        private int generation;
+
+        public Arena(){
+            this(1024);
+        }
+
+        /**
+         * @param capacity number of nodes to make room for up front.
+         */
+        public Arena(int capacity){
+            if(capacity < 1){
+                throw new RuntimeException("La capacidad de la arena debe ser positiva");
+            }
+            slab = new LCRSNode<?>[capacity];
+        }
+
+        /**
+         * Returns a node from the slab, reusing a released one when there is.
+         */
+        @SuppressWarnings("unchecked")
+        private <T> LCRSNode<T> node(T elem, LCRSNode<T> parent, Owner owner){
+            if(used == slab.length){
+                slab = Arrays.copyOf(slab, slab.length * 2);
+            }
+            LCRSNode<T> node = (LCRSNode<T>) slab[used];
+            if(node == null){
+                node = new LCRSNode<>(elem, parent);
+                slab[used] = node;
+            }else{
+                node.reset(elem, parent);
+            }
+            node.extra = new ArenaPosition<>(node, owner);
+            used++;
+            return node;
+        }
+
+        /**
+         * Releases every node handed out, in O(1), emptying all the trees that
+         * use the arena.
+         */
+        public void clear(){
+            used = 0;
+            generation++;
+        }
+
+        /**
+         * Clears the arena and drops its slab, so the released nodes and their
+         * elements can be collected.
+         */
+        public void release(){
+            clear();
+            slab = new LCRSNode<?>[slab.length];
+        }
+
+        /**
+         * Returns the number of nodes handed out since the last clear.
+         */
+        public int used(){
+            return used;
+        }
+    }
+
+    /**
+     * Position from which child(v, n) and add(e, v, n) stop walking the sibling
+     * chain and index the children of v in an IndexedList, where reaching the
+     * n-th child takes O(log k) instead of O(n).
+     */
+    private static final int WIDE_NODE = 1024;
+
+    /**
+     * Keeps the Euler tour labels of the nodes of every LCRSTree.
+     */
+    private static final TourLabels<LCRSNode<?>> TOUR = new TourLabels<LCRSNode<?>>() {
+        @Override
+        LCRSNode<?> parent(LCRSNode<?> node) {
+            return node.getParent();
+        }
+
+        @Override
+        LCRSNode<?> firstChild(LCRSNode<?> node) {
+            return node.getLeftChild();
+        }
+
+        @Override
+        LCRSNode<?> lastChild(LCRSNode<?> node) {
+            return node.getLastChild();
+        }
+
+        @Override
+        LCRSNode<?> previousSibling(LCRSNode<?> node) {
+            return node.getAntSibling();
+        }
+
+        @Override
+        LCRSNode<?> nextSibling(LCRSNode<?> node) {
+            return node.getSigSibling();
+        }
+
+        @Override
+        int subtreeSize(LCRSNode<?> node) {
+            return node.subtreeSize;
+        }
+
+        @Override
+        int enter(LCRSNode<?> node) {
+            return node.enter;
+        }
+
+        @Override
+        int exit(LCRSNode<?> node) {
+            return node.exit;
+        }
+
+        @Override
+        void setEnter(LCRSNode<?> node, int label) {
+            node.enter = label;
+        }
+
+        @Override
+        void setExit(LCRSNode<?> node, int label) {
+            node.exit = label;
+        }
+    };
+
     private LCRSNode<E> root;
     private int size;
+    /** Where the nodes come from, or null to allocate each of them. */
+    private final Arena arena;
+    /**
+     * Owner of the nodes the tree got from its arena since its last root, or
+     * null without an arena.
+     */
+    private Owner owner;
 
     public LCRSTree(LCRSNode<E> root, int size){
+        this(root, size, null);
+    }
+
+    private LCRSTree(LCRSNode<E> root, int size, Arena arena){
         this.root = root;
         this.size = size;
+        this.arena = arena;
     }
 
     public LCRSTree(){
+        this(null, 0, null);
+    }
+
+    /**
+     * Creates an empty tree whose nodes come from the given arena, which other
+     * trees may share.
+     */
+    public LCRSTree(Arena arena){
+        this(null, 0, arena);
+        if(arena == null){
+            throw new RuntimeException("La arena no puede ser null");
+        }
+    }
+
+    private LCRSNode<E> newNode(E element, LCRSNode<E> parent){
+        return (arena == null) ? new LCRSNode<>(element, parent) : arena.node(element, parent, owner);
+    }
+
+    /**
+     * Returns the position handed out for node, or null if there is no node.
+     */
+    private static <T> Position<T> position(LCRSNode<T> node){
+        return (node == null) ? null : node.handle();
+    }
+
+    /**
+     * Forgets the nodes of the tree if its arena was cleared after they were
+     * handed out.
+     */
+    private void checkGeneration(){
+        if(arena != null && root != null && owner.stale()){
+            root = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * Empties the tree in O(1). A tree with an arena clears the arena, which
+     * releases its nodes for reuse and empties every tree that shares it.
+     */
+    public void clear(){
         root = null;
         size = 0;
+        if(arena != null){
+            arena.clear();
+        }
+    }
+
+    /**
+     * Builds a tree in one O(n) pass, without checking positions or walking
+     * sibling chains. Node i of the topology gets elements.get(i).
+     *
+     * @param elements the element of every node.
+     * @param topology the shape of the tree.
+     * @return the new tree.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> LCRSTree<E> build(List<? extends E> elements, TreeTopology topology) {
+        int n = topology.size();
+        if (elements.size() != n) {
+            throw new RuntimeException("El arbol tiene " + n + " nodos pero hay " + elements.size() + " elementos");
+        }
+        LCRSTree<E> tree = new LCRSTree<>();
+        int[] sizes = topology.subtreeSizes();
+        Object[] nodes = new Object[n];
+        for (int k = 0; k < n; k++) {
+            int v = topology.breadthFirst(k);
+            int p = topology.parent(v);
+            LCRSNode<E> node = new LCRSNode<>(elements.get(v), (p < 0) ? null : (LCRSNode<E>) nodes[p]);
+            node.subtreeSize = sizes[v];
+            if (p >= 0) {
+                tree.appendChild(node.getParent(), node);
+            }
+            nodes[v] = node;
+        }
+        if (n > 0) {
+            tree.root = (LCRSNode<E>) nodes[topology.root()];
+            TOUR.build(nodes, topology, sizes);
+        }
+        tree.size = n;
+        return tree;
     }
 
     @Override
@@ -67,32 +466,101 @@ public class LCRSTree<E> implements NAryTree<E> {
         if(!isEmpty()){
             throw new RuntimeException("El arbol no esta vacio, ya existe una raiz");
         }
-        root = new LCRSNode<E>(e);
+        if(arena != null){
+            owner = new Owner(arena);
+        }
+        root = newNode(e, null);
+        TOUR.root(root);
         size = 1;
-        return root;
+        return root.handle();
     }
 
+    /**
+     * Returns the node of p. With an arena, p must have been handed out to
+     * this tree, to a tree attached to it or to one returned by subTree, since
+     * the arena was last cleared.
+     */
+    @SuppressWarnings("unchecked")
     private LCRSNode<E> checkPosition(Position<E> p){
-        if(!(p instanceof LCRSNode<E>)){
+        if(arena == null){
+            if(!(p instanceof LCRSNode)){
+                throw new RuntimeException("invalid position");
+            }
+            return (LCRSNode<E>) p;
+        }
+        if(!(p instanceof ArenaPosition)){
             throw new RuntimeException("invalid position");
         }
-        return (LCRSNode<E>) p;
+        ArenaPosition<E> position = (ArenaPosition<E>) p;
+        if(position.owner.stale()){
+            throw new RuntimeException("invalid position, its arena was cleared");
+        }
+        if(owner == null || position.owner.find() != owner.find()){
+            throw new RuntimeException("invalid position, it belongs to another tree");
+        }
+        return position.node;
     }
-    @Override
-    public Position<E> add(E element, Position<E> p) {
-        LCRSNode<E> nodeParent = checkPosition(p);
-        LCRSNode<E> nodeAux = new LCRSNode<E>(element,nodeParent);
-        if(nodeParent.getLeftChild() == null){
-            nodeParent.leftChild = nodeAux;  
+    /**
+     * Links child as the last child of nodeParent in constant time, reaching
+     * the last child through the antSibling of the first instead of walking
+     * the sigSibling chain.
+     */
+    private void appendChild(LCRSNode<E> nodeParent, LCRSNode<E> child){
+        child.parent = nodeParent;
+        child.sigSibling = null;
+        LCRSNode<E> first = nodeParent.getLeftChild();
+        if(first == null){
+            nodeParent.leftChild = child;
+            child.antSibling = child;
         }else{
-            LCRSNode<E> nodeMove = nodeParent.getLeftChild();
-            while(nodeMove.getSigSibling() != null){
-                nodeMove = nodeMove.getSigSibling();
+            LCRSNode<E> last = first.antSibling;
+            last.sigSibling = child;
+            child.antSibling = last;
+            first.antSibling = child;
+        }
+        IndexedList<LCRSNode<E>> index = nodeParent.childIndex();
+        if(index != null){
+            index.add(child);
+            child.setEntry(index.handle(index.size() - 1));
+        }
+    }
+
+    /**
+     * Returns the n-th child of node, or null if it has no such child. Past
+     * WIDE_NODE children the node gets an index of them, built in one walk,
+     * and every later positional access uses it.
+     */
+    private LCRSNode<E> nthChild(LCRSNode<E> node, int n){
+        IndexedList<LCRSNode<E>> index = node.childIndex();
+        if(index == null && n >= WIDE_NODE){
+            index = new IndexedList<>();
+            for(LCRSNode<E> nodeMove = node.getLeftChild(); nodeMove != null; nodeMove = nodeMove.getSigSibling()){
+                index.add(nodeMove);
+            }
+            for(int i = 0; i < index.size(); i++){
+                index.get(i).setEntry(index.handle(i));
             }
-            nodeMove.sigSibling = nodeAux;
+            node.extras().childIndex = index;
         }
+        if(index != null){
+            return (n < index.size()) ? index.get(n) : null;
+        }
+        LCRSNode<E> nodeMove = node.getLeftChild();
+        for(int i = 0; i < n && nodeMove != null; i++){
+            nodeMove = nodeMove.getSigSibling();
+        }
+        return nodeMove;
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        LCRSNode<E> nodeParent = checkPosition(p);
+        LCRSNode<E> nodeAux = newNode(element, nodeParent);
+        appendChild(nodeParent, nodeAux);
+        updateSubtreeSizes(nodeParent, 1);
+        TOUR.insert(nodeAux, nodeAux.getAntSibling(), null);
         size++;
-        return nodeAux;
+        return nodeAux.handle();
     }
     
     private void checkChildrenPosition(int n){
@@ -104,26 +572,35 @@ public class LCRSTree<E> implements NAryTree<E> {
     @Override
     public Position<E> add(E element, Position<E> p, int n) {
         LCRSNode<E> nodeParent = checkPosition(p);
-        LCRSNode<E> nodeAux = new LCRSNode<E>(element, nodeParent);
         checkChildrenPosition(n);
-        if(n == 0){
-            nodeAux.sigSibling = nodeParent.getLeftChild();
+        LCRSNode<E> previous = (n == 0) ? null : nthChild(nodeParent, n - 1);
+        if(n > 0 && previous == null){
+            throw new RuntimeException("Esa posicion no es accesible");
+        }
+        LCRSNode<E> nodeAux = newNode(element, nodeParent);
+        LCRSNode<E> next = (previous == null) ? nodeParent.getLeftChild() : previous.getSigSibling();
+        nodeAux.sigSibling = next;
+        if(previous == null){
+            nodeAux.antSibling = (next == null) ? nodeAux : next.antSibling;
             nodeParent.leftChild = nodeAux;
         }else{
-            LCRSNode<E> nodeMove = nodeParent.getLeftChild();
-            int i = 1;
-            while(i < n && nodeMove.getSigSibling() != null){
-                nodeMove = nodeMove.getSigSibling();
-                i++;
-            }
-            if(i != n){
-                throw new RuntimeException("Esa posicion no es accesible");
-            }
-            nodeAux.sigSibling = nodeMove.getSigSibling();
-            nodeMove.sigSibling = nodeAux;
+            nodeAux.antSibling = previous;
+            previous.sigSibling = nodeAux;
         }
+        if(next != null){
+            next.antSibling = nodeAux;
+        }else{
+            nodeParent.getLeftChild().antSibling = nodeAux;
+        }
+        IndexedList<LCRSNode<E>> index = nodeParent.childIndex();
+        if(index != null){
+            index.add(n, nodeAux);
+            nodeAux.setEntry(index.handle(n));
+        }
+        updateSubtreeSizes(nodeParent, 1);
+        TOUR.insert(nodeAux, previous, next);
         size++;
-        return nodeAux;        
+        return nodeAux.handle();
     }
 
     @Override
@@ -143,17 +620,23 @@ public class LCRSTree<E> implements NAryTree<E> {
         return elementAux;
     }
 
-    private int computeSize(LCRSNode<E> node){
-        if(node == null){   //caso base
-            return 0;
-        }
-        int size = 1;
-        LCRSNode<E> child = node.getLeftChild();
-        while(child.getLeftChild() != null){
-            size += computeSize(node.getLeftChild());
-            child = child.getSigSibling();
+    /**
+     * Adds delta to the subtree size of node and of all its ancestors.
+     */
+    private void updateSubtreeSizes(LCRSNode<E> node, int delta){
+        while(node != null){
+            node.subtreeSize += delta;
+            node = node.getParent();
         }
-        return size;
+    }
+
+    /**
+     * Returns the number of nodes of the subtree rooted at v. Every node keeps
+     * this count up to date, so it takes constant time.
+     */
+    @Override
+    public int subtreeSize(Position<E> v) {
+        return checkPosition(v).subtreeSize;
     }
 
     @Override
@@ -163,23 +646,67 @@ public class LCRSTree<E> implements NAryTree<E> {
             root = null;
             size = 0;
         }else{
-            if(node.getParent().getLeftChild() == node){
-                node.getParent().leftChild = node.getSigSibling();
+            LCRSNode<E> nodeParent = node.getParent();
+            IndexedList<LCRSNode<E>> index = nodeParent.childIndex();
+            // Wide nodes find the child in their index through its handle in O(log k).
+            unlinkChild(nodeParent, node, (index == null) ? -1 : index.indexOfHandle(node.entry()));
+        }
+    }
+
+    /**
+     * Removes the n-th child of p, reaching it through the index of the
+     * children when p has one instead of walking the sibling chain.
+     */
+    @Override
+    public void removeChild(Position<E> p, int n) {
+        LCRSNode<E> nodeParent = checkPosition(p);
+        checkChildrenPosition(n);
+        LCRSNode<E> node = nthChild(nodeParent, n);
+        if(node == null){
+            throw new RuntimeException("Esa posicion no es accesible");
+        }
+        unlinkChild(nodeParent, node, n);
+    }
+
+    /**
+     * Unlinks node, the n-th child of nodeParent, with its subtree. The
+     * antSibling links take it out of the chain in constant time; n is only
+     * used when nodeParent has an index of its children.
+     */
+    private void unlinkChild(LCRSNode<E> nodeParent, LCRSNode<E> node, int n){
+        LCRSNode<E> first = nodeParent.getLeftChild();
+        LCRSNode<E> next = node.getSigSibling();
+        if(node == first){
+            nodeParent.leftChild = next;
+            if(next != null){
+                next.antSibling = node.antSibling;
+            }
+        }else{
+            LCRSNode<E> previous = node.antSibling;
+            previous.sigSibling = next;
+            if(next != null){
+                next.antSibling = previous;
             }else{
-                LCRSNode<E> nodeMove = node.getParent().getLeftChild();
-                while(nodeMove.getSigSibling() != node){
-                    nodeMove = nodeMove.getSigSibling();
-                }
-                nodeMove.sigSibling = node.getSigSibling(); 
+                first.antSibling = previous;
             }
-            size -= computeSize(node);
         }
+        IndexedList<LCRSNode<E>> index = nodeParent.childIndex();
+        if(index != null){
+            index.remove(n);
+            node.setEntry(null);
+        }
+        updateSubtreeSizes(nodeParent, -node.subtreeSize);
+        node.parent = null;
+        node.sigSibling = null;
+        node.antSibling = null;
+        size -= node.subtreeSize;
     }
 
     @Override
     public NAryTree<E> subTree(Position<E> v) {
         LCRSNode<E> node = checkPosition(v);
-        LCRSTree<E> tree = new LCRSTree<>(node,computeSize(node));
+        LCRSTree<E> tree = new LCRSTree<>(node, node.subtreeSize, arena);
+        tree.owner = owner;
         return tree;
     }
 
@@ -192,46 +719,83 @@ public class LCRSTree<E> implements NAryTree<E> {
 
     @Override
     public void attach(Position<E> p, NAryTree<E> t) {
-        LCRSNode<E> node = checkPosition(p);
+        checkGeneration();
+        LCRSNode<E> node = (p == null) ? root : checkPosition(p);
         LCRSTree<E> subTree = checkTree(t);
-        LCRSNode<E> nodeMove = node.getLeftChild();
-        if(nodeMove != null){
-            while(nodeMove.getSigSibling() != null){
-                nodeMove = nodeMove.getSigSibling();
-            }  
+        if(subTree.isEmpty()){
+            return;
+        }
+        if(node == null){
+            throw new RuntimeException("El arbol esta vacio, no hay nodo al que enganchar");
         }
-        node.leftChild = subTree.root;
-        size += subTree.size;
+        if(subTree.arena != arena){
+            throw new RuntimeException("Los arboles no comparten la arena de sus nodos");
+        }
+        if(arena != null && subTree.owner.find() != owner.find()){
+            subTree.owner.find().parent = owner.find();
+        }
+        LCRSNode<E> previous = node.getLastChild();
+        appendChild(node, subTree.root);
+        updateSubtreeSizes(node, subTree.root.subtreeSize);
+        TOUR.insert(subTree.root, previous, null);
+        size += subTree.root.subtreeSize;
+    }
+
+    /**
+     * Returns true if v is w or an ancestor of w. Every change of shape keeps
+     * the labels of the nodes in the Euler tour up to date, in O(log n)
+     * amortized (see TourLabels), so the subtree of v is the range of labels
+     * from its enter to its exit, and every call is two comparisons instead of
+     * a walk up from w.
+     */
+    @Override
+    public boolean isAncestor(Position<E> v, Position<E> w) {
+        LCRSNode<E> ancestor = checkPosition(v);
+        LCRSNode<E> node = checkPosition(w);
+        return ancestor.enter <= node.enter && node.exit <= ancestor.exit;
     }
 
     @Override
     public boolean isEmpty() {
+        checkGeneration();
         return size == 0;
     }
 
     @Override
     public Position<E> root() {
-        return root;
+        checkGeneration();
+        return position(root);
     }
 
     @Override
     public Position<E> parent(Position<E> v) {
         LCRSNode<E> node = checkPosition(v);
-        return node.getParent();
+        return position(node.getParent());
     }
 
     @Override
     public Iterable<? extends Position<E>> children(Position<E> v) {
         LCRSNode<E> node = checkPosition(v);
-        List<LCRSNode<E>> list = new ArrayList<LCRSNode<E>>();
+        List<Position<E>> list = new ArrayList<Position<E>>();
         LCRSNode<E> nodeMove = node.getLeftChild();
         while(nodeMove != null){
-            list.add(nodeMove);
+            list.add(nodeMove.handle());
             nodeMove = nodeMove.getSigSibling();
         }
         return list;
     }
 
+    @Override
+    public Position<E> child(Position<E> v, int n) {
+        LCRSNode<E> node = checkPosition(v);
+        checkChildrenPosition(n);
+        LCRSNode<E> nodeMove = nthChild(node, n);
+        if(nodeMove == null){
+            throw new RuntimeException("Esa posicion no es accesible");
+        }
+        return nodeMove.handle();
+    }
+
     @Override
     public boolean isInternal(Position<E> v) {
         LCRSNode<E> node = checkPosition(v);
@@ -252,71 +816,132 @@ public class LCRSTree<E> implements NAryTree<E> {
 
     @Override
     public Iterator<Position<E>> iterator() {
-        if(isEmpty()){
-            return new ArrayList<Position<E>>().iterator();
-        }
-        List<Position<E>> list = new ArrayList<>();
-        breadthFirstTraversal(root, list);
-        return list.iterator();
-    }
-
-    private void breadthFirstTraversal(LCRSNode<E> node, List<Position<E>> list){
-        if(node != null){
-            List<LCRSNode<E>> queue = new ArrayList<>();
-            queue.add(node);
-            while(!queue.isEmpty()){
-                LCRSNode<E> nodeToVisit = queue.remove(0);
-                list.add(nodeToVisit);
-                LCRSNode<E> nodeMove = nodeToVisit;
-                nodeMove = nodeMove.getLeftChild();
-                while(nodeMove != null){
-                    queue.add(nodeMove);
-                    nodeMove = nodeMove.getSigSibling();
-                } 
-            }
-            
-        }
+        checkGeneration();
+        return new BreadthFirstIterator();
     }
 
-    private void preOrdenTraversal(LCRSNode<E> node, List<Position<E>> list){
-        if(node != null){
-            list.add(node);
-            List<LCRSNode<E>> childrenList = new ArrayList<>();
-            LCRSNode<E> nodeMove = node.getLeftChild();
-            while(nodeMove != null){
-                childrenList.add(nodeMove);
-                nodeMove = nodeMove.getSigSibling();
-            }
-            for(LCRSNode<E> child: childrenList){
-                preOrdenTraversal(child, list);
-            }
+    /**
+     * Breadth-first cursor. Only the first child of every pending node is queued:
+     * its siblings are reached through sigSibling when it is dequeued.
+     */
+    private class BreadthFirstIterator implements Iterator<Position<E>> {
+        private final Deque<LCRSNode<E>> queue = new ArrayDeque<>();
+        private LCRSNode<E> next;
+
+        public BreadthFirstIterator(){
+            next = root;
         }
-    }
 
-    private void postOrdenTraversal(LCRSNode<E> node, List<Position<E>> list){
-        if(node != null){
-            List<LCRSNode<E>> childrenList = new ArrayList<>();
-            LCRSNode<E> nodeMove = node.getLeftChild();
-            //Añadimos los nodos hijos a una lista q se recorrera
-            while(nodeMove != null){
-                childrenList.add(nodeMove);
-                nodeMove = nodeMove.getSigSibling();
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Position<E> next() {
+            if(next == null){
+                throw new NoSuchElementException();
             }
-            for(LCRSNode<E> child: childrenList){
-                postOrdenTraversal(child, list);
+            LCRSNode<E> node = next;
+            if(node.getLeftChild() != null){
+                queue.add(node.getLeftChild());
             }
-            list.add(node);
+            if(node != root && node.getSigSibling() != null){
+                next = node.getSigSibling();
+            }else{
+                next = queue.poll();
+            }
+            return node.handle();
         }
     }
+
     public Iterator<Position<E>> iteratorPreOrden() {
-        return null;
+        checkGeneration();
+        return new PreOrdenIterator();
     }
+
     public Iterator<Position<E>> iteratorPostOrden() {
-        return null;
+        checkGeneration();
+        return new PostOrdenIterator();
+    }
+
+    /**
+     * Pre-order cursor that follows the leftChild, sigSibling and parent links,
+     * so it needs no stack and allocates nothing per node.
+     */
+    private class PreOrdenIterator implements Iterator<Position<E>> {
+        private LCRSNode<E> next;
+
+        public PreOrdenIterator(){
+            next = root;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Position<E> next() {
+            if(next == null){
+                throw new NoSuchElementException();
+            }
+            LCRSNode<E> node = next;
+            if(node.getLeftChild() != null){
+                next = node.getLeftChild();
+            }else{
+                LCRSNode<E> nodeMove = node;
+                while(nodeMove != root && nodeMove.getSigSibling() == null){
+                    nodeMove = nodeMove.getParent();
+                }
+                next = (nodeMove == root) ? null : nodeMove.getSigSibling();
+            }
+            return node.handle();
+        }
     }
 
+    /**
+     * Post-order cursor that follows the leftChild, sigSibling and parent links,
+     * so it needs no stack and allocates nothing per node.
+     */
+    private class PostOrdenIterator implements Iterator<Position<E>> {
+        private LCRSNode<E> next;
+
+        public PostOrdenIterator(){
+            next = (root == null) ? null : firstLeaf(root);
+        }
+
+        private LCRSNode<E> firstLeaf(LCRSNode<E> node){
+            while(node.getLeftChild() != null){
+                node = node.getLeftChild();
+            }
+            return node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Position<E> next() {
+            if(next == null){
+                throw new NoSuchElementException();
+            }
+            LCRSNode<E> node = next;
+            if(node == root){
+                next = null;
+            }else if(node.getSigSibling() != null){
+                next = firstLeaf(node.getSigSibling());
+            }else{
+                next = node.getParent();
+            }
+            return node.handle();
+        }
+    }
 
     public int size() {
+        checkGeneration();
         return size;
     }
 
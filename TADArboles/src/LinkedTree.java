@@ -1,8 +1,12 @@
 import material.Position;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import javax.swing.plaf.basic.BasicTreeUI.TreeCancelEditingAction;
 
@@ -21,10 +25,20 @@ public class LinkedTree<E> implements NAryTree<E> {
      *
      * @param <T> the type of element stored in the node
      */
-    private class TreeNode<T> implements Position<T> {
+    private static class TreeNode<T> implements Position<T> {
         private T element;
-        private List<TreeNode<T>> children = new ArrayList<>();
+        /**
+         * Leaves share the immutable empty list, so they do not pay for a list of
+         * their own; the first child gives the node a real one.
+         */
+        private List<TreeNode<T>> children = Collections.emptyList();
         private TreeNode<T> parent;
+        private int subtreeSize = 1;
+        /** Handle of the node in the children of its parent, if they are an IndexedList. */
+        private Object entry;
+        /** Labels of the entries of the node in the Euler tour; see TourLabels. */
+        private int enter;
+        private int exit;
 
         public TreeNode(T element,TreeNode parent){
             this.element = element;
@@ -59,20 +73,185 @@ public class LinkedTree<E> implements NAryTree<E> {
         public void setChildren(List<TreeNode<T>> children){
             this.children = children;
         }
+
+        /**
+         * Returns the children list, allocating it if the node was a leaf.
+         */
+        public List<TreeNode<T>> getChildrenForAdd(){
+            if(children == Collections.<TreeNode<T>>emptyList()){
+                children = new ArrayList<>(2);
+            }
+            return children;
+        }
+
+        /**
+         * Drops the children list once the last child is gone.
+         */
+        public void releaseChildren(){
+            if(children.isEmpty()){
+                children = Collections.emptyList();
+            }
+        }
+
+        public int getSubtreeSize(){
+            return subtreeSize;
+        }
     }
 
+    /**
+     * Number of children from which a positional insert or remove switches the
+     * children of a node from an ArrayList to an IndexedList.
+     */
+    private static final int WIDE_NODE = 1024;
+
+    /**
+     * Keeps the Euler tour labels of the nodes of every LinkedTree. Siblings
+     * are found through the index of a node in the children of its parent.
+     */
+    private static final TourLabels<TreeNode<?>> TOUR = new TourLabels<TreeNode<?>>() {
+        @Override
+        TreeNode<?> parent(TreeNode<?> node) {
+            return node.getParent();
+        }
+
+        @Override
+        TreeNode<?> firstChild(TreeNode<?> node) {
+            return node.getChildren().isEmpty() ? null : node.getChildren().get(0);
+        }
+
+        @Override
+        TreeNode<?> lastChild(TreeNode<?> node) {
+            List<? extends TreeNode<?>> children = node.getChildren();
+            return children.isEmpty() ? null : children.get(children.size() - 1);
+        }
+
+        @Override
+        TreeNode<?> previousSibling(TreeNode<?> node) {
+            if(node.getParent() == null){
+                return null;
+            }
+            int i = indexInParent(node);
+            return (i == 0) ? null : node.getParent().getChildren().get(i - 1);
+        }
+
+        @Override
+        TreeNode<?> nextSibling(TreeNode<?> node) {
+            if(node.getParent() == null){
+                return null;
+            }
+            List<? extends TreeNode<?>> siblings = node.getParent().getChildren();
+            int i = indexInParent(node);
+            return (i == siblings.size() - 1) ? null : siblings.get(i + 1);
+        }
+
+        @Override
+        int subtreeSize(TreeNode<?> node) {
+            return node.getSubtreeSize();
+        }
+
+        @Override
+        int enter(TreeNode<?> node) {
+            return node.enter;
+        }
+
+        @Override
+        int exit(TreeNode<?> node) {
+            return node.exit;
+        }
+
+        @Override
+        void setEnter(TreeNode<?> node, int label) {
+            node.enter = label;
+        }
+
+        @Override
+        void setExit(TreeNode<?> node, int label) {
+            node.exit = label;
+        }
+    };
+
     private TreeNode<E> root;
     private int size;
     public LinkedTree(){
         size = 0;
     }
 
+    /**
+     * Builds a tree in one O(n) pass, without checking positions. Node i of the
+     * topology gets elements.get(i), and the children lists are created with
+     * their final size; leaves keep the shared empty list.
+     *
+     * @param elements the element of every node.
+     * @param topology the shape of the tree.
+     * @return the new tree.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> LinkedTree<E> build(List<? extends E> elements, TreeTopology topology) {
+        int n = topology.size();
+        if (elements.size() != n) {
+            throw new RuntimeException("The tree has " + n + " nodes but " + elements.size() + " elements");
+        }
+        LinkedTree<E> tree = new LinkedTree<>();
+        int[] sizes = topology.subtreeSizes();
+        Object[] nodes = new Object[n];
+        for (int k = 0; k < n; k++) {
+            int v = topology.breadthFirst(k);
+            int p = topology.parent(v);
+            TreeNode<E> node = new TreeNode<>(elements.get(v), (p < 0) ? null : (TreeNode<E>) nodes[p]);
+            node.subtreeSize = sizes[v];
+            int childCount = topology.childCount(v);
+            if (childCount > 0) {
+                node.setChildren(new ArrayList<>(childCount));
+            }
+            if (p >= 0) {
+                node.getParent().getChildren().add(node);
+            }
+            nodes[v] = node;
+        }
+        if (n > 0) {
+            tree.root = (TreeNode<E>) nodes[topology.root()];
+            TOUR.build(nodes, topology, sizes);
+        }
+        tree.size = n;
+        return tree;
+    }
+
+    /**
+     * Returns the index of node in the children of its parent: through its
+     * handle when they are an IndexedList, else by a binary search on the
+     * enter labels, which grow along the siblings. A search that does not
+     * land on the node itself falls back to a scan.
+     */
+    private static int indexInParent(TreeNode<?> node){
+        List<? extends TreeNode<?>> children = node.getParent().getChildren();
+        if(children instanceof IndexedList){
+            return ((IndexedList<?>) children).indexOfHandle(node.entry);
+        }
+        int low = 0;
+        int high = children.size() - 1;
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            TreeNode<?> sibling = children.get(mid);
+            if(sibling.enter < node.enter){
+                low = mid + 1;
+            }else if(sibling.enter > node.enter){
+                high = mid - 1;
+            }else if(sibling == node){
+                return mid;
+            }else{
+                break;
+            }
+        }
+        return children.indexOf(node);
+    }
+
     @Override
     public Position<E> addRoot(E e) {
         if(!isEmpty()){
             throw new RuntimeException("El arbol no es vacio, ya tiene una raiz");
         }
         root = new TreeNode<E>(e);
+        TOUR.root(root);
         size ++;
         return root;
     }
@@ -87,8 +266,12 @@ public class LinkedTree<E> implements NAryTree<E> {
     @Override
     public Position<E> add(E element, Position<E> p) {
         TreeNode<E> parent = checkPosition(p);
-        TreeNode node = new TreeNode<>(element,parent);
-        parent.getChildren().add(node);
+        TreeNode<E> node = new TreeNode<>(element,parent);
+        List<TreeNode<E>> children = parent.getChildren();
+        TreeNode<E> previous = children.isEmpty() ? null : children.get(children.size() - 1);
+        insertChild(parent, children.size(), node);
+        updateSubtreeSizes(parent, 1);
+        TOUR.insert(node, previous, null);
         size++;
         return node;
     }
@@ -99,12 +282,68 @@ public class LinkedTree<E> implements NAryTree<E> {
         }
     }
 
+    /**
+     * Returns the children of a node ready for an insert or remove in the middle.
+     * Wide nodes move to an IndexedList, where those take O(log k) instead of
+     * shifting every later child.
+     */
+    private List<TreeNode<E>> childrenForUpdate(TreeNode<E> parent, int n){
+        List<TreeNode<E>> children = parent.getChildrenForAdd();
+        if(children.size() >= WIDE_NODE && n < children.size() - 1 && !(children instanceof IndexedList)){
+            IndexedList<TreeNode<E>> indexed = new IndexedList<>(children);
+            for(int i = 0; i < indexed.size(); i++){
+                indexed.get(i).entry = indexed.handle(i);
+            }
+            children = indexed;
+            parent.setChildren(children);
+        }
+        return children;
+    }
+
+    /**
+     * Inserts node as the n-th child of parent, keeping its handle if the
+     * children are an IndexedList.
+     */
+    private void insertChild(TreeNode<E> parent, int n, TreeNode<E> node){
+        List<TreeNode<E>> children = childrenForUpdate(parent, n);
+        children.add(n, node);
+        if(children instanceof IndexedList){
+            node.entry = ((IndexedList<TreeNode<E>>) children).handle(n);
+        }
+    }
+
+    /**
+     * Takes node out of the children of its parent. Wide lists find it through
+     * its handle in O(log k) instead of searching them.
+     */
+    private void unlinkChild(TreeNode<E> parent, TreeNode<E> node){
+        List<TreeNode<E>> children = parent.getChildren();
+        int last = children.size() - 1;
+        if(children.get(last) == node){
+            children.remove(last);
+        }else{
+            children = childrenForUpdate(parent, 0);
+            if(children instanceof IndexedList){
+                children.remove(((IndexedList<TreeNode<E>>) children).indexOfHandle(node.entry));
+            }else{
+                children.remove(node);
+            }
+        }
+        node.entry = null;
+        parent.releaseChildren();
+    }
+
     @Override
     public Position<E> add(E element, Position<E> p, int n) {
         TreeNode<E> parent = checkPosition(p);
-        TreeNode node = new TreeNode<>(element, parent);
+        TreeNode<E> node = new TreeNode<>(element, parent);
         checkPositionOfChildrenList(n, parent);
-        parent.getChildren().add(n, node);
+        List<TreeNode<E>> children = parent.getChildren();
+        TreeNode<E> previous = (n == 0) ? null : children.get(n - 1);
+        TreeNode<E> next = (n == children.size()) ? null : children.get(n);
+        insertChild(parent, n, node);
+        updateSubtreeSizes(parent, 1);
+        TOUR.insert(node, previous, next);
         size++;
         return node;
     }
@@ -126,6 +365,16 @@ public class LinkedTree<E> implements NAryTree<E> {
         return elementAux;
     }
 
+    /**
+     * Adds delta to the subtree size of node and of all its ancestors.
+     */
+    private void updateSubtreeSizes(TreeNode<E> node, int delta){
+        while(node != null){
+            node.subtreeSize += delta;
+            node = node.getParent();
+        }
+    }
+
     @Override
     public void remove(Position<E> p) {
         TreeNode<E> node = checkPosition(p);
@@ -133,17 +382,44 @@ public class LinkedTree<E> implements NAryTree<E> {
             root = null;
             size = 0;
         }else{
-            node.getParent().getChildren().remove(node);
-            size -= computeSize(node);
+            TreeNode<E> parent = node.getParent();
+            unlinkChild(parent, node);
+            updateSubtreeSizes(parent, -node.getSubtreeSize());
+            node.setParent(null);
+            size -= node.getSubtreeSize();
         }
     }
 
-    private int computeSize(TreeNode<E> node){
-        size = 1;
-        for(TreeNode<E> child : node.getChildren()){
-            size += computeSize(child);
+    @Override
+    public Position<E> child(Position<E> v, int n) {
+        TreeNode<E> node = checkPosition(v);
+        if(n < 0 || n >= node.getChildren().size()){
+            throw new RuntimeException("The position of the children is invalid");
         }
-        return size;
+        return node.getChildren().get(n);
+    }
+
+    @Override
+    public void removeChild(Position<E> p, int n) {
+        TreeNode<E> parent = checkPosition(p);
+        if(n < 0 || n >= parent.getChildren().size()){
+            throw new RuntimeException("The position of the children is invalid");
+        }
+        TreeNode<E> node = childrenForUpdate(parent, n).remove(n);
+        node.entry = null;
+        parent.releaseChildren();
+        updateSubtreeSizes(parent, -node.getSubtreeSize());
+        node.setParent(null);
+        size -= node.getSubtreeSize();
+    }
+
+    /**
+     * Returns the number of nodes of the subtree rooted at v. Every node keeps
+     * this count up to date, so it takes constant time.
+     */
+    @Override
+    public int subtreeSize(Position<E> v) {
+        return checkPosition(v).getSubtreeSize();
     }
 
     @Override
@@ -152,12 +428,12 @@ public class LinkedTree<E> implements NAryTree<E> {
         LinkedTree<E> subTree;
         subTree = new LinkedTree<E>();
         subTree.root = node;
-        subTree.size = computeSize(node);
+        subTree.size = node.getSubtreeSize();
         return subTree;
     }
 
     private LinkedTree<E> checkTree(NAryTree<E> tree){
-        if(!(tree instanceof TreeNode)){
+        if(!(tree instanceof LinkedTree)){
             throw new RuntimeException("El arbol no es un arbol");
         }
         return (LinkedTree<E>) tree;
@@ -165,10 +441,35 @@ public class LinkedTree<E> implements NAryTree<E> {
 
     @Override
     public void attach(Position<E> p, NAryTree<E> t) {
-        TreeNode<E> node = checkPosition(p);
-        LinkedTree<E> SubTree = checkTree(t);
-        node.getChildren().addAll(SubTree.root.getChildren());
-        size += SubTree.size;
+        TreeNode<E> node = (p == null) ? root : checkPosition(p);
+        LinkedTree<E> subTree = checkTree(t);
+        if(subTree.isEmpty()){
+            return;
+        }
+        if(node == null){
+            throw new RuntimeException("The tree is empty, there is no node to attach to");
+        }
+        List<TreeNode<E>> children = node.getChildren();
+        TreeNode<E> previous = children.isEmpty() ? null : children.get(children.size() - 1);
+        subTree.root.setParent(node);
+        insertChild(node, children.size(), subTree.root);
+        updateSubtreeSizes(node, subTree.root.getSubtreeSize());
+        TOUR.insert(subTree.root, previous, null);
+        size += subTree.root.getSubtreeSize();
+    }
+
+    /**
+     * Returns true if v is w or an ancestor of w. Every change of shape keeps
+     * the labels of the nodes in the Euler tour up to date, in O(log n)
+     * amortized (see TourLabels), so the subtree of v is the range of labels
+     * from its enter to its exit, and every call is two comparisons instead of
+     * a walk up from w.
+     */
+    @Override
+    public boolean isAncestor(Position<E> v, Position<E> w) {
+        TreeNode<E> ancestor = checkPosition(v);
+        TreeNode<E> node = checkPosition(w);
+        return ancestor.enter <= node.enter && node.exit <= ancestor.exit;
     }
 
     @Override
@@ -196,13 +497,13 @@ public class LinkedTree<E> implements NAryTree<E> {
     @Override
     public boolean isInternal(Position<E> v) {
         TreeNode<E> node = checkPosition(v);
-        return node.getChildren() != null;
+        return !node.getChildren().isEmpty();
     }
 
     @Override
     public boolean isLeaf(Position<E> v) {
         TreeNode<E> node = checkPosition(v);
-        return node.getChildren() == null;
+        return node.getChildren().isEmpty();
     }
 
     @Override
@@ -213,67 +514,151 @@ public class LinkedTree<E> implements NAryTree<E> {
 
     @Override
     public Iterator<Position<E>> iterator() {
-        if(isEmpty()){
-            return new ArrayList<Position<E>>().iterator();
-        }
-        List<Position<E>> positions = new ArrayList<>();
-        breadthFirstTraversal(root,positions);
-        return positions.iterator();
-    }
-
-    private void breadthFirstTraversal(TreeNode<E> node, List<Position<E>> lista){
-        if(node != null){
-            List<TreeNode<E>> queue = new ArrayList<>();
-            queue.add(node);
-            while(!queue.isEmpty()){
-                TreeNode<E> nodeToVisit = queue.remove(0);
-                lista.add(nodeToVisit);
-                queue.addAll(nodeToVisit.getChildren());
+        return new BreadthFirstIterator();
+    }
+
+    public Iterator<Position<E>> iteratorPreOrden() {
+        return new PreOrdenIterator();
+    }
+
+    public Iterator<Position<E>> iteratorPostOrden() {
+        return new PostOrdenIterator();
+    }
+
+    /**
+     * Breadth-first cursor. Only the current frontier is kept in the queue, so
+     * the first element is returned without visiting the rest of the tree.
+     */
+    private class BreadthFirstIterator implements Iterator<Position<E>> {
+        private final Deque<TreeNode<E>> queue = new ArrayDeque<>();
+
+        public BreadthFirstIterator(){
+            if(root != null){
+                queue.add(root);
             }
         }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Position<E> next() {
+            if(queue.isEmpty()){
+                throw new NoSuchElementException();
+            }
+            TreeNode<E> node = queue.poll();
+            queue.addAll(node.getChildren());
+            return node;
+        }
     }
 
+    /**
+     * Pre-order cursor. The stack holds one children iterator per level of the
+     * path being visited, so the extra memory is bounded by the depth.
+     */
+    private class PreOrdenIterator implements Iterator<Position<E>> {
+        private final Deque<Iterator<TreeNode<E>>> stack = new ArrayDeque<>();
+        private TreeNode<E> next;
 
-    public Iterator<Position<E>> iteratorPreOrden() {
-        if(isEmpty()){
-            return new ArrayList<Position<E>>().iterator();
+        public PreOrdenIterator(){
+            next = root;
         }
-        List<Position<E>> list = new ArrayList<>();
-        preOrdenTraversal(root, list);
-        return list.iterator();
 
-    }
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
 
-    private void preOrdenTraversal(TreeNode<E> node, List<Position<E>> list){
-        if(node != null){
-            list.add(node);
-            for(TreeNode<E> child: node.getChildren()){
-                preOrdenTraversal(child, list);
-            } 
+        @Override
+        public Position<E> next() {
+            if(next == null){
+                throw new NoSuchElementException();
+            }
+            TreeNode<E> node = next;
+            if(!node.getChildren().isEmpty()){
+                stack.push(node.getChildren().iterator());
+            }
+            next = null;
+            while(next == null && !stack.isEmpty()){
+                Iterator<TreeNode<E>> it = stack.peek();
+                if(it.hasNext()){
+                    next = it.next();
+                }else{
+                    stack.pop();
+                }
+            }
+            return node;
         }
     }
 
+    /**
+     * Post-order cursor. Each frame of the stack is a node on the current path
+     * together with the iterator over its pending children.
+     */
+    private class PostOrdenIterator implements Iterator<Position<E>> {
+        private final Deque<TreeNode<E>> nodes = new ArrayDeque<>();
+        private final Deque<Iterator<TreeNode<E>>> pending = new ArrayDeque<>();
 
-    public Iterator<Position<E>> iteratorPostOrden() {
-        if(isEmpty()){
-            return new ArrayList<Position<E>>().iterator();
+        public PostOrdenIterator(){
+            if(root != null){
+                descend(root);
+            }
         }
-        List<Position<E>> list = new ArrayList<>();
-        postOrdenTraversal(root, list);
-        return list.iterator();
-        
-    }
 
-    private void postOrdenTraversal(TreeNode<E> node, List<Position<E>> list){
-        if(node != null){
-            for(TreeNode<E> child : node.getChildren()){
-                postOrdenTraversal(child, list);
+        private void descend(TreeNode<E> node){
+            while(node != null){
+                Iterator<TreeNode<E>> it = node.getChildren().iterator();
+                nodes.push(node);
+                pending.push(it);
+                node = it.hasNext() ? it.next() : null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !nodes.isEmpty();
+        }
+
+        @Override
+        public Position<E> next() {
+            if(nodes.isEmpty()){
+                throw new NoSuchElementException();
             }
-            list.add(node);
+            while(pending.peek().hasNext()){
+                descend(pending.peek().next());
+            }
+            pending.pop();
+            return nodes.pop();
         }
     }
 
     public int size() {
         return size;
     }
+
+    /**
+     * Trims the children list of every node to its size, and gives the shared
+     * empty list back to the leaves, after a bulk load made of add calls grew
+     * the lists past what they need. Lists moved to an IndexedList are left
+     * as they are. O(n).
+     */
+    public void compact() {
+        if(root == null){
+            return;
+        }
+        Deque<TreeNode<E>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while(!pending.isEmpty()){
+            TreeNode<E> node = pending.pop();
+            node.releaseChildren();
+            if(node.getChildren() instanceof ArrayList){
+                ((ArrayList<TreeNode<E>>) node.getChildren()).trimToSize();
+            }
+            for(TreeNode<E> child : node.getChildren()){
+                pending.push(child);
+            }
+        }
+    }
 }
\ No newline at end of file
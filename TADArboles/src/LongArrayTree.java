@@ -0,0 +1,150 @@
+import material.Position;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+
+/**
+ * An array tree of long elements, see AbstractArrayTree. The elements live in a
+ * long column, so a node costs six ints and a long and no object at all; the
+ * methods of LongNAryTree never box.
+ */
+public class LongArrayTree extends AbstractArrayTree<Long> implements LongNAryTree {
+
+    private long[] elements;
+
+    public LongArrayTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongArrayTree(int initialCapacity) {
+        super(initialCapacity);
+        elements = new long[capacity()];
+    }
+
+    /**
+     * Builds a tree in one O(n) pass, see AbstractArrayTree.load. Node i of the
+     * topology gets elements[i].
+     *
+     * @param elements the element of every node.
+     * @param topology the shape of the tree.
+     * @return the new tree.
+     */
+    public static LongArrayTree build(long[] elements, TreeTopology topology) {
+        int n = topology.size();
+        if (elements.length != n) {
+            throw new RuntimeException("The tree has " + n + " nodes but " + elements.length + " elements");
+        }
+        LongArrayTree tree = new LongArrayTree(n);
+        tree.load(topology);
+        System.arraycopy(elements, 0, tree.elements, 0, n);
+        return tree;
+    }
+
+    @Override
+    protected Long element(int i) {
+        return elements[i];
+    }
+
+    @Override
+    protected void setElement(int i, Long e) {
+        elements[i] = e;
+    }
+
+    @Override
+    protected void checkElement(Long e) {
+        if (e == null) {
+            throw new RuntimeException("This tree cannot hold null elements");
+        }
+    }
+
+    @Override
+    protected void swapElements(int i, int j) {
+        long aux = elements[i];
+        elements[i] = elements[j];
+        elements[j] = aux;
+    }
+
+    @Override
+    protected void copyElement(AbstractArrayTree<Long> from, int fromIndex, int to) {
+        elements[to] = ((LongArrayTree) from).elements[fromIndex];
+    }
+
+    @Override
+    protected void clearElements(int from, int to) {
+        // Nothing to release in a primitive column.
+    }
+
+    @Override
+    protected void resizeElements(int capacity) {
+        elements = Arrays.copyOf(elements, capacity);
+    }
+
+    @Override
+    protected AbstractArrayTree<Long> newTree(int initialCapacity) {
+        return new LongArrayTree(initialCapacity);
+    }
+
+    @Override
+    public Position<Long> addRoot(long e) {
+        int i = insertRoot();
+        elements[i] = e;
+        return position(i);
+    }
+
+    @Override
+    public Position<Long> add(long element, Position<Long> p) {
+        int i = insertChild(checkPosition(p));
+        elements[i] = element;
+        return position(i);
+    }
+
+    @Override
+    public Position<Long> add(long element, Position<Long> p, int n) {
+        int i = insertChild(checkPosition(p), n);
+        elements[i] = element;
+        return position(i);
+    }
+
+    @Override
+    public long getLong(Position<Long> p) {
+        return elements[checkPosition(p)];
+    }
+
+    @Override
+    public long replace(Position<Long> p, long e) {
+        int i = checkPosition(p);
+        long old = elements[i];
+        elements[i] = e;
+        return old;
+    }
+
+    private PrimitiveIterator.OfLong values(PrimitiveIterator.OfInt indices) {
+        return new PrimitiveIterator.OfLong() {
+            @Override
+            public boolean hasNext() {
+                return indices.hasNext();
+            }
+
+            @Override
+            public long nextLong() {
+                return elements[indices.nextInt()];
+            }
+        };
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong longIterator() {
+        return values(breadthFirstIndices());
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong longIteratorPreOrden() {
+        return values(preOrdenIndices());
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong longIteratorPostOrden() {
+        return values(postOrdenIndices());
+    }
+}
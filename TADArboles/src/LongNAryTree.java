@@ -0,0 +1,71 @@
+import material.Position;
+
+import java.util.PrimitiveIterator;
+
+
+/**
+ * An NAryTree of long elements. The methods of this interface read and write the
+ * elements without boxing them; the inherited ones still work with Long.
+ */
+public interface LongNAryTree extends NAryTree<Long> {
+
+    /**
+     * Adds a root node to an empty tree
+     *
+     * @param e The element stored at the new root
+     * @return The position of the new root
+     */
+    public Position<Long> addRoot(long e);
+
+    /**
+     * Add a new node whose parent is pointed by a given position.
+     *
+     * @param element The element stored in the new created node.
+     * @param p       The position of the parent
+     * @return The position of the new node.
+     */
+    public Position<Long> add(long element, Position<Long> p);
+
+    /**
+     * Add a new node whose parent is pointed by a given position, and set the
+     * child at the position n if possible.
+     *
+     * @param element The element stored in the new created node.
+     * @param p       The position of the parent
+     * @param n       The position of the child
+     * @return The position of the new node.
+     */
+    public Position<Long> add(long element, Position<Long> p, final int n);
+
+    /**
+     * Returns the element stored at a node.
+     *
+     * @param p The position of the node
+     * @return The element, unboxed
+     */
+    public long getLong(Position<Long> p);
+
+    /**
+     * Replaces the element at a node.
+     *
+     * @param p The position of the node to be replaced.
+     * @param e The new element
+     * @return The old element
+     */
+    public long replace(Position<Long> p, long e);
+
+    /**
+     * Returns the elements in breadth-first order, like iterator().
+     */
+    public PrimitiveIterator.OfLong longIterator();
+
+    /**
+     * Returns the elements in pre-order.
+     */
+    public PrimitiveIterator.OfLong longIteratorPreOrden();
+
+    /**
+     * Returns the elements in post-order.
+     */
+    public PrimitiveIterator.OfLong longIteratorPostOrden();
+}
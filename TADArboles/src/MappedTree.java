@@ -0,0 +1,325 @@
+import material.Position;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A read-only tree served straight from a file written by TreeFile. The file is
+ * memory mapped in windows of 1 GB, so it may be larger than one ByteBuffer can
+ * address, and only the pages that are read are brought into memory.
+ *
+ * Node i is the i-th node in preorder, so iteratorPreOrden is a plain scan of
+ * the file, the children of i start at i + 1 and a subtree is a range of indices.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class MappedTree<E> implements Tree<E> {
+
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_MASK = (1L << WINDOW_SHIFT) - 1;
+
+    private class MappedPosition implements Position<E> {
+        private final int index;
+
+        public MappedPosition(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public E getElement() {
+            return element(index);
+        }
+
+        private MappedTree<E> tree() {
+            return MappedTree.this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MappedTree.MappedPosition)) {
+                return false;
+            }
+            MappedTree<?>.MappedPosition other = (MappedTree<?>.MappedPosition) o;
+            return other.tree() == tree() && other.index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+    }
+
+    private final ElementCodec<E> codec;
+    private final ByteBuffer[] windows;
+    private final int size;
+    private final long sizes;
+    private final long parents;
+    private final long offsets;
+    private final long data;
+
+    MappedTree(Path path, ElementCodec<E> codec) throws IOException {
+        this.codec = codec;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            windows = new ByteBuffer[(int) ((length + WINDOW_MASK) >>> WINDOW_SHIFT)];
+            for (int w = 0; w < windows.length; w++) {
+                long start = (long) w << WINDOW_SHIFT;
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_MASK + 1, length - start))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            if (length < TreeFile.HEADER || getInt(0) != TreeFile.MAGIC) {
+                throw new IOException(path + " is not a tree file");
+            }
+            if (getInt(4) != TreeFile.VERSION) {
+                throw new IOException("Unsupported version " + getInt(4) + " of " + path);
+            }
+            long n = getLong(8);
+            if (n > Integer.MAX_VALUE || length != TreeFile.dataOffset(n) + getLong(16)) {
+                throw new IOException(path + " is truncated or corrupt");
+            }
+            size = (int) n;
+            sizes = TreeFile.sizesOffset(n);
+            parents = TreeFile.parentsOffset(n);
+            offsets = TreeFile.offsetsOffset(n);
+            data = TreeFile.dataOffset(n);
+        }
+    }
+
+    private int getInt(long position) {
+        return windows[(int) (position >>> WINDOW_SHIFT)].getInt((int) (position & WINDOW_MASK));
+    }
+
+    private long getLong(long position) {
+        return windows[(int) (position >>> WINDOW_SHIFT)].getLong((int) (position & WINDOW_MASK));
+    }
+
+    private int sizeOf(int i) {
+        return getInt(sizes + 4L * i);
+    }
+
+    private int parentOf(int i) {
+        return getInt(parents + 4L * i);
+    }
+
+    private E element(int i) {
+        long start = data + getLong(offsets + 8L * i);
+        int length = (int) (getLong(offsets + 8L * (i + 1)) - getLong(offsets + 8L * i));
+        int w = (int) (start >>> WINDOW_SHIFT);
+        int offset = (int) (start & WINDOW_MASK);
+        ByteBuffer buffer;
+        if (offset + length <= windows[w].capacity()) {
+            buffer = windows[w].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(offset);
+        } else {
+            // The element crosses the end of a window: copy both halves.
+            buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            int first = windows[w].capacity() - offset;
+            buffer.put(windows[w].duplicate().position(offset).limit(offset + first));
+            buffer.put(windows[w + 1].duplicate().position(0).limit(length - first));
+            buffer.flip();
+        }
+        return codec.read(buffer, length);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int checkPosition(Position<E> p) {
+        if (!(p instanceof MappedTree.MappedPosition) || ((MappedPosition) p).tree() != this) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return ((MappedPosition) p).index;
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the shape of the tree, read from the parents column, ready for the
+     * build methods of the other trees.
+     */
+    public TreeTopology topology() {
+        int[] p = new int[size];
+        for (int i = 0; i < size; i++) {
+            p[i] = parentOf(i);
+        }
+        return TreeTopology.fromParents(p);
+    }
+
+    /**
+     * Returns the elements in preorder, decoded when they are read.
+     */
+    public List<E> elements() {
+        return new AbstractList<E>() {
+            @Override
+            public E get(int i) {
+                return element(i);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Position<E> root() {
+        return isEmpty() ? null : new MappedPosition(0);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        int parent = parentOf(checkPosition(v));
+        return (parent < 0) ? null : new MappedPosition(parent);
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        int node = checkPosition(v);
+        int end = node + sizeOf(node);
+        return () -> new Iterator<Position<E>>() {
+            private int next = node + 1;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Position<E> child = new MappedPosition(next);
+                next += sizeOf(next);
+                return child;
+            }
+        };
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        return sizeOf(checkPosition(v)) > 1;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        return sizeOf(checkPosition(v)) == 1;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        return checkPosition(v) == 0;
+    }
+
+    @Override
+    public int subtreeSize(Position<E> v) {
+        return sizeOf(checkPosition(v));
+    }
+
+    /**
+     * Returns true if v is w or an ancestor of w: the subtree of v is a range of
+     * indices, so this is a range check.
+     */
+    @Override
+    public boolean isAncestor(Position<E> v, Position<E> w) {
+        int ancestor = checkPosition(v);
+        int node = checkPosition(w);
+        return ancestor <= node && node < ancestor + sizeOf(ancestor);
+    }
+
+    /**
+     * Iterates breadth first. The queue holds the parents of the pending groups of
+     * siblings; the siblings of a group are found by skipping subtrees, since the
+     * group of parent p is the range p + 1 .. p + size(p).
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return new Iterator<Position<E>>() {
+            private int[] queue = new int[16];
+            private int head;
+            private int count;
+            private int next = isEmpty() ? -1 : 0;
+            private int end = size;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int node = next;
+                int nodeSize = sizeOf(node);
+                if (nodeSize > 1) {
+                    if (count == queue.length) {
+                        int[] bigger = new int[queue.length * 2];
+                        for (int i = 0; i < count; i++) {
+                            bigger[i] = queue[(head + i) % queue.length];
+                        }
+                        queue = bigger;
+                        head = 0;
+                    }
+                    queue[(head + count++) % queue.length] = node;
+                }
+                next = node + nodeSize;
+                if (next >= end) {
+                    if (count > 0) {
+                        int parent = queue[head];
+                        head = (head + 1) % queue.length;
+                        count--;
+                        next = parent + 1;
+                        end = parent + sizeOf(parent);
+                    } else {
+                        next = -1;
+                    }
+                }
+                return new MappedPosition(node);
+            }
+        };
+    }
+
+    /**
+     * Iterates in preorder, which is the order of the file.
+     *
+     * @return an iterator over the positions in preorder.
+     */
+    public Iterator<Position<E>> iteratorPreOrden() {
+        return new Iterator<Position<E>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new MappedPosition(next++);
+            }
+        };
+    }
+}
@@ -0,0 +1,449 @@
+import material.Position;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A decorator that records how a tree is used: for every operation, how many
+ * times it was called, how many nodes it visited and a histogram of how long
+ * it took. snapshot() returns the figures so far, to be exported.
+ *
+ * The counters are LongAdders, which keep one cell per contending thread, so
+ * threads that share the tree do not fight over them, except those of the
+ * thread that made the tree, which counts apart without atomic instructions.
+ * Latencies go to histograms with one bucket per power of two of
+ * nanoseconds. Reading the clock costs as much as a small operation, so only
+ * one call in sampleEvery is timed. Every call is counted, and the visits are
+ * exact, with two exceptions for the calls where even that would show:
+ * <ul>
+ * <li>children() is the cheapest and most frequent call, so only the timed
+ * calls look at the size of the list they return, which stands for the
+ * visits of sampleEvery calls. The visits of CHILDREN are an estimate.</li>
+ * <li>Counting the nodes of a walk as they go costs as much as the walk
+ * itself on the faster trees, so only the iterators of the timed calls are
+ * followed: they add sampleEvery times their visits every VISIT_BATCH nodes
+ * and when the walk ends, when they also record their time. The visits of
+ * ITERATOR are an estimate, and a followed walk given up before its end
+ * leaves out its time and its last visits.</li>
+ * </ul>
+ * The thread that made the tree times the first call of each kind and then
+ * one in sampleEvery, picked from its own count of the calls. The other
+ * threads pick the calls to time at random, one in sampleEvery on average,
+ * so they share no counter to pick them from.
+ *
+ * Even so the decorator is not free on the cheapest calls, and it is not fit
+ * to be left on in production on a tree that is mostly read: a test of the
+ * thread and an increment per call are a share of the cost of children() on
+ * every implementation, and MeteredTreeBenchmark cannot tell its overhead on
+ * iterator() and children() from a spread of tens of percent, let alone
+ * bound it under 5%. Use it to find out how a tree is used, then take it off.
+ *
+ * The nodes visited are the ones added (ADD), removed (REMOVE), attached
+ * (ATTACH), in the subtree (SUB_TREE), returned as children (CHILDREN, when
+ * the tree returns them as a Collection) and returned by an iterator
+ * (ITERATOR). Calls that throw are not recorded. The trees returned by
+ * subTree are metered too, into the same figures.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class MeteredTree<E> extends ForwardingNAryTree<E> {
+
+    public enum Operation {
+        ADD, REMOVE, ATTACH, SUB_TREE, CHILDREN, ITERATOR
+    }
+
+    /** Number of latency buckets: bucket i holds times in [2^(i-1), 2^i) ns. */
+    public static final int BUCKETS = 64;
+
+    /** Number of nodes an iterator walks before recording its visits. */
+    private static final int VISIT_BATCH = 1024;
+
+    /**
+     * The figures of one operation, as counters that can be updated by any
+     * number of threads.
+     *
+     * Even an uncontended LongAdder increments with an atomic instruction,
+     * which costs as much as a small operation. The thread that made the meter,
+     * which usually is the only one that uses the tree, keeps its counts apart
+     * instead, in counters only it writes: it updates them with plain loads and
+     * ordered stores, and the other threads go to the LongAdders.
+     */
+    private static final class Meter {
+        private final Thread home = Thread.currentThread();
+        private final int sampleMask;
+        private final AtomicLong homeCount = new AtomicLong();
+        private final AtomicLong homeExtraVisits = new AtomicLong();
+        private final LongAdder count = new LongAdder();
+        /**
+         * Visits beyond one per call, so the calls that visit a single node,
+         * like every add, only touch the count.
+         */
+        private final LongAdder extraVisits = new LongAdder();
+        private final LongAdder timedNanos = new LongAdder();
+        private final LongAdder[] latency = new LongAdder[BUCKETS];
+
+        private Meter(int sampleMask) {
+            this.sampleMask = sampleMask;
+            for (int i = 0; i < BUCKETS; i++) {
+                latency[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Returns true if the call about to be made is to be timed. The home
+         * thread picks it from its own count, so it times its first call and
+         * then one in sampleEvery; the other threads pick one in sampleEvery
+         * at random.
+         */
+        private boolean sample() {
+            if (Thread.currentThread() == home) {
+                return (homeCount.getPlain() & sampleMask) == 0;
+            }
+            return (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+        }
+
+        private void count(long calls, long extra) {
+            if (Thread.currentThread() == home) {
+                homeCount.setRelease(homeCount.getPlain() + calls);
+                if (extra != 0) {
+                    homeExtraVisits.setRelease(homeExtraVisits.getPlain() + extra);
+                }
+            } else {
+                count.add(calls);
+                if (extra != 0) {
+                    extraVisits.add(extra);
+                }
+            }
+        }
+
+        private void time(long nanos) {
+            latency[BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 0))].increment();
+            timedNanos.add(nanos);
+        }
+    }
+
+    /**
+     * The figures of one operation at the time of a snapshot.
+     */
+    public static final class Stats {
+        private final long count;
+        private final long visits;
+        private final long timedNanos;
+        private final long[] latency;
+
+        private Stats(Meter meter) {
+            // Calls count themselves before they go to the histogram, which is
+            // read first, so the timed calls never outnumber the count.
+            latency = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                latency[i] = meter.latency[i].sum();
+            }
+            timedNanos = meter.timedNanos.sum();
+            long extra = meter.homeExtraVisits.getAcquire() + meter.extraVisits.sum();
+            count = meter.homeCount.getAcquire() + meter.count.sum();
+            visits = count + extra;
+        }
+
+        /** Number of calls. */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Number of nodes visited by all the calls, estimated from the sampled
+         * ones for CHILDREN and ITERATOR.
+         */
+        public long visits() {
+            return visits;
+        }
+
+        /** Number of calls that were timed. */
+        public long timed() {
+            long timed = 0;
+            for (long bucket : latency) {
+                timed += bucket;
+            }
+            return timed;
+        }
+
+        /** Mean time of the calls that were timed, in nanoseconds. */
+        public double meanNanos() {
+            long timed = timed();
+            return (timed == 0) ? 0 : (double) timedNanos / timed;
+        }
+
+        /**
+         * Returns the number of timed calls that took from 2^(i-1) to 2^i - 1
+         * nanoseconds; bucket 0 holds the calls that took 0.
+         */
+        public long bucket(int i) {
+            return latency[i];
+        }
+
+        /**
+         * Returns an upper bound of the given percentile of the time of the
+         * timed calls, in nanoseconds: the top of the bucket it falls in.
+         *
+         * @param percentile a number from 0 to 100.
+         */
+        public long percentileNanos(double percentile) {
+            long timed = timed();
+            if (timed == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100 * timed);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += latency[i];
+                if (seen >= rank && latency[i] > 0) {
+                    return (i == 0) ? 0 : (i == BUCKETS - 1) ? Long.MAX_VALUE : (1L << i) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, visits=%d, mean=%.1fns, p50<=%dns, p99<=%dns",
+                    count, visits, meanNanos(), percentileNanos(50), percentileNanos(99));
+        }
+    }
+
+    private final Map<Operation, Meter> meters;
+    private final Meter add;
+    private final Meter remove;
+    private final Meter attach;
+    private final Meter subTree;
+    private final Meter children;
+    private final Meter iterator;
+    private final int sampleMask;
+
+    /**
+     * Decorates a tree, timing one call in 64.
+     */
+    public MeteredTree(NAryTree<E> tree) {
+        this(tree, 64);
+    }
+
+    /**
+     * Decorates a tree.
+     *
+     * @param tree the tree to decorate.
+     * @param sampleEvery one call in sampleEvery is timed; a power of two, 1
+     *                    times every call.
+     */
+    public MeteredTree(NAryTree<E> tree, int sampleEvery) {
+        this(tree, newMeters(sampleEvery - 1), sampleEvery);
+    }
+
+    private MeteredTree(NAryTree<E> tree, Map<Operation, Meter> meters, int sampleEvery) {
+        super(tree);
+        if (sampleEvery < 1 || Integer.bitCount(sampleEvery) != 1) {
+            throw new RuntimeException("The sampling rate must be a power of two, but it is " + sampleEvery);
+        }
+        this.meters = meters;
+        this.add = meters.get(Operation.ADD);
+        this.remove = meters.get(Operation.REMOVE);
+        this.attach = meters.get(Operation.ATTACH);
+        this.subTree = meters.get(Operation.SUB_TREE);
+        this.children = meters.get(Operation.CHILDREN);
+        this.iterator = meters.get(Operation.ITERATOR);
+        this.sampleMask = sampleEvery - 1;
+    }
+
+    private static Map<Operation, Meter> newMeters(int sampleMask) {
+        Map<Operation, Meter> meters = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            meters.put(operation, new Meter(sampleMask));
+        }
+        return meters;
+    }
+
+    /**
+     * Returns the figures of every operation so far. Calls made while it runs
+     * may or may not be in it, and the figures of different operations are not
+     * read at the same instant.
+     */
+    public Map<Operation, Stats> snapshot() {
+        Map<Operation, Stats> snapshot = new EnumMap<>(Operation.class);
+        for (Map.Entry<Operation, Meter> entry : meters.entrySet()) {
+            snapshot.put(entry.getKey(), new Stats(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Returns the time to measure a call of meter from, or 0 if it is not
+     * timed.
+     */
+    private static long start(Meter meter) {
+        return meter.sample() ? System.nanoTime() : 0;
+    }
+
+    private static void record(Meter meter, long start, long visits) {
+        meter.count(1, visits - 1);
+        if (start != 0) {
+            meter.time(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        long start = start(add);
+        Position<E> p = super.addRoot(e);
+        record(add, start, 1);
+        return p;
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        long start = start(add);
+        Position<E> node = super.add(element, p);
+        record(add, start, 1);
+        return node;
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        long start = start(add);
+        Position<E> node = super.add(element, p, n);
+        record(add, start, 1);
+        return node;
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        long start = start(remove);
+        int removed = subtreeSize(p);
+        super.remove(p);
+        record(remove, start, removed);
+    }
+
+    @Override
+    public void removeChild(Position<E> p, int n) {
+        long start = start(remove);
+        int before = subtreeSize(p);
+        super.removeChild(p, n);
+        record(remove, start, before - subtreeSize(p));
+    }
+
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        long start = start(attach);
+        int attached = t.isEmpty() ? 0 : t.subtreeSize(t.root());
+        super.attach(p, t);
+        record(attach, start, attached);
+    }
+
+    /**
+     * Returns the subtree of v, metered into the figures of this tree.
+     */
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        long start = start(subTree);
+        NAryTree<E> tree = new MeteredTree<>(super.subTree(v), meters, sampleMask + 1);
+        record(subTree, start, subtreeSize(v));
+        return tree;
+    }
+
+    /**
+     * Counts every call, and times one in sampleEvery, whose visits stand for
+     * those of sampleEvery calls.
+     */
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        if (!children.sample()) {
+            Iterable<? extends Position<E>> list = super.children(v);
+            children.count(1, 0);
+            return list;
+        }
+        return timedChildren(v);
+    }
+
+    /**
+     * The timed calls to children(), apart so that the others stay small.
+     */
+    private Iterable<? extends Position<E>> timedChildren(Position<E> v) {
+        long start = System.nanoTime();
+        Iterable<? extends Position<E>> list = super.children(v);
+        long visits = (list instanceof Collection) ? ((Collection<?>) list).size() : 0;
+        children.count(1, (visits - 1) * (sampleMask + 1));
+        children.time(System.nanoTime() - start);
+        return list;
+    }
+
+    /**
+     * Counts every call, and follows the walk of one in sampleEvery.
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        if (!iterator.sample()) {
+            Iterator<Position<E>> delegate = super.iterator();
+            iterator.count(1, 0);
+            return delegate;
+        }
+        return followedIterator();
+    }
+
+    /**
+     * The iterators that are followed, apart so that the others stay small.
+     */
+    private Iterator<Position<E>> followedIterator() {
+        long start = System.nanoTime();
+        Iterator<Position<E>> delegate = super.iterator();
+        iterator.count(1, 0);
+        return new MeteredIterator(delegate, start);
+    }
+
+    /**
+     * Counts the nodes an iterator returns, adding sampleEvery times them to
+     * the visits of ITERATOR in batches and when the walk ends, when it also
+     * records the time of the call.
+     */
+    private class MeteredIterator implements Iterator<Position<E>> {
+        private final Iterator<Position<E>> delegate;
+        private final long start;
+        /**
+         * Visits not added yet. The count of the call already stands for one
+         * visit, so it starts at -1.
+         */
+        private int pending = -1;
+        private boolean ended;
+
+        MeteredIterator(Iterator<Position<E>> delegate, long start) {
+            this.delegate = delegate;
+            this.start = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext && !ended) {
+                ended = true;
+                if (pending != 0) {
+                    iterator.count(0, (long) pending * (sampleMask + 1));
+                    pending = 0;
+                }
+                iterator.time(System.nanoTime() - start);
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Position<E> next() {
+            Position<E> p = delegate.next();
+            if (++pending == VISIT_BATCH) {
+                iterator.count(0, (long) pending * (sampleMask + 1));
+                pending = 0;
+            }
+            return p;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import material.Position;
+
+
+/**
+ * A decorator that counts the changes to the shape of a tree: addRoot, add,
+ * remove, removeChild and attach. Indexes built over the tree, like
+ * AncestorIndex, compare the count with the one they last saw, so a change
+ * that was not reported to them is detected instead of giving wrong answers.
+ *
+ * replace and swapElements do not change the shape and are not counted. The
+ * trees returned by subTree are decorated too and count into the same figure,
+ * because in some implementations they share their nodes with this tree.
+ * Changes made to the decorated tree directly are not seen.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class ModCountTree<E> extends ForwardingNAryTree<E> {
+
+    /**
+     * The count, shared with the trees returned by subTree.
+     */
+    private static final class Counter {
+        private long modifications;
+    }
+
+    private final Counter counter;
+
+    public ModCountTree(NAryTree<E> delegate) {
+        this(delegate, new Counter());
+    }
+
+    private ModCountTree(NAryTree<E> delegate, Counter counter) {
+        super(delegate);
+        this.counter = counter;
+    }
+
+    /**
+     * Returns the number of changes to the shape made through this tree and the
+     * trees returned by its subTree.
+     *
+     * @return the number of changes so far.
+     */
+    public long modifications() {
+        return counter.modifications;
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        Position<E> p = super.addRoot(e);
+        counter.modifications++;
+        return p;
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        Position<E> child = super.add(element, p);
+        counter.modifications++;
+        return child;
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        Position<E> child = super.add(element, p, n);
+        counter.modifications++;
+        return child;
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        super.remove(p);
+        counter.modifications++;
+    }
+
+    @Override
+    public void removeChild(Position<E> p, int n) {
+        super.removeChild(p, n);
+        counter.modifications++;
+    }
+
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        return new ModCountTree<>(super.subTree(v), counter);
+    }
+
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        super.attach(p, t);
+        counter.modifications++;
+    }
+}
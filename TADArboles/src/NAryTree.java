@@ -55,6 +55,16 @@ public interface NAryTree<E> extends Tree<E> {
      */
     public void remove(Position<E> p);
 
+    /**
+     * Remove the n-th child of a node and its corresponding subtree.
+     *
+     * @param p The position of the parent
+     * @param n The position of the child, counting from 0
+     */
+    public default void removeChild(Position<E> p, int n) {
+        remove(child(p, n));
+    }
+
     /**
      * Create un new tree from node v of the same type that invoked class.
      *
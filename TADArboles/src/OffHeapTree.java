@@ -0,0 +1,638 @@
+import material.Position;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+
+/**
+ * An implementation of the NAryTree interface whose nodes live outside the Java
+ * heap. Every node is a fixed-size record (parent, firstChild, lastChild and
+ * nextSibling links, the subtree size, a stamp and the encoded element) inside
+ * direct buffers that are allocated in chunks, so the tree can grow well beyond
+ * 2^31 bytes while the heap only holds the list of chunks. Nodes are addressed
+ * by long indices.
+ *
+ * Positions are handles made of an index and a stamp, like in AbstractArrayTree,
+ * and slots freed by remove are reused. The elements are written with a
+ * FixedWidthCodec; use FixedWidthCodec.none() to keep only the topology.
+ *
+ * The tree must be closed when it is no longer needed. After close() every
+ * operation fails, and the chunks are returned to the system as soon as the
+ * garbage collector drops their buffers.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class OffHeapTree<E> implements NAryTree<E>, AutoCloseable {
+
+    private static final long NONE = -1;
+    private static final long FREE = -2;
+
+    private static final int PARENT = 0;
+    private static final int FIRST_CHILD = 8;
+    private static final int LAST_CHILD = 16;
+    private static final int NEXT_SIBLING = 24;
+    private static final int SUBTREE_SIZE = 32;
+    private static final int STAMP = 40;
+    private static final int ELEMENT = 44;
+
+    /** Nodes per chunk, as a power of two. */
+    private static final int CHUNK_SHIFT = 16;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    /**
+     * Records of the first chunk when it is allocated. It doubles until it is
+     * as large as the others, so small trees do not reserve a whole chunk.
+     */
+    private static final int FIRST_CHUNK = 64;
+
+    private class OffHeapPosition implements Position<E> {
+        private final long index;
+        private final int stamp;
+
+        public OffHeapPosition(long index) {
+            this.index = index;
+            this.stamp = stamp(index);
+        }
+
+        @Override
+        public E getElement() {
+            long i = checkIndex(this);
+            return codec.read(chunk(i), offset(i) + ELEMENT);
+        }
+
+        private OffHeapTree<E> tree() {
+            return OffHeapTree.this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof OffHeapTree.OffHeapPosition)) {
+                return false;
+            }
+            OffHeapTree<?>.OffHeapPosition other = (OffHeapTree<?>.OffHeapPosition) o;
+            return other.tree() == tree() && other.index == index && other.stamp == stamp;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(index) * 31 + stamp;
+        }
+    }
+
+    private final FixedWidthCodec<E> codec;
+    private final int recordSize;
+    private final int chunkBytes;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private boolean closed;
+
+    private long root = NONE;
+    private long size;
+    private long used;
+    private long freeHead = NONE;
+
+    public OffHeapTree(FixedWidthCodec<E> codec) {
+        this.codec = codec;
+        long chunkBytes = (long) (ELEMENT + codec.width()) << CHUNK_SHIFT;
+        if (codec.width() < 0 || chunkBytes > Integer.MAX_VALUE) {
+            throw new RuntimeException("The codec width must be from 0 to "
+                    + ((Integer.MAX_VALUE >> CHUNK_SHIFT) - ELEMENT) + " bytes, but it is " + codec.width());
+        }
+        this.recordSize = ELEMENT + codec.width();
+        this.chunkBytes = (int) chunkBytes;
+    }
+
+    /**
+     * Builds a tree in one O(n) pass, without checking positions: node i of the
+     * topology is written to record i and gets elements.get(i).
+     *
+     * @param codec the codec of the elements.
+     * @param elements the element of every node.
+     * @param topology the shape of the tree.
+     * @return the new tree.
+     */
+    public static <E> OffHeapTree<E> build(FixedWidthCodec<E> codec, List<? extends E> elements, TreeTopology topology) {
+        int n = topology.size();
+        if (elements.size() != n) {
+            throw new RuntimeException("The tree has " + n + " nodes but " + elements.size() + " elements");
+        }
+        OffHeapTree<E> tree = new OffHeapTree<>(codec);
+        int[] sizes = topology.subtreeSizes();
+        for (int v = 0; v < n; v++) {
+            tree.allocate(elements.get(v), topology.parent(v));
+            tree.setLink(v, SUBTREE_SIZE, sizes[v]);
+        }
+        for (int v = 0; v < n; v++) {
+            int children = topology.childCount(v);
+            for (int c = 0; c < children; c++) {
+                tree.appendChild(v, topology.child(v, c));
+            }
+        }
+        tree.root = (n == 0) ? NONE : topology.root();
+        return tree;
+    }
+
+    private ByteBuffer chunk(long i) {
+        return chunks.get((int) (i >>> CHUNK_SHIFT));
+    }
+
+    private int offset(long i) {
+        return (int) (i & CHUNK_MASK) * recordSize;
+    }
+
+    private long link(long i, int field) {
+        return chunk(i).getLong(offset(i) + field);
+    }
+
+    private void setLink(long i, int field, long value) {
+        chunk(i).putLong(offset(i) + field, value);
+    }
+
+    private int stamp(long i) {
+        return chunk(i).getInt(offset(i) + STAMP);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new RuntimeException("The tree has been closed");
+        }
+    }
+
+    private long checkIndex(OffHeapPosition p) {
+        checkOpen();
+        if (p.tree() != this || p.index >= used || link(p.index, PARENT) == FREE || stamp(p.index) != p.stamp) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return p.index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private long checkPosition(Position<E> p) {
+        if (!(p instanceof OffHeapTree.OffHeapPosition)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return checkIndex((OffHeapPosition) p);
+    }
+
+    private Position<E> position(long i) {
+        return (i == NONE) ? null : new OffHeapPosition(i);
+    }
+
+    private void write(long i, E e) {
+        codec.write(chunk(i), offset(i) + ELEMENT, e);
+    }
+
+    private E read(long i) {
+        return codec.read(chunk(i), offset(i) + ELEMENT);
+    }
+
+    private long allocate(E e, long parentIndex) {
+        checkOpen();
+        long i;
+        if (freeHead != NONE) {
+            i = freeHead;
+            freeHead = link(i, NEXT_SIBLING);
+        } else {
+            if ((used >>> CHUNK_SHIFT) == chunks.size()) {
+                chunks.add(ByteBuffer.allocateDirect(chunks.isEmpty() ? FIRST_CHUNK * recordSize : chunkBytes)
+                        .order(ByteOrder.nativeOrder()));
+            } else if (used < (1L << CHUNK_SHIFT) && offset(used) == chunks.get(0).capacity()) {
+                ByteBuffer first = chunks.get(0);
+                ByteBuffer grown = ByteBuffer.allocateDirect(2 * first.capacity()).order(ByteOrder.nativeOrder());
+                first.clear();
+                grown.put(first).clear();
+                chunks.set(0, grown);
+            }
+            i = used++;
+        }
+        setLink(i, PARENT, parentIndex);
+        setLink(i, FIRST_CHILD, NONE);
+        setLink(i, LAST_CHILD, NONE);
+        setLink(i, NEXT_SIBLING, NONE);
+        setLink(i, SUBTREE_SIZE, 1);
+        write(i, e);
+        size++;
+        return i;
+    }
+
+    private void free(long i) {
+        ByteBuffer chunk = chunk(i);
+        int offset = offset(i);
+        chunk.putLong(offset + PARENT, FREE);
+        chunk.putInt(offset + STAMP, chunk.getInt(offset + STAMP) + 1);
+        chunk.putLong(offset + NEXT_SIBLING, freeHead);
+        freeHead = i;
+        size--;
+    }
+
+    private void appendChild(long parentIndex, long child) {
+        setLink(child, PARENT, parentIndex);
+        setLink(child, NEXT_SIBLING, NONE);
+        long last = link(parentIndex, LAST_CHILD);
+        if (last == NONE) {
+            setLink(parentIndex, FIRST_CHILD, child);
+        } else {
+            setLink(last, NEXT_SIBLING, child);
+        }
+        setLink(parentIndex, LAST_CHILD, child);
+    }
+
+    /**
+     * Adds delta to the subtree size of node and of all its ancestors.
+     */
+    private void updateSubtreeSizes(long node, long delta) {
+        while (node != NONE) {
+            setLink(node, SUBTREE_SIZE, link(node, SUBTREE_SIZE) + delta);
+            node = link(node, PARENT);
+        }
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        if (!isEmpty()) {
+            throw new RuntimeException("The tree is not empty, it already has a root");
+        }
+        root = allocate(e, NONE);
+        return position(root);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        long parentIndex = checkPosition(p);
+        long child = allocate(element, parentIndex);
+        appendChild(parentIndex, child);
+        updateSubtreeSizes(parentIndex, 1);
+        return position(child);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        long parentIndex = checkPosition(p);
+        if (n < 0) {
+            throw new RuntimeException("The position of the child is invalid");
+        }
+        long previous = NONE;
+        for (int i = 0; i < n; i++) {
+            long next = (previous == NONE) ? link(parentIndex, FIRST_CHILD) : link(previous, NEXT_SIBLING);
+            if (next == NONE) {
+                throw new RuntimeException("The position of the child is invalid");
+            }
+            previous = next;
+        }
+        long child = allocate(element, parentIndex);
+        if (previous == NONE) {
+            setLink(child, NEXT_SIBLING, link(parentIndex, FIRST_CHILD));
+            setLink(parentIndex, FIRST_CHILD, child);
+        } else {
+            setLink(child, NEXT_SIBLING, link(previous, NEXT_SIBLING));
+            setLink(previous, NEXT_SIBLING, child);
+        }
+        if (link(child, NEXT_SIBLING) == NONE) {
+            setLink(parentIndex, LAST_CHILD, child);
+        }
+        updateSubtreeSizes(parentIndex, 1);
+        return position(child);
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        long i = checkPosition(p1);
+        long j = checkPosition(p2);
+        E aux = read(i);
+        write(i, read(j));
+        write(j, aux);
+    }
+
+    @Override
+    public E replace(Position<E> p, E e) {
+        long i = checkPosition(p);
+        E old = read(i);
+        write(i, e);
+        return old;
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        long node = checkPosition(p);
+        if (node == root) {
+            clear();
+            return;
+        }
+        long parentIndex = link(node, PARENT);
+        long first = link(parentIndex, FIRST_CHILD);
+        if (first == node) {
+            setLink(parentIndex, FIRST_CHILD, link(node, NEXT_SIBLING));
+            if (link(parentIndex, LAST_CHILD) == node) {
+                setLink(parentIndex, LAST_CHILD, NONE);
+            }
+        } else {
+            long previous = first;
+            while (link(previous, NEXT_SIBLING) != node) {
+                previous = link(previous, NEXT_SIBLING);
+            }
+            setLink(previous, NEXT_SIBLING, link(node, NEXT_SIBLING));
+            if (link(parentIndex, LAST_CHILD) == node) {
+                setLink(parentIndex, LAST_CHILD, previous);
+            }
+        }
+        updateSubtreeSizes(parentIndex, -link(node, SUBTREE_SIZE));
+        long current = firstLeaf(node);
+        while (current != NONE) {
+            long next;
+            if (current == node) {
+                next = NONE;
+            } else if (link(current, NEXT_SIBLING) != NONE) {
+                next = firstLeaf(link(current, NEXT_SIBLING));
+            } else {
+                next = link(current, PARENT);
+            }
+            free(current);
+            current = next;
+        }
+    }
+
+    private long firstLeaf(long node) {
+        long child = link(node, FIRST_CHILD);
+        while (child != NONE) {
+            node = child;
+            child = link(node, FIRST_CHILD);
+        }
+        return node;
+    }
+
+    /**
+     * Removes every node and keeps the chunks for the next insertions.
+     */
+    public void clear() {
+        checkOpen();
+        for (long i = 0; i < used; i++) {
+            setLink(i, PARENT, FREE);
+            ByteBuffer chunk = chunk(i);
+            chunk.putInt(offset(i) + STAMP, chunk.getInt(offset(i) + STAMP) + 1);
+        }
+        root = NONE;
+        size = 0;
+        used = 0;
+        freeHead = NONE;
+    }
+
+    private long nextPreOrden(long node, long top) {
+        long child = link(node, FIRST_CHILD);
+        if (child != NONE) {
+            return child;
+        }
+        while (node != top && link(node, NEXT_SIBLING) == NONE) {
+            node = link(node, PARENT);
+        }
+        return (node == top) ? NONE : link(node, NEXT_SIBLING);
+    }
+
+    /**
+     * Copies the subtree rooted at source of tree from under the node target of
+     * this tree, or as the root if target is NONE.
+     */
+    private void copySubtree(OffHeapTree<E> from, long source, long target) {
+        long copy = allocate(from.read(source), target);
+        setLink(copy, SUBTREE_SIZE, from.link(source, SUBTREE_SIZE));
+        if (target == NONE) {
+            root = copy;
+        } else {
+            appendChild(target, copy);
+            updateSubtreeSizes(target, from.link(source, SUBTREE_SIZE));
+        }
+        long node = source;
+        long next = from.nextPreOrden(node, source);
+        while (next != NONE) {
+            long parentOfNext = from.link(next, PARENT);
+            while (node != parentOfNext) {
+                node = from.link(node, PARENT);
+                copy = link(copy, PARENT);
+            }
+            long child = allocate(from.read(next), copy);
+            setLink(child, SUBTREE_SIZE, from.link(next, SUBTREE_SIZE));
+            appendChild(copy, child);
+            node = next;
+            copy = child;
+            next = from.nextPreOrden(next, source);
+        }
+    }
+
+    /**
+     * Returns the number of nodes of the subtree rooted at v, kept up to date in
+     * every node record.
+     */
+    @Override
+    public int subtreeSize(Position<E> v) {
+        return Math.toIntExact(link(checkPosition(v), SUBTREE_SIZE));
+    }
+
+    /**
+     * Copies the subtree of v into a new off-heap tree, which must be closed too.
+     */
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        long node = checkPosition(v);
+        OffHeapTree<E> tree = new OffHeapTree<>(codec);
+        tree.copySubtree(this, node, NONE);
+        return tree;
+    }
+
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        long node = (p == null) ? root : checkPosition(p);
+        if (!(t instanceof OffHeapTree)) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        OffHeapTree<E> tree = (OffHeapTree<E>) t;
+        tree.checkOpen();
+        if (tree.isEmpty()) {
+            return;
+        }
+        if (node == NONE) {
+            throw new RuntimeException("The tree is empty, there is no node to attach to");
+        }
+        copySubtree(tree, tree.root, node);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Position<E> root() {
+        checkOpen();
+        return position(root);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        return position(link(checkPosition(v), PARENT));
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        long node = checkPosition(v);
+        return () -> new Iterator<Position<E>>() {
+            private long next = link(node, FIRST_CHILD);
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                long child = next;
+                next = link(child, NEXT_SIBLING);
+                return position(child);
+            }
+        };
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        return link(checkPosition(v), FIRST_CHILD) != NONE;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        return link(checkPosition(v), FIRST_CHILD) == NONE;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        return checkPosition(v) == root;
+    }
+
+    /**
+     * Breadth-first iterator. The queue holds the first child of every pending
+     * group of siblings in a ring buffer of longs.
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        checkOpen();
+        return new Iterator<Position<E>>() {
+            private long[] queue = new long[16];
+            private int head;
+            private int count;
+            private long next = root;
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                long node = next;
+                long child = link(node, FIRST_CHILD);
+                if (child != NONE) {
+                    if (count == queue.length) {
+                        long[] bigger = new long[queue.length * 2];
+                        for (int i = 0; i < count; i++) {
+                            bigger[i] = queue[(head + i) % queue.length];
+                        }
+                        queue = bigger;
+                        head = 0;
+                    }
+                    queue[(head + count++) % queue.length] = child;
+                }
+                long sibling = link(node, NEXT_SIBLING);
+                if (node != root && sibling != NONE) {
+                    next = sibling;
+                } else if (count > 0) {
+                    next = queue[head];
+                    head = (head + 1) % queue.length;
+                    count--;
+                } else {
+                    next = NONE;
+                }
+                return position(node);
+            }
+        };
+    }
+
+    public Iterator<Position<E>> iteratorPreOrden() {
+        checkOpen();
+        return new Iterator<Position<E>>() {
+            private long next = root;
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                long node = next;
+                next = nextPreOrden(node, root);
+                return position(node);
+            }
+        };
+    }
+
+    public Iterator<Position<E>> iteratorPostOrden() {
+        checkOpen();
+        return new Iterator<Position<E>>() {
+            private long next = (root == NONE) ? NONE : firstLeaf(root);
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                long node = next;
+                if (node == root) {
+                    next = NONE;
+                } else if (link(node, NEXT_SIBLING) != NONE) {
+                    next = firstLeaf(link(node, NEXT_SIBLING));
+                } else {
+                    next = link(node, PARENT);
+                }
+                return position(node);
+            }
+        };
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of off-heap bytes reserved by the tree.
+     */
+    public long reservedBytes() {
+        return chunks.isEmpty() ? 0 : (long) (chunks.size() - 1) * chunkBytes + chunks.get(0).capacity();
+    }
+
+    /**
+     * Releases the chunks. The tree cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        chunks.clear();
+        closed = true;
+        root = NONE;
+        size = 0;
+        used = 0;
+        freeHead = NONE;
+    }
+}
@@ -0,0 +1,672 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+
+/**
+ * An implementation of the NAryTree interface whose versions are immutable.
+ *
+ * Every node is an immutable record (element, parent, children and subtree
+ * size) kept in a persistent vector. A change never modifies a record: it
+ * creates new records for the node and its ancestors (path copying) and a new
+ * vector that shares everything else with the previous version. add, replace,
+ * swapElements and the remove of a leaf take O(depth) record updates, each one
+ * O(log32 n), plus the copy of the children of the parent.
+ *
+ * The tree always points to its latest version, and snapshot() returns a tree
+ * that keeps the current one, in O(1). Snapshots are trees like any other:
+ * they can be read while the original keeps changing, from other threads too,
+ * and changing a snapshot does not change the original. Old versions are
+ * reclaimed by the garbage collector once no tree, snapshot or iterator uses
+ * them. The slots of removed nodes are kept in a free list, persistent too,
+ * and reused by the next insertions, so the vector stays as large as the most
+ * nodes the tree has had at once rather than growing with every add.
+ *
+ * Writers may run in several threads at once: each one builds the next version
+ * from the current one and publishes it with a compare-and-set, and starts
+ * again if another writer published first, so no change is lost.
+ *
+ * Positions are stable keys of the nodes, valid in every version that contains
+ * the node: a position handed out by a tree can be used on its snapshots.
+ * getElement reads the element from the latest version of the tree that
+ * handed out the position.
+ *
+ * subTree shares the whole vector with the tree, so the nodes outside the
+ * subtree stay reachable, and are kept from the collector, as long as the
+ * subtree does. They are not part of it: positions of those nodes are rejected.
+ *
+ * @param <E> the type of element stored in the tree
+ */
+public class PersistentTree<E> implements NAryTree<E> {
+
+    private static final int NONE = -1;
+    private static final int[] NO_CHILDREN = new int[0];
+
+    /**
+     * The identity of a node, shared by all its records in every version.
+     */
+    private static final class Key {
+        private final int index;
+
+        private Key(int index) {
+            this.index = index;
+        }
+    }
+
+    private static final class Record<E> {
+        private final Key key;
+        private final E element;
+        private final int parent;
+        private final int[] children;
+        private final int subtreeSize;
+
+        private Record(Key key, E element, int parent, int[] children, int subtreeSize) {
+            this.key = key;
+            this.element = element;
+            this.parent = parent;
+            this.children = children;
+            this.subtreeSize = subtreeSize;
+        }
+
+        private Record<E> withElement(E e) {
+            return new Record<>(key, e, parent, children, subtreeSize);
+        }
+
+        private Record<E> withChildren(int[] c, int delta) {
+            return new Record<>(key, element, parent, c, subtreeSize + delta);
+        }
+
+        private Record<E> withSize(int delta) {
+            return new Record<>(key, element, parent, children, subtreeSize + delta);
+        }
+
+        private Record<E> withParent(int p) {
+            return new Record<>(key, element, p, children, subtreeSize);
+        }
+    }
+
+    /**
+     * A slot of the vector freed by remove, in a stack shared by the versions.
+     */
+    private static final class FreeSlot {
+        private final int index;
+        private final FreeSlot next;
+
+        private FreeSlot(int index, FreeSlot next) {
+            this.index = index;
+            this.next = next;
+        }
+    }
+
+    /**
+     * One immutable version of the tree.
+     */
+    private static final class Version<E> {
+        private final PersistentVector<Record<E>> nodes;
+        private final int root;
+        /** Slots of nodes that are free to be reused, or null. */
+        private final FreeSlot free;
+        /** Whether the vector also holds nodes that are not below the root. */
+        private final boolean partial;
+
+        private Version(PersistentVector<Record<E>> nodes, int root, FreeSlot free) {
+            this(nodes, root, free, false);
+        }
+
+        private Version(PersistentVector<Record<E>> nodes, int root, FreeSlot free, boolean partial) {
+            this.nodes = nodes;
+            this.root = root;
+            this.free = free;
+            this.partial = partial;
+        }
+
+        /**
+         * Returns the next version, with the same root.
+         */
+        private Version<E> with(PersistentVector<Record<E>> nodes, FreeSlot free) {
+            return new Version<>(nodes, root, free, partial);
+        }
+    }
+
+    private class PersistentPosition implements Position<E> {
+        private final Key key;
+
+        public PersistentPosition(Key key) {
+            this.key = key;
+        }
+
+        @Override
+        public E getElement() {
+            return record(version, this).element;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof PersistentTree.PersistentPosition) && ((PersistentTree<?>.PersistentPosition) o).key == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return key.index;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<PersistentTree, Version> VERSION =
+            AtomicReferenceFieldUpdater.newUpdater(PersistentTree.class, Version.class, "version");
+
+    private volatile Version<E> version;
+
+    public PersistentTree() {
+        version = new Version<>(PersistentVector.empty(), NONE, null);
+    }
+
+    private PersistentTree(Version<E> version) {
+        this.version = version;
+    }
+
+    /**
+     * Builds a tree with the given shape in O(n); node i of the topology holds
+     * elements.get(i).
+     *
+     * @param elements the elements, indexed like the nodes of the topology.
+     * @param topology the shape of the tree.
+     * @return the new tree.
+     */
+    public static <E> PersistentTree<E> build(List<? extends E> elements, TreeTopology topology) {
+        int n = topology.size();
+        if (elements.size() != n) {
+            throw new RuntimeException("The tree has " + n + " nodes but " + elements.size() + " elements");
+        }
+        int[] sizes = topology.subtreeSizes();
+        PersistentVector<Record<E>> nodes = PersistentVector.empty();
+        for (int v = 0; v < n; v++) {
+            int[] children = new int[topology.childCount(v)];
+            for (int c = 0; c < children.length; c++) {
+                children[c] = topology.child(v, c);
+            }
+            nodes = nodes.append(new Record<>(new Key(v), elements.get(v), topology.parent(v),
+                    (children.length == 0) ? NO_CHILDREN : children, sizes[v]));
+        }
+        return new PersistentTree<>(new Version<>(nodes, (n == 0) ? NONE : topology.root(), null));
+    }
+
+    /**
+     * Returns a tree that keeps the current version of this one, in O(1).
+     *
+     * @return the snapshot.
+     */
+    public PersistentTree<E> snapshot() {
+        return new PersistentTree<>(version);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Key checkPosition(Position<E> p) {
+        if (!(p instanceof PersistentTree.PersistentPosition)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return ((PersistentPosition) p).key;
+    }
+
+    private Record<E> record(Version<E> v, Position<E> p) {
+        Key key = checkPosition(p);
+        Record<E> r = (key.index < v.nodes.size()) ? v.nodes.get(key.index) : null;
+        if (r == null || r.key != key || (v.partial && !below(v, r))) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return r;
+    }
+
+    /**
+     * Returns whether r is the root of v or below it, walking up in O(depth).
+     */
+    private boolean below(Version<E> v, Record<E> r) {
+        int node = r.key.index;
+        while (node != v.root) {
+            if (node == NONE) {
+                return false;
+            }
+            node = v.nodes.get(node).parent;
+        }
+        return true;
+    }
+
+    /**
+     * Makes next the current version if the tree is still at v, and returns
+     * whether it did. Every writer loops until it succeeds.
+     */
+    private boolean publish(Version<E> v, Version<E> next) {
+        return VERSION.compareAndSet(this, v, next);
+    }
+
+    private Position<E> position(Version<E> v, int index) {
+        return (index == NONE) ? null : new PersistentPosition(v.nodes.get(index).key);
+    }
+
+    /**
+     * Adds delta to the subtree size of node and of all its ancestors, up to the
+     * root of the version. The ancestors of the root of a subTree belong to the
+     * tree it was taken from and are left alone; record rejects them.
+     */
+    private PersistentVector<Record<E>> updateSubtreeSizes(Version<E> v, PersistentVector<Record<E>> nodes, int node, int delta) {
+        while (node != NONE) {
+            Record<E> r = nodes.get(node);
+            nodes = nodes.set(node, r.withSize(delta));
+            node = (node == v.root) ? NONE : r.parent;
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the number of slots of the current version, holding nodes or free.
+     */
+    int capacity() {
+        return version.nodes.size();
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        for (;;) {
+            Version<E> v = version;
+            if (v.root != NONE) {
+                throw new RuntimeException("The tree is not empty, it already has a root");
+            }
+            int index = (v.free == null) ? v.nodes.size() : v.free.index;
+            Key key = new Key(index);
+            if (publish(v, new Version<>(store(v.nodes, new Record<>(key, e, NONE, NO_CHILDREN, 1)), index,
+                    (v.free == null) ? null : v.free.next))) {
+                return new PersistentPosition(key);
+            }
+        }
+    }
+
+    /**
+     * Writes a record to its slot, which is either free or the next one.
+     */
+    private static <E> PersistentVector<Record<E>> store(PersistentVector<Record<E>> nodes, Record<E> r) {
+        return (r.key.index == nodes.size()) ? nodes.append(r) : nodes.set(r.key.index, r);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        return insert(element, p, NONE);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        if (n < 0) {
+            throw new RuntimeException("The position of the child is invalid");
+        }
+        return insert(element, p, n);
+    }
+
+    private Position<E> insert(E element, Position<E> p, int n) {
+        for (;;) {
+            Version<E> v = version;
+            Record<E> parent = record(v, p);
+            int[] children = parent.children;
+            int at = (n == NONE) ? children.length : n;
+            if (at > children.length) {
+                throw new RuntimeException("The position of the child is invalid");
+            }
+            int index = (v.free == null) ? v.nodes.size() : v.free.index;
+            Key key = new Key(index);
+            PersistentVector<Record<E>> nodes = store(v.nodes, new Record<>(key, element, parent.key.index, NO_CHILDREN, 1));
+            int[] copy = new int[children.length + 1];
+            System.arraycopy(children, 0, copy, 0, at);
+            copy[at] = index;
+            System.arraycopy(children, at, copy, at + 1, children.length - at);
+            nodes = nodes.set(parent.key.index, parent.withChildren(copy, 0));
+            if (publish(v, v.with(updateSubtreeSizes(v, nodes, parent.key.index, 1),
+                    (v.free == null) ? null : v.free.next))) {
+                return new PersistentPosition(key);
+            }
+        }
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        for (;;) {
+            Version<E> v = version;
+            Record<E> r1 = record(v, p1);
+            Record<E> r2 = record(v, p2);
+            PersistentVector<Record<E>> nodes = v.nodes.set(r1.key.index, r1.withElement(r2.element));
+            nodes = nodes.set(r2.key.index, nodes.get(r2.key.index).withElement(r1.element));
+            if (publish(v, v.with(nodes, v.free))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public E replace(Position<E> p, E e) {
+        for (;;) {
+            Version<E> v = version;
+            Record<E> r = record(v, p);
+            if (publish(v, v.with(v.nodes.set(r.key.index, r.withElement(e)), v.free))) {
+                return r.element;
+            }
+        }
+    }
+
+    /**
+     * Removes the subtree of p. Its records are dropped from the new version, so
+     * nothing in it stays reachable from later versions, and their slots go to
+     * the free list; that costs O(size of the subtree), like freeing it in the
+     * array trees. Removing the root drops the whole vector in O(1).
+     */
+    @Override
+    public void remove(Position<E> p) {
+        for (;;) {
+            Version<E> v = version;
+            Record<E> r = record(v, p);
+            if (r.key.index == v.root) {
+                if (publish(v, new Version<>(PersistentVector.empty(), NONE, null))) {
+                    return;
+                }
+                continue;
+            }
+            PersistentVector<Record<E>> nodes = v.nodes;
+            FreeSlot free = v.free;
+            Deque<Integer> pending = new ArrayDeque<>();
+            pending.push(r.key.index);
+            while (!pending.isEmpty()) {
+                int node = pending.pop();
+                for (int c : nodes.get(node).children) {
+                    pending.push(c);
+                }
+                nodes = nodes.set(node, null);
+                free = new FreeSlot(node, free);
+            }
+            Record<E> parent = nodes.get(r.parent);
+            int[] children = parent.children;
+            int at = 0;
+            while (children[at] != r.key.index) {
+                at++;
+            }
+            int[] copy = new int[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, at);
+            System.arraycopy(children, at + 1, copy, at, children.length - at - 1);
+            nodes = nodes.set(r.parent, parent.withChildren(copy, 0));
+            if (publish(v, v.with(updateSubtreeSizes(v, nodes, r.parent, -r.subtreeSize), free))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the subtree of v as a tree of its own, in O(1): it shares the
+     * records of this version and only moves the root. Since the vector still
+     * holds the rest of the tree, the subtree checks that every position it is
+     * given is below its root, in O(depth).
+     */
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        Version<E> current = version;
+        Record<E> r = record(current, v);
+        return new PersistentTree<>(new Version<>(current.nodes, r.key.index, current.free,
+                current.partial || r.key.index != current.root));
+    }
+
+    /**
+     * Copies the nodes of t as the last child of p, or of the root if p is
+     * null. t keeps its nodes; the copy is needed because t numbers its nodes
+     * on its own.
+     */
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        if (t == this) {
+            throw new RuntimeException("A tree cannot be attached to itself");
+        }
+        for (;;) {
+            Version<E> v = version;
+            if (p == null && v.root == NONE) {
+                throw new RuntimeException("The tree is empty, there is no node to attach to");
+            }
+            Record<E> parent = (p == null) ? v.nodes.get(v.root) : record(v, p);
+            if (t.isEmpty()) {
+                return;
+            }
+            PersistentVector<Record<E>> nodes = v.nodes;
+            FreeSlot free = v.free;
+            // First pass in preorder: node k of the walk gets a free slot, or the
+            // next one; its children are known once they have been numbered, so
+            // the children arrays are written after.
+            int m = t.subtreeSize(t.root());
+            int[] slots = new int[m];
+            int[] parents = new int[m];
+            int[] childCounts = new int[m];
+            Deque<Position<E>> stack = new ArrayDeque<>();
+            Deque<Integer> stackParents = new ArrayDeque<>();
+            stack.push(t.root());
+            stackParents.push(NONE);
+            int next = 0;
+            while (!stack.isEmpty()) {
+                Position<E> q = stack.pop();
+                int k = next++;
+                parents[k] = stackParents.pop();
+                if (free != null) {
+                    slots[k] = free.index;
+                    free = free.next;
+                } else {
+                    slots[k] = nodes.size();
+                }
+                int parentIndex = (parents[k] == NONE) ? parent.key.index : slots[parents[k]];
+                nodes = store(nodes, new Record<>(new Key(slots[k]), q.getElement(), parentIndex, NO_CHILDREN, t.subtreeSize(q)));
+                if (parents[k] != NONE) {
+                    childCounts[parents[k]]++;
+                }
+                Deque<Position<E>> children = new ArrayDeque<>();
+                for (Position<E> c : t.children(q)) {
+                    children.push(c);
+                }
+                for (Position<E> c : children) {
+                    stack.push(c);
+                    stackParents.push(k);
+                }
+            }
+            // Second pass: the children arrays. Siblings are numbered in order.
+            int[][] children = new int[m][];
+            for (int k = 0; k < m; k++) {
+                children[k] = (childCounts[k] == 0) ? NO_CHILDREN : new int[childCounts[k]];
+            }
+            int[] filled = new int[m];
+            for (int k = 1; k < m; k++) {
+                children[parents[k]][filled[parents[k]]++] = slots[k];
+            }
+            for (int k = 0; k < m; k++) {
+                if (childCounts[k] > 0) {
+                    nodes = nodes.set(slots[k], nodes.get(slots[k]).withChildren(children[k], 0));
+                }
+            }
+            int[] copy = Arrays.copyOf(parent.children, parent.children.length + 1);
+            copy[parent.children.length] = slots[0];
+            nodes = nodes.set(parent.key.index, parent.withChildren(copy, 0));
+            if (publish(v, v.with(updateSubtreeSizes(v, nodes, parent.key.index, m), free))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return version.root == NONE;
+    }
+
+    @Override
+    public Position<E> root() {
+        Version<E> v = version;
+        return position(v, v.root);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> p) {
+        Version<E> v = version;
+        Record<E> r = record(v, p);
+        return (r.key.index == v.root) ? null : position(v, r.parent);
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> p) {
+        Version<E> v = version;
+        int[] children = record(v, p).children;
+        return () -> new Iterator<Position<E>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < children.length;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return position(v, children[next++]);
+            }
+        };
+    }
+
+    @Override
+    public Position<E> child(Position<E> p, int n) {
+        Version<E> v = version;
+        int[] children = record(v, p).children;
+        if (n < 0 || n >= children.length) {
+            throw new RuntimeException("The position of the child is invalid");
+        }
+        return position(v, children[n]);
+    }
+
+    @Override
+    public boolean isInternal(Position<E> p) {
+        return record(version, p).children.length > 0;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> p) {
+        return record(version, p).children.length == 0;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> p) {
+        Version<E> v = version;
+        return record(v, p).key.index == v.root;
+    }
+
+    @Override
+    public int subtreeSize(Position<E> p) {
+        return record(version, p).subtreeSize;
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int size() {
+        Version<E> v = version;
+        return (v.root == NONE) ? 0 : v.nodes.get(v.root).subtreeSize;
+    }
+
+    /**
+     * Breadth first iterator over the shape current when it was created; later
+     * changes do not affect it. The positions still read their elements from the
+     * latest version, so iterate a snapshot to read elements of one version.
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        Version<E> v = version;
+        Deque<Integer> queue = new ArrayDeque<>();
+        if (v.root != NONE) {
+            queue.add(v.root);
+        }
+        return new Iterator<Position<E>>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Position<E> next() {
+                if (queue.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Record<E> r = v.nodes.get(queue.poll());
+                for (int c : r.children) {
+                    queue.add(c);
+                }
+                return new PersistentPosition(r.key);
+            }
+        };
+    }
+
+    /**
+     * Preorder iterator over the version current when it was created.
+     */
+    public Iterator<Position<E>> iteratorPreOrden() {
+        Version<E> v = version;
+        Deque<Integer> stack = new ArrayDeque<>();
+        if (v.root != NONE) {
+            stack.push(v.root);
+        }
+        return new Iterator<Position<E>>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Position<E> next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Record<E> r = v.nodes.get(stack.pop());
+                for (int i = r.children.length - 1; i >= 0; i--) {
+                    stack.push(r.children[i]);
+                }
+                return new PersistentPosition(r.key);
+            }
+        };
+    }
+
+    /**
+     * Postorder iterator over the version current when it was created.
+     */
+    public Iterator<Position<E>> iteratorPostOrden() {
+        Version<E> v = version;
+        Deque<Integer> nodes = new ArrayDeque<>();
+        Deque<Integer> next = new ArrayDeque<>();
+        if (v.root != NONE) {
+            nodes.push(v.root);
+            next.push(0);
+        }
+        return new Iterator<Position<E>>() {
+            @Override
+            public boolean hasNext() {
+                return !nodes.isEmpty();
+            }
+
+            @Override
+            public Position<E> next() {
+                if (nodes.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                int[] children = v.nodes.get(nodes.peek()).children;
+                while (next.peek() < children.length) {
+                    int child = children[next.peek()];
+                    next.push(next.pop() + 1);
+                    nodes.push(child);
+                    next.push(0);
+                    children = v.nodes.get(child).children;
+                }
+                next.pop();
+                return new PersistentPosition(v.nodes.get(nodes.pop()).key);
+            }
+        };
+    }
+}
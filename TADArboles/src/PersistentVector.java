@@ -0,0 +1,77 @@
+/**
+ * An immutable array of values indexed from 0, stored as a 32-way trie. set and
+ * append return a new vector that copies only the O(log32 n) nodes on the path
+ * to the changed slot and shares every other node with the old one.
+ *
+ * @param <T> the type of the values
+ */
+final class PersistentVector<T> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, 0, new Object[WIDTH]);
+
+    private final int size;
+    /** Number of index bits below the root level. */
+    private final int shift;
+    private final Object[] root;
+
+    private PersistentVector(int size, int shift, Object[] root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(i >>> level) & MASK];
+        }
+        return (T) node[i & MASK];
+    }
+
+    PersistentVector<T> set(int i, T value) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        return new PersistentVector<>(size, shift, set(shift, root, i, value));
+    }
+
+    PersistentVector<T> append(T value) {
+        Object[] newRoot = root;
+        int newShift = shift;
+        if (size == 1 << (shift + BITS)) {
+            // The trie is full: it becomes the first child of a new root.
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newShift += BITS;
+        }
+        return new PersistentVector<>(size + 1, newShift, set(newShift, newRoot, size, value));
+    }
+
+    private static Object[] set(int level, Object[] node, int i, Object value) {
+        Object[] copy = (node == null) ? new Object[WIDTH] : node.clone();
+        if (level == 0) {
+            copy[i & MASK] = value;
+        } else {
+            int slot = (i >>> level) & MASK;
+            copy[slot] = set(level - BITS, (Object[]) copy[slot], i, value);
+        }
+        return copy;
+    }
+}
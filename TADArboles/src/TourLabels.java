@@ -0,0 +1,354 @@
+import java.util.Arrays;
+
+
+/**
+ * Keeps the nodes of a linked tree labelled with the place of their two entries
+ * in the Euler tour of the tree: enter, when the tour goes down into the node,
+ * and exit, when it comes back up from it. The labels grow along the tour, so
+ * v is w or an ancestor of w exactly when enter(v) <= enter(w) and
+ * exit(w) <= exit(v), two comparisons with no walk and no state to rebuild.
+ *
+ * The labels are ints spread over [0, 2^31) with gaps between them. A new
+ * node takes its two labels from the gap where it goes, which is all an
+ * insert does most of the time. When the gap is used up, the smallest aligned
+ * range of labels around it that is not too full is spread out again, which
+ * relabels O(log n) entries amortized per insert: a couple of them when the
+ * inserts are spread over the tree, some thirty when every insert goes to
+ * the same place of a tree of 10^5 nodes, as when a wide node is filled.
+ * Removing a subtree relabels nothing: the labels left are still in order,
+ * and so are those of the subtree, which keeps them when it is attached
+ * somewhere else.
+ *
+ * The trees give the navigation. Sibling lookups may use the labels of the
+ * siblings, which are in order every time they are called.
+ *
+ * @param <N> the type of the nodes
+ */
+abstract class TourLabels<N> {
+
+    /** Labels are in [0, SPACE). */
+    private static final long SPACE = 1L << 31;
+    private static final int LEVELS = 31;
+
+    abstract N parent(N node);
+
+    abstract N firstChild(N node);
+
+    abstract N lastChild(N node);
+
+    abstract N previousSibling(N node);
+
+    abstract N nextSibling(N node);
+
+    abstract int subtreeSize(N node);
+
+    abstract int enter(N node);
+
+    abstract int exit(N node);
+
+    abstract void setEnter(N node, int label);
+
+    abstract void setExit(N node, int label);
+
+    /**
+     * Returns the label of the k-th of count entries spread evenly over the
+     * whole space, as a tree built at once gets them.
+     */
+    static int spread(long k, long count) {
+        long gap = SPACE / (count + 1);
+        if (gap == 0) {
+            throw new RuntimeException("The tree has too many nodes to label");
+        }
+        return (int) (gap * (k + 1) - 1);
+    }
+
+    /**
+     * Labels a tree built at once, spreading its entries evenly. O(n).
+     *
+     * @param nodes the node of every node of the topology.
+     * @param topology the shape of the tree.
+     * @param sizes the subtree size of every node of the topology.
+     */
+    @SuppressWarnings("unchecked")
+    void build(Object[] nodes, TreeTopology topology, int[] sizes) {
+        int n = topology.size();
+        long count = 2L * n;
+        // Place in the tour of the enter of the next child of every node.
+        int[] next = new int[n];
+        for (int k = 0; k < n; k++) {
+            int v = topology.breadthFirst(k);
+            int p = topology.parent(v);
+            int enter = (p < 0) ? 0 : next[p];
+            if (p >= 0) {
+                next[p] = enter + 2 * sizes[v];
+            }
+            next[v] = enter + 1;
+            setEnter((N) nodes[v], spread(enter, count));
+            setExit((N) nodes[v], spread(enter + 2L * sizes[v] - 1, count));
+        }
+    }
+
+    /**
+     * Labels a new root.
+     */
+    void root(N node) {
+        setEnter(node, spread(0, 2));
+        setExit(node, spread(1, 2));
+    }
+
+    /**
+     * Labels node, just linked into its parent between previous and next,
+     * either of which may be null. The node may have a subtree of its own,
+     * labelled in its old tree: the smaller of that subtree and the tree it
+     * joins is relabelled to make room.
+     */
+    void insert(N node, N previous, N next) {
+        N parent = parent(node);
+        int size = subtreeSize(node);
+        if (size == 1) {
+            long low = (previous == null) ? enter(parent) : exit(previous);
+            long high = (next == null) ? exit(parent) : enter(next);
+            if (high - low > 2) {
+                // The common case: the gap has room and nothing else moves.
+                setEnter(node, (int) (low + (high - low) / 3));
+                setExit(node, (int) (low + 2 * (high - low) / 3));
+                return;
+            }
+        }
+        Cursor before = (previous == null) ? new Cursor(parent, false) : new Cursor(previous, true);
+        Cursor after = (next == null) ? new Cursor(parent, true) : new Cursor(next, false);
+        if (size == 1) {
+            Run block = new Run();
+            block.add(node, false);
+            block.add(node, true);
+            provisional(node, before.label());
+            place(block, before, after, null);
+            return;
+        }
+        N top = top(parent);
+        if (size <= subtreeSize(top) - size) {
+            Run block = tour(node);
+            provisional(node, before.label());
+            place(block, before, after, null);
+            return;
+        }
+        // The subtree is larger: it keeps its labels and the rest of the tree
+        // is labelled around it.
+        int enter = enter(node);
+        int exit = exit(node);
+        provisional(node, before.label());
+        Run left = new Run();
+        Run right = new Run();
+        Run into = left;
+        Cursor cursor = new Cursor(top, false);
+        do {
+            if (cursor.node == node) {
+                cursor.exit = true;
+                into = right;
+            } else {
+                into.add(cursor.node, cursor.exit);
+            }
+        } while (cursor.next());
+        setEnter(node, enter);
+        setExit(node, exit);
+        place(left, null, new Cursor(node, false), node);
+        place(right, new Cursor(node, true), null, null);
+    }
+
+    private N top(N node) {
+        while (parent(node) != null) {
+            node = parent(node);
+        }
+        return node;
+    }
+
+    /**
+     * Gives node labels that keep the enter labels of its siblings in order
+     * while its own place is being made: those of the entry before it.
+     */
+    private void provisional(N node, int label) {
+        setEnter(node, label);
+        setExit(node, label);
+    }
+
+    /**
+     * Returns the entries of the subtree of node, in tour order.
+     */
+    private Run tour(N node) {
+        Run run = new Run();
+        Cursor cursor = new Cursor(node, false);
+        while (true) {
+            run.add(cursor.node, cursor.exit);
+            if (cursor.node == node && cursor.exit) {
+                return run;
+            }
+            cursor.next();
+        }
+    }
+
+    /**
+     * Labels the entries of run, in order, between before and after, two
+     * entries next to each other in the tour, or its ends when null. When the
+     * gap between them is too small, the smallest aligned range of labels
+     * around it that is not too full with the new entries is spread out
+     * again. The scan forward does not go past the exit of stop.
+     *
+     * A range of 2^i labels is too full past c^(i / 31) entries, where c is
+     * twice the entries of the tree, as in the list labelling of Bender et
+     * al.: the smaller the range, the emptier it must be left, so that the
+     * inserts that come next find gaps too, and the whole space always fits
+     * the tree.
+     */
+    private void place(Run run, Cursor before, Cursor after, N stop) {
+        long low = (before == null) ? -1 : before.label();
+        long high = (after == null) ? SPACE : after.label();
+        Run left = new Run();
+        Run right = new Run();
+        if (high - low > run.size) {
+            relabel(low, high, left, run, right);
+            return;
+        }
+        long anchor = (before == null) ? 0 : low;
+        double capacity = Math.min(SPACE, 4.0 * subtreeSize(top((before == null) ? after.node : before.node)));
+        boolean moreLeft = before != null;
+        boolean moreRight = after != null;
+        for (int level = 1; level <= LEVELS; level++) {
+            long width = 1L << level;
+            long base = anchor & -width;
+            long limit = base + width;
+            while (moreLeft && before.label() >= base) {
+                left.add(before.node, before.exit);
+                moreLeft = before.previous();
+            }
+            while (moreRight && after.label() < limit) {
+                right.add(after.node, after.exit);
+                moreRight = !(after.node == stop && after.exit) && after.next();
+            }
+            long count = (long) left.size + run.size + right.size;
+            if (count <= Math.pow(capacity, (double) level / LEVELS)) {
+                relabel(base - 1, limit, left, run, right);
+                return;
+            }
+        }
+        throw new RuntimeException("The tree has too many nodes to label");
+    }
+
+    /**
+     * Spreads left, backwards, then run and right evenly strictly between
+     * low and high.
+     */
+    private void relabel(long low, long high, Run left, Run run, Run right) {
+        long count = (long) left.size + run.size + right.size + 1;
+        long k = 1;
+        for (int i = left.size - 1; i >= 0; i--, k++) {
+            left.set(i, (int) (low + k * (high - low) / count));
+        }
+        for (int i = 0; i < run.size; i++, k++) {
+            run.set(i, (int) (low + k * (high - low) / count));
+        }
+        for (int i = 0; i < right.size; i++, k++) {
+            right.set(i, (int) (low + k * (high - low) / count));
+        }
+    }
+
+    /**
+     * An entry of the tour, the enter or the exit of a node, that can move to
+     * the entries next to it.
+     */
+    private final class Cursor {
+        private N node;
+        private boolean exit;
+
+        private Cursor(N node, boolean exit) {
+            this.node = node;
+            this.exit = exit;
+        }
+
+        private int label() {
+            return exit ? exit(node) : enter(node);
+        }
+
+        /**
+         * Moves to the entry before, or returns false at the start of the tour.
+         */
+        private boolean previous() {
+            if (exit) {
+                N last = lastChild(node);
+                if (last != null) {
+                    node = last;
+                } else {
+                    exit = false;
+                }
+                return true;
+            }
+            N sibling = previousSibling(node);
+            if (sibling != null) {
+                node = sibling;
+                exit = true;
+                return true;
+            }
+            N up = parent(node);
+            if (up == null) {
+                return false;
+            }
+            node = up;
+            return true;
+        }
+
+        /**
+         * Moves to the entry after, or returns false at the end of the tour.
+         */
+        private boolean next() {
+            if (!exit) {
+                N first = firstChild(node);
+                if (first != null) {
+                    node = first;
+                } else {
+                    exit = true;
+                }
+                return true;
+            }
+            N sibling = nextSibling(node);
+            if (sibling != null) {
+                node = sibling;
+                exit = false;
+                return true;
+            }
+            N up = parent(node);
+            if (up == null) {
+                return false;
+            }
+            node = up;
+            return true;
+        }
+    }
+
+    /**
+     * A growable sequence of entries, collected before any of them is
+     * relabelled.
+     */
+    private final class Run {
+        private Object[] nodes = new Object[8];
+        private boolean[] exits = new boolean[8];
+        private int size;
+
+        private void add(N node, boolean exit) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                exits = Arrays.copyOf(exits, size * 2);
+            }
+            nodes[size] = node;
+            exits[size] = exit;
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void set(int i, int label) {
+            if (exits[i]) {
+                setExit((N) nodes[i], label);
+            } else {
+                setEnter((N) nodes[i], label);
+            }
+        }
+    }
+}
@@ -1,5 +1,11 @@
 import material.Position;
 
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 
 /**
  * This interface represents a Tree data structure, which is a collection of nodes organized in a hierarchical structure.
@@ -39,6 +45,25 @@ public interface Tree<E> extends Iterable<Position<E>> {
      */
     public Iterable<? extends Position<E>> children(Position<E> v);
 
+    /**
+     * Returns the n-th child of a given node, counting from 0.
+     *
+     * @param v the node whose child is to be returned.
+     * @param n the position of the child.
+     * @return the n-th child of the given node.
+     */
+    public default Position<E> child(Position<E> v, int n) {
+        if (n >= 0) {
+            int i = 0;
+            for (Position<E> c : children(v)) {
+                if (i++ == n) {
+                    return c;
+                }
+            }
+        }
+        throw new RuntimeException("The position of the child is invalid");
+    }
+
     /**
      * Returns whether a given node is internal.
      *
@@ -62,4 +87,100 @@ public interface Tree<E> extends Iterable<Position<E>> {
      * @return true if the node is the root of the tree, false otherwise.
      */
     public boolean isRoot(Position<E> v);
-}
\ No newline at end of file
+
+    /**
+     * Returns the number of nodes of the subtree rooted at a given node, the node
+     * itself included.
+     *
+     * @param v the root of the subtree.
+     * @return the size of the subtree rooted at v.
+     */
+    public int subtreeSize(Position<E> v);
+
+    /**
+     * Returns whether a node is inside the subtree rooted at another one. The
+     * default walks up from w with parent(), in O(depth).
+     *
+     * @param v the root of the subtree.
+     * @param w the node to be tested.
+     * @return true if v is w or an ancestor of w, false otherwise.
+     */
+    public default boolean isAncestor(Position<E> v, Position<E> w) {
+        for (Position<E> p = w; p != null; p = parent(p)) {
+            if (p.equals(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Folds the elements of the subtree rooted at a given node in preorder, in
+     * parallel on the current fork/join pool (the common pool when called from
+     * outside one). The tree must not be modified while the reduction runs.
+     *
+     * @param v the root of the subtree.
+     * @param identity the initial value of every partial result.
+     * @param accumulator adds one element to a partial result.
+     * @param combiner joins two consecutive partial results; it must be associative.
+     * @return the result of folding every element of the subtree.
+     */
+    public default <R> R reduce(Position<E> v, R identity, BiFunction<R, ? super E, R> accumulator,
+                                BinaryOperator<R> combiner) {
+        return TreeReduction.reduce(this, v, identity, accumulator, combiner);
+    }
+
+    /**
+     * Folds every element of the tree in preorder, in parallel.
+     *
+     * @see #reduce(Position, Object, BiFunction, BinaryOperator)
+     */
+    public default <R> R reduce(R identity, BiFunction<R, ? super E, R> accumulator, BinaryOperator<R> combiner) {
+        if (isEmpty()) {
+            return identity;
+        }
+        return reduce(root(), identity, accumulator, combiner);
+    }
+
+    /**
+     * Returns a spliterator over the positions of the tree in preorder. It splits
+     * by handing off whole sibling subtrees and knows the exact size of every
+     * part.
+     *
+     * <p><b>The order is not the one of iterator()</b>, which is breadth-first
+     * in every implementation, nor of forEach, which uses it. A breadth-first
+     * order cannot be cut into halves made of whole subtrees, so the spliterator,
+     * and the streams built on it, report preorder as their encounter order.
+     *
+     * @return a spliterator over the positions of the tree.
+     */
+    @Override
+    public default Spliterator<Position<E>> spliterator() {
+        return new TreeSpliterator<>(this);
+    }
+
+    /**
+     * Returns a sequential stream over the positions of the tree in preorder.
+     *
+     * <p><b>The stream is in preorder, while iterator() and forEach walk the
+     * tree breadth-first</b>; see spliterator().
+     *
+     * @return a stream over the positions of the tree.
+     */
+    public default Stream<Position<E>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream over the positions of the tree in preorder. The
+     * tree must not be modified while the stream runs.
+     *
+     * <p><b>The stream is in preorder, while iterator() and forEach walk the
+     * tree breadth-first</b>; see spliterator().
+     *
+     * @return a parallel stream over the positions of the tree.
+     */
+    public default Stream<Position<E>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+}
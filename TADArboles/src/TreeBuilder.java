@@ -0,0 +1,59 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+
+/**
+ * A TreeHandler that adds every node it receives to an NAryTree, as the last
+ * child of the node that is open. It only keeps the positions of the open
+ * nodes, so the tree is built while the events arrive.
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public class TreeBuilder<E> implements TreeHandler<E> {
+
+    private final NAryTree<E> tree;
+    private final Deque<Position<E>> open = new ArrayDeque<>();
+
+    /**
+     * @param tree the empty tree to fill.
+     */
+    public TreeBuilder(NAryTree<E> tree) {
+        if (!tree.isEmpty()) {
+            throw new RuntimeException("The tree is not empty");
+        }
+        this.tree = tree;
+    }
+
+    @Override
+    public void startNode(E e) {
+        if (open.isEmpty()) {
+            open.push(tree.addRoot(e));
+        } else {
+            open.push(tree.add(e, open.peek()));
+        }
+    }
+
+    @Override
+    public void endNode() {
+        if (open.isEmpty()) {
+            throw new RuntimeException("There is no open node to end");
+        }
+        open.pop();
+    }
+
+    /**
+     * Returns whether every node received so far has ended.
+     */
+    public boolean isComplete() {
+        return open.isEmpty() && !tree.isEmpty();
+    }
+
+    /**
+     * Returns the tree being built.
+     */
+    public NAryTree<E> getTree() {
+        return tree;
+    }
+}
@@ -0,0 +1,55 @@
+import material.Position;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+
+/**
+ * Sends the nodes of a tree to a TreeHandler.
+ */
+public final class TreeEvents {
+
+    private TreeEvents() {
+    }
+
+    /**
+     * Sends every node of a tree, in preorder. Nothing is sent for an empty tree.
+     *
+     * @param tree the tree to send.
+     * @param handler the receiver of the events.
+     * @throws IOException if the handler fails.
+     */
+    public static <E> void emit(Tree<E> tree, TreeHandler<? super E> handler) throws IOException {
+        if (!tree.isEmpty()) {
+            emit(tree, tree.root(), handler);
+        }
+    }
+
+    /**
+     * Sends the nodes of the subtree rooted at v, in preorder. The walk keeps one
+     * iterator per level, so the depth of the tree is not limited by the stack.
+     *
+     * @param tree the tree to send.
+     * @param v the root of the subtree.
+     * @param handler the receiver of the events.
+     * @throws IOException if the handler fails.
+     */
+    public static <E> void emit(Tree<E> tree, Position<E> v, TreeHandler<? super E> handler) throws IOException {
+        Deque<Iterator<? extends Position<E>>> stack = new ArrayDeque<>();
+        handler.startNode(v.getElement());
+        stack.push(tree.children(v).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<? extends Position<E>> it = stack.peek();
+            if (it.hasNext()) {
+                Position<E> p = it.next();
+                handler.startNode(p.getElement());
+                stack.push(tree.children(p).iterator());
+            } else {
+                stack.pop();
+                handler.endNode();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import material.Position;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+
+
+/**
+ * Saves trees to a compact binary file and loads them back.
+ *
+ * The nodes are stored in preorder, so node i of the file is the i-th node of
+ * a preorder walk. All numbers are little endian:
+ *
+ * <pre>
+ * header    magic "TREE" (int), version (int), n (long), element bytes (long)
+ * sizes     n ints, the subtree size of every node
+ * parents   n ints, the parent of every node, -1 for the root
+ * offsets   n + 1 longs, where the element of every node starts in the data
+ * data      the elements, written one after another by an ElementCodec
+ * </pre>
+ *
+ * The subtree sizes are enough to rebuild the shape: the first child of i is
+ * i + 1 and the next sibling of a child c is c + sizes[c]. The parents make
+ * parent() O(1) when the tree is served straight from the file by MappedTree.
+ *
+ * Files are written and read through FileChannel. The readers map the file
+ * instead of copying it, so loading a tree only costs decoding its elements
+ * and linking its nodes, in one O(n) pass.
+ */
+public final class TreeFile {
+
+    static final int MAGIC = 0x45455254;
+    static final int VERSION = 1;
+    static final int HEADER = 24;
+
+    private static final int BUFFER = 1 << 16;
+
+    private TreeFile() {
+    }
+
+    /**
+     * Offset of the sizes column in a file of n nodes.
+     */
+    static long sizesOffset(long n) {
+        return HEADER;
+    }
+
+    static long parentsOffset(long n) {
+        return HEADER + 4 * n;
+    }
+
+    static long offsetsOffset(long n) {
+        return HEADER + 8 * n;
+    }
+
+    static long dataOffset(long n) {
+        return HEADER + 16 * n + 8;
+    }
+
+    /**
+     * A write buffer that flushes to its own region of the file.
+     */
+    private static class Column {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        public Column(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        public ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        public void write(ByteBuffer bytes) throws IOException {
+            flush();
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Writes a tree to a file, replacing it if it exists.
+     *
+     * @param tree the tree to save.
+     * @param codec the codec of the elements.
+     * @param path the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static <E> void write(Tree<E> tree, ElementCodec<? super E> codec, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long n = tree.isEmpty() ? 0 : tree.subtreeSize(tree.root());
+            Column sizes = new Column(channel, sizesOffset(n));
+            Column parents = new Column(channel, parentsOffset(n));
+            Column offsets = new Column(channel, offsetsOffset(n));
+            Column data = new Column(channel, dataOffset(n));
+
+            long offset = 0;
+            if (n > 0) {
+                // Preorder walk keeping the children left and the preorder number
+                // of every open node.
+                Deque<Iterator<? extends Position<E>>> stack = new ArrayDeque<>();
+                int[] numbers = new int[16];
+                int next = 0;
+                Position<E> p = tree.root();
+                int parent = -1;
+                while (p != null) {
+                    sizes.reserve(4).putInt(tree.subtreeSize(p));
+                    parents.reserve(4).putInt(parent);
+                    offsets.reserve(8).putLong(offset);
+                    E e = p.getElement();
+                    int size = codec.size(e);
+                    if (size > BUFFER) {
+                        ByteBuffer bytes = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+                        codec.write(bytes, e);
+                        bytes.flip();
+                        data.write(bytes);
+                    } else {
+                        codec.write(data.reserve(size), e);
+                    }
+                    offset += size;
+
+                    if (stack.size() == numbers.length) {
+                        numbers = Arrays.copyOf(numbers, numbers.length * 2);
+                    }
+                    numbers[stack.size()] = next++;
+                    stack.push(tree.children(p).iterator());
+                    p = null;
+                    while (p == null && !stack.isEmpty()) {
+                        if (stack.peek().hasNext()) {
+                            p = stack.peek().next();
+                            parent = numbers[stack.size() - 1];
+                        } else {
+                            stack.pop();
+                        }
+                    }
+                }
+            }
+            offsets.reserve(8).putLong(offset);
+            sizes.flush();
+            parents.flush();
+            offsets.flush();
+            data.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(n).putLong(offset).flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        }
+    }
+
+    /**
+     * Maps a file and serves the tree straight from it, read-only. Nothing is
+     * loaded on the heap; elements are decoded when they are asked for.
+     *
+     * @param path the file to map.
+     * @param codec the codec of the elements.
+     * @return the tree stored in the file.
+     * @throws IOException if the file cannot be read or is not a tree file.
+     */
+    public static <E> MappedTree<E> map(Path path, ElementCodec<E> codec) throws IOException {
+        return new MappedTree<>(path, codec);
+    }
+
+    /**
+     * Loads a file into a LinkedTree, in one O(n) pass over the mapped file.
+     *
+     * @param path the file to read.
+     * @param codec the codec of the elements.
+     * @return the tree stored in the file.
+     * @throws IOException if the file cannot be read or is not a tree file.
+     */
+    public static <E> LinkedTree<E> readLinkedTree(Path path, ElementCodec<E> codec) throws IOException {
+        MappedTree<E> mapped = map(path, codec);
+        return LinkedTree.build(mapped.elements(), mapped.topology());
+    }
+
+    /**
+     * Loads a file into an LCRSTree, in one O(n) pass over the mapped file.
+     *
+     * @param path the file to read.
+     * @param codec the codec of the elements.
+     * @return the tree stored in the file.
+     * @throws IOException if the file cannot be read or is not a tree file.
+     */
+    public static <E> LCRSTree<E> readLCRSTree(Path path, ElementCodec<E> codec) throws IOException {
+        MappedTree<E> mapped = map(path, codec);
+        return LCRSTree.build(mapped.elements(), mapped.topology());
+    }
+}
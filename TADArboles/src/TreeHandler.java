@@ -0,0 +1,33 @@
+import java.io.IOException;
+
+
+/**
+ * Receives a tree as a stream of events, in the style of SAX: startNode when a
+ * node is reached in preorder and endNode once its whole subtree has been
+ * sent. The events of a tree of n nodes are balanced, n startNode calls and n
+ * endNode calls, and the first startNode is the root.
+ *
+ * TreeEvents sends the nodes of a Tree to a handler, TreeStreamWriter writes
+ * the events to a stream, TreeStreamReader reads them back and TreeBuilder
+ * turns them into an NAryTree. A handler that keeps nothing but the path from
+ * the root processes a tree in memory proportional to its depth.
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public interface TreeHandler<E> {
+
+    /**
+     * A node starts; its children follow, then its endNode.
+     *
+     * @param e the element of the node.
+     * @throws IOException if the handler writes the event and fails.
+     */
+    public void startNode(E e) throws IOException;
+
+    /**
+     * The node opened by the last unmatched startNode ends.
+     *
+     * @throws IOException if the handler writes the event and fails.
+     */
+    public void endNode() throws IOException;
+}
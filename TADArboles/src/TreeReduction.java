@@ -0,0 +1,205 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+
+/**
+ * Fork/join task that folds the elements of a subtree in preorder.
+ *
+ * The work is split at subtree boundaries: every child whose subtree is larger
+ * than the granularity becomes a task of its own, and runs of small siblings are
+ * packed together until they reach the granularity. The task keeps walking down
+ * its largest piece of work instead of forking it, so deep or skewed trees do
+ * not build chains of tasks waiting on each other.
+ *
+ * @param <E> the type of the elements of the tree
+ * @param <R> the type of the result
+ */
+class TreeReduction<E, R> extends RecursiveTask<R> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Smallest number of nodes worth a task of its own. */
+    static final int MIN_GRANULARITY = 1024;
+
+    /** Number of tasks created per worker thread on a balanced tree. */
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final Tree<E> tree;
+    private final List<Position<E>> roots;
+    private final R identity;
+    private final BiFunction<R, ? super E, R> accumulator;
+    private final BinaryOperator<R> combiner;
+    private final int granularity;
+
+    private TreeReduction(Tree<E> tree, List<Position<E>> roots, R identity,
+                          BiFunction<R, ? super E, R> accumulator, BinaryOperator<R> combiner, int granularity) {
+        this.tree = tree;
+        this.roots = roots;
+        this.identity = identity;
+        this.accumulator = accumulator;
+        this.combiner = combiner;
+        this.granularity = granularity;
+    }
+
+    /**
+     * Folds the subtree rooted at v, splitting the work among the threads of the
+     * current fork/join pool, or of the common pool when called from outside one.
+     */
+    static <E, R> R reduce(Tree<E> tree, Position<E> v, R identity,
+                           BiFunction<R, ? super E, R> accumulator, BinaryOperator<R> combiner) {
+        int parallelism = ForkJoinTask.inForkJoinPool()
+                ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.getCommonPoolParallelism();
+        int granularity = Math.max(MIN_GRANULARITY, tree.subtreeSize(v) / (parallelism * TASKS_PER_THREAD));
+        List<Position<E>> roots = new ArrayList<>(1);
+        roots.add(v);
+        return new TreeReduction<>(tree, roots, identity, accumulator, combiner, granularity).invoke();
+    }
+
+    @Override
+    protected R compute() {
+        if (roots.size() > 1 || tree.subtreeSize(roots.get(0)) <= granularity) {
+            R acc = identity;
+            for (Position<E> p : roots) {
+                acc = fold(p, acc);
+            }
+            return acc;
+        }
+
+        // Every level that forked something leaves its partial result and the
+        // tasks before and after the piece it kept, to be combined in order once
+        // that piece is done.
+        List<R> partials = new ArrayList<>();
+        List<List<TreeReduction<E, R>>> before = new ArrayList<>();
+        List<List<TreeReduction<E, R>>> after = new ArrayList<>();
+        R acc = identity;
+        Position<E> v = roots.get(0);
+        while (v != null) {
+            acc = accumulator.apply(acc, v.getElement());
+            List<List<Position<E>>> pieces = split(v);
+            v = null;
+            if (pieces.isEmpty()) {
+                break;
+            }
+            // Keeping the largest piece means every forked task holds at most half
+            // of the subtree, so tasks joined inline nest only O(log n) deep.
+            int kept = 0;
+            for (int i = 1; i < pieces.size(); i++) {
+                if (size(pieces.get(i)) > size(pieces.get(kept))) {
+                    kept = i;
+                }
+            }
+            if (pieces.size() > 1) {
+                partials.add(acc);
+                before.add(fork(pieces.subList(0, kept)));
+                after.add(fork(pieces.subList(kept + 1, pieces.size())));
+                acc = identity;
+            }
+            List<Position<E>> piece = pieces.get(kept);
+            if (piece.size() == 1 && tree.subtreeSize(piece.get(0)) > granularity) {
+                v = piece.get(0);
+            } else {
+                for (Position<E> p : piece) {
+                    acc = fold(p, acc);
+                }
+            }
+        }
+
+        R result = acc;
+        for (int i = partials.size() - 1; i >= 0; i--) {
+            R level = partials.get(i);
+            for (TreeReduction<E, R> task : before.get(i)) {
+                level = combiner.apply(level, task.join());
+            }
+            result = combiner.apply(level, result);
+            for (TreeReduction<E, R> task : after.get(i)) {
+                result = combiner.apply(result, task.join());
+            }
+        }
+        return result;
+    }
+
+    private List<TreeReduction<E, R>> fork(List<List<Position<E>>> pieces) {
+        List<TreeReduction<E, R>> tasks = new ArrayList<>(pieces.size());
+        for (List<Position<E>> piece : pieces) {
+            TreeReduction<E, R> task = new TreeReduction<>(tree, piece, identity, accumulator, combiner, granularity);
+            task.fork();
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    private int size(List<Position<E>> piece) {
+        int size = 0;
+        for (Position<E> p : piece) {
+            size += tree.subtreeSize(p);
+        }
+        return size;
+    }
+
+    /**
+     * Groups the children of v, in order, into pieces of work: a large child on
+     * its own, and consecutive small children until they add up to the
+     * granularity.
+     */
+    private List<List<Position<E>>> split(Position<E> v) {
+        List<List<Position<E>>> pieces = new ArrayList<>();
+        List<Position<E>> batch = new ArrayList<>();
+        int batchSize = 0;
+        for (Position<E> child : tree.children(v)) {
+            int size = tree.subtreeSize(child);
+            if (size > granularity) {
+                if (!batch.isEmpty()) {
+                    pieces.add(batch);
+                    batch = new ArrayList<>();
+                    batchSize = 0;
+                }
+                List<Position<E>> single = new ArrayList<>(1);
+                single.add(child);
+                pieces.add(single);
+            } else {
+                batch.add(child);
+                batchSize += size;
+                if (batchSize >= granularity) {
+                    pieces.add(batch);
+                    batch = new ArrayList<>();
+                    batchSize = 0;
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            pieces.add(batch);
+        }
+        return pieces;
+    }
+
+    /**
+     * Sequential preorder fold of the subtree rooted at v.
+     */
+    private R fold(Position<E> v, R acc) {
+        acc = accumulator.apply(acc, v.getElement());
+        Deque<Iterator<? extends Position<E>>> stack = new ArrayDeque<>();
+        stack.push(tree.children(v).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<? extends Position<E>> it = stack.peek();
+            if (it.hasNext()) {
+                Position<E> p = it.next();
+                acc = accumulator.apply(acc, p.getElement());
+                stack.push(tree.children(p).iterator());
+            } else {
+                stack.pop();
+            }
+        }
+        return acc;
+    }
+}
@@ -0,0 +1,173 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+
+/**
+ * Spliterator over the positions of a tree in preorder. Its encounter order is
+ * not the breadth-first order of Tree.iterator(): only preorder can be split
+ * into runs of whole sibling subtrees.
+ *
+ * What is left to traverse is a list of pieces, each one a whole subtree or a
+ * single node, plus the subtree currently being walked. trySplit hands off the
+ * first pieces as a new spliterator, so both halves are made of sibling
+ * subtrees. A piece holding more than half of the work is first opened into
+ * its root and its children. Since every subtree knows its size, the split is
+ * exact and the spliterator reports SIZED and SUBSIZED.
+ *
+ * @param <E> the type of the elements of the tree
+ */
+class TreeSpliterator<E> implements Spliterator<Position<E>> {
+
+    /** Maximum number of pieces opened by a single call to trySplit. */
+    private static final int MAX_EXPANSIONS = 64;
+
+    /**
+     * A split is refused when the smaller half would get less than this fraction
+     * of the work, which happens on long chains of single children.
+     */
+    private static final int MIN_SPLIT_FRACTION = 64;
+
+    private static class Piece<E> {
+        private final Position<E> position;
+        private final boolean single;
+
+        public Piece(Position<E> position, boolean single) {
+            this.position = position;
+            this.single = single;
+        }
+    }
+
+    private final Tree<E> tree;
+    private List<Piece<E>> pieces;
+    private int next;
+    /** Iterators over the unvisited children of the subtree being walked. */
+    private final Deque<Iterator<? extends Position<E>>> stack = new ArrayDeque<>();
+    private long remaining;
+
+    TreeSpliterator(Tree<E> tree) {
+        this.tree = tree;
+        this.pieces = new ArrayList<>();
+        if (!tree.isEmpty()) {
+            pieces.add(new Piece<>(tree.root(), false));
+            remaining = tree.subtreeSize(tree.root());
+        }
+    }
+
+    private TreeSpliterator(Tree<E> tree, List<Piece<E>> pieces, long remaining) {
+        this.tree = tree;
+        this.pieces = pieces;
+        this.remaining = remaining;
+    }
+
+    private long size(Piece<E> piece) {
+        return piece.single ? 1 : tree.subtreeSize(piece.position);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Position<E>> action) {
+        while (!stack.isEmpty()) {
+            Iterator<? extends Position<E>> it = stack.peek();
+            if (it.hasNext()) {
+                Position<E> p = it.next();
+                stack.push(tree.children(p).iterator());
+                remaining--;
+                action.accept(p);
+                return true;
+            }
+            stack.pop();
+        }
+        if (next < pieces.size()) {
+            Piece<E> piece = pieces.get(next);
+            pieces.set(next++, null);
+            if (!piece.single) {
+                stack.push(tree.children(piece.position).iterator());
+            }
+            remaining--;
+            action.accept(piece.position);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Turns the subtree being walked into pieces: the unvisited children left at
+     * every level, deepest level first, followed by the pending pieces.
+     */
+    private void flattenStack() {
+        List<Piece<E>> flat = new ArrayList<>();
+        while (!stack.isEmpty()) {
+            Iterator<? extends Position<E>> it = stack.pop();
+            while (it.hasNext()) {
+                flat.add(new Piece<>(it.next(), false));
+            }
+        }
+        flat.addAll(pieces.subList(next, pieces.size()));
+        pieces = flat;
+        next = 0;
+    }
+
+    @Override
+    public Spliterator<Position<E>> trySplit() {
+        if (!stack.isEmpty()) {
+            flattenStack();
+        }
+        long half = remaining / 2;
+        for (int expansions = 0; expansions < MAX_EXPANSIONS; expansions++) {
+            int largest = -1;
+            for (int i = next; i < pieces.size(); i++) {
+                Piece<E> piece = pieces.get(i);
+                if (!piece.single && size(piece) > half) {
+                    largest = i;
+                    break;
+                }
+            }
+            if (largest < 0) {
+                break;
+            }
+            Position<E> p = pieces.get(largest).position;
+            List<Piece<E>> opened = new ArrayList<>();
+            opened.add(new Piece<>(p, true));
+            for (Position<E> child : tree.children(p)) {
+                opened.add(new Piece<>(child, false));
+            }
+            pieces.remove(largest);
+            pieces.addAll(largest, opened);
+        }
+
+        int end = next;
+        long prefix = 0;
+        while (end < pieces.size() - 1) {
+            long size = size(pieces.get(end));
+            if (prefix > 0 && prefix + size > half) {
+                break;
+            }
+            prefix += size;
+            end++;
+        }
+        if (end == next || Math.min(prefix, remaining - prefix) * MIN_SPLIT_FRACTION < remaining) {
+            return null;
+        }
+        List<Piece<E>> head = new ArrayList<>(pieces.subList(next, end));
+        pieces = new ArrayList<>(pieces.subList(end, pieces.size()));
+        next = 0;
+        remaining -= prefix;
+        return new TreeSpliterator<>(tree, head, prefix);
+    }
+
+    @Override
+    public long estimateSize() {
+        return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+}
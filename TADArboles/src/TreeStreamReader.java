@@ -0,0 +1,107 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * Reads the trees written by a TreeStreamWriter and replays their events on a
+ * TreeHandler. The reader keeps nothing but one element at a time, so what a
+ * tree costs in memory is up to the handler: a TreeBuilder builds the whole
+ * tree, a visitor may keep nothing at all.
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public class TreeStreamReader<E> implements Closeable {
+
+    private final InputStream in;
+    private final ElementCodec<E> codec;
+    private byte[] bytes = new byte[256];
+
+    /**
+     * @param in the stream to read from.
+     * @param codec the codec of the elements.
+     * @throws IOException if the stream does not start with a tree stream header.
+     */
+    public TreeStreamReader(InputStream in, ElementCodec<E> codec) throws IOException {
+        this.in = new BufferedInputStream(in, 1 << 16);
+        this.codec = codec;
+        for (byte b : TreeStreamWriter.MAGIC) {
+            if (this.in.read() != b) {
+                throw new IOException("The stream is not a tree stream");
+            }
+        }
+        int version = this.in.read();
+        if (version != TreeStreamWriter.VERSION) {
+            throw new IOException("Unsupported tree stream version " + version);
+        }
+    }
+
+    /**
+     * Reads the next tree of the stream and sends its events to a handler.
+     *
+     * @param handler the receiver of the events.
+     * @return false if the stream had no more trees, true otherwise.
+     * @throws IOException if the stream fails or ends in the middle of a tree.
+     */
+    public boolean read(TreeHandler<? super E> handler) throws IOException {
+        long depth = 0;
+        do {
+            int tag = in.read();
+            if (tag == TreeStreamWriter.START) {
+                int length = readVarint();
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                readFully(length);
+                handler.startNode(codec.read(ByteBuffer.wrap(bytes, 0, length).order(ByteOrder.LITTLE_ENDIAN), length));
+                depth++;
+            } else if (tag == TreeStreamWriter.END && depth > 0) {
+                handler.endNode();
+                depth--;
+            } else if (tag < 0) {
+                if (depth == 0) {
+                    return false;
+                }
+                throw new EOFException("The stream ends in the middle of a tree");
+            } else {
+                throw new IOException("Unexpected tag " + tag + " in the tree stream");
+            }
+        } while (depth > 0);
+        return true;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("The stream ends in the middle of a node");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed element length in the tree stream");
+    }
+
+    private void readFully(int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = in.read(bytes, read, length - read);
+            if (n < 0) {
+                throw new EOFException("The stream ends in the middle of a node");
+            }
+            read += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,91 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * A TreeHandler that writes the events it receives to an OutputStream, so a
+ * tree can be exported, or piped to another process, without being resident.
+ * Several trees may be written one after another; the stream is flushed every
+ * time a tree ends.
+ *
+ * The stream starts with the bytes "TRES" and a version byte. Then every
+ * startNode is the byte 1, the length of the element as an unsigned varint and
+ * the bytes of the element; every endNode is the byte 2.
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public class TreeStreamWriter<E> implements TreeHandler<E>, Flushable, Closeable {
+
+    static final byte[] MAGIC = {'T', 'R', 'E', 'S'};
+    static final int VERSION = 1;
+    static final int START = 1;
+    static final int END = 2;
+
+    private final OutputStream out;
+    private final ElementCodec<? super E> codec;
+    private ByteBuffer buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+    private long depth;
+
+    /**
+     * @param out the stream to write to.
+     * @param codec the codec of the elements.
+     * @throws IOException if the header cannot be written.
+     */
+    public TreeStreamWriter(OutputStream out, ElementCodec<? super E> codec) throws IOException {
+        this.out = new BufferedOutputStream(out, 1 << 16);
+        this.codec = codec;
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+    }
+
+    @Override
+    public void startNode(E e) throws IOException {
+        int size = codec.size(e);
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        codec.write(buffer, e);
+        out.write(START);
+        writeVarint(size);
+        out.write(buffer.array(), 0, size);
+        depth++;
+    }
+
+    @Override
+    public void endNode() throws IOException {
+        if (depth == 0) {
+            throw new RuntimeException("There is no open node to end");
+        }
+        out.write(END);
+        if (--depth == 0) {
+            out.flush();
+        }
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the stream. A tree left open is not completed.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
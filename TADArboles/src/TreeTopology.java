@@ -0,0 +1,221 @@
+import java.util.Arrays;
+
+
+/**
+ * The shape of a tree of n nodes numbered 0..n-1, ready to be loaded in bulk by
+ * the build methods of the tree implementations.
+ *
+ * It can be read from a parent array, from an edge list or from the arity of
+ * every node in preorder. All of them are converted in O(n) into the children
+ * of every node grouped by parent (compressed rows), which is checked once as a
+ * whole: exactly one root, and every node reachable from it. After that the
+ * trees are built without checking positions node by node.
+ */
+public class TreeTopology {
+
+    private static final int NONE = -1;
+
+    private final int root;
+    private final int[] parents;
+    /** The children of node i are childList[childStart[i] .. childStart[i + 1]). */
+    private final int[] childStart;
+    private final int[] childList;
+    /** Every node in breadth first order, so parents come before their children. */
+    private final int[] order;
+
+    private TreeTopology(int[] parents, int[] from, int[] to) {
+        int n = parents.length;
+        this.parents = parents;
+
+        int root = NONE;
+        for (int i = 0; i < n; i++) {
+            if (parents[i] == NONE) {
+                if (root != NONE) {
+                    throw new RuntimeException("The tree has more than one root: " + root + " and " + i);
+                }
+                root = i;
+            }
+        }
+        if (n > 0 && root == NONE) {
+            throw new RuntimeException("The tree has no root");
+        }
+        this.root = root;
+
+        // Counting sort of the edges by parent, keeping their order among siblings.
+        childStart = new int[n + 1];
+        for (int e = 0; e < from.length; e++) {
+            childStart[from[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            childStart[i + 1] += childStart[i];
+        }
+        childList = new int[from.length];
+        int[] fill = new int[n];
+        for (int e = 0; e < from.length; e++) {
+            int p = from[e];
+            childList[childStart[p] + fill[p]++] = to[e];
+        }
+
+        order = new int[n];
+        int count = 0;
+        if (n > 0) {
+            order[count++] = root;
+        }
+        for (int head = 0; head < count; head++) {
+            int v = order[head];
+            for (int c = childStart[v]; c < childStart[v + 1]; c++) {
+                order[count++] = childList[c];
+            }
+        }
+        if (count != n) {
+            throw new RuntimeException("The tree has a cycle or nodes not connected to the root");
+        }
+    }
+
+    /**
+     * Reads a tree from the parent of every node, -1 for the root. The children
+     * of a node keep the order of their numbers.
+     *
+     * @param parents parents[i] is the parent of node i.
+     * @return the topology of the tree.
+     */
+    public static TreeTopology fromParents(int[] parents) {
+        int n = parents.length;
+        int[] from = new int[Math.max(0, n - 1)];
+        int[] to = new int[from.length];
+        int e = 0;
+        for (int i = 0; i < n; i++) {
+            if (parents[i] != NONE) {
+                if (parents[i] < 0 || parents[i] >= n || e == from.length) {
+                    throw new RuntimeException("Invalid parent " + parents[i] + " of node " + i);
+                }
+                from[e] = parents[i];
+                to[e++] = i;
+            }
+        }
+        return new TreeTopology(parents.clone(), from, to);
+    }
+
+    /**
+     * Reads a tree of n nodes from its edges. Edge i goes from the parent from[i]
+     * to the child to[i], and the children of a node keep the order of the edges.
+     *
+     * @param n the number of nodes.
+     * @param from the parent of every edge.
+     * @param to the child of every edge.
+     * @return the topology of the tree.
+     */
+    public static TreeTopology fromEdges(int n, int[] from, int[] to) {
+        if (from.length != to.length || from.length != Math.max(0, n - 1)) {
+            throw new RuntimeException("A tree of " + n + " nodes needs " + Math.max(0, n - 1) + " edges");
+        }
+        int[] parents = new int[n];
+        Arrays.fill(parents, NONE);
+        for (int e = 0; e < from.length; e++) {
+            if (from[e] < 0 || from[e] >= n || to[e] < 0 || to[e] >= n || parents[to[e]] != NONE) {
+                throw new RuntimeException("Invalid edge " + from[e] + " -> " + to[e]);
+            }
+            parents[to[e]] = from[e];
+        }
+        return new TreeTopology(parents, from.clone(), to.clone());
+    }
+
+    /**
+     * Reads a tree from the number of children of every node, listed in
+     * preorder. Node i is the i-th node in preorder.
+     *
+     * @param arity arity[i] is the number of children of node i.
+     * @return the topology of the tree.
+     */
+    public static TreeTopology fromPreorder(int[] arity) {
+        int n = arity.length;
+        int[] parents = new int[n];
+        // Nodes that still expect children, with how many they are missing.
+        int[] stack = new int[n];
+        int[] missing = new int[n];
+        int top = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                parents[i] = NONE;
+            } else {
+                if (top == 0) {
+                    throw new RuntimeException("Node " + i + " comes after the whole tree");
+                }
+                parents[i] = stack[top - 1];
+                if (--missing[top - 1] == 0) {
+                    top--;
+                }
+            }
+            if (arity[i] < 0) {
+                throw new RuntimeException("Invalid arity " + arity[i] + " of node " + i);
+            }
+            if (arity[i] > 0) {
+                stack[top] = i;
+                missing[top++] = arity[i];
+            }
+        }
+        if (top != 0) {
+            throw new RuntimeException("Node " + stack[top - 1] + " is missing children");
+        }
+        return fromParents(parents);
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int size() {
+        return parents.length;
+    }
+
+    /**
+     * Returns the root, or -1 if the tree is empty.
+     */
+    public int root() {
+        return root;
+    }
+
+    /**
+     * Returns the parent of node v, or -1 for the root.
+     */
+    public int parent(int v) {
+        return parents[v];
+    }
+
+    /**
+     * Returns the number of children of node v.
+     */
+    public int childCount(int v) {
+        return childStart[v + 1] - childStart[v];
+    }
+
+    /**
+     * Returns the n-th child of node v.
+     */
+    public int child(int v, int n) {
+        return childList[childStart[v] + n];
+    }
+
+    /**
+     * Returns the i-th node in breadth first order; every parent comes before
+     * its children.
+     */
+    public int breadthFirst(int i) {
+        return order[i];
+    }
+
+    /**
+     * Returns the number of nodes of the subtree of every node, computed in one
+     * pass from the leaves up.
+     */
+    public int[] subtreeSizes() {
+        int[] sizes = new int[parents.length];
+        for (int i = order.length - 1; i >= 0; i--) {
+            int v = order[i];
+            sizes[v]++;
+            if (parents[v] != NONE) {
+                sizes[parents[v]] += sizes[v];
+            }
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,133 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+
+/**
+ * This class is a test class for the AggregateTree class.
+ */
+public class AggregateTreeTest {
+
+    private static AggregateTree<Integer, Long> sum(NAryTree<Integer> tree) {
+        return new AggregateTree<>(tree, e -> (long) e, Long::sum, 0L);
+    }
+
+    private static long walk(Tree<Integer> tree, Position<Integer> p) {
+        long s = p.getElement();
+        for (Position<Integer> c : tree.children(p)) {
+            s += walk(tree, c);
+        }
+        return s;
+    }
+
+    @Test
+    public void testSum() {
+        AggregateTree<Integer, Long> tree = sum(new LinkedTree<>());
+        assertEquals(Long.valueOf(0), tree.aggregate());
+        Position<Integer> a = tree.addRoot(1);
+        Position<Integer> b = tree.add(2, a);
+        Position<Integer> c = tree.add(3, a, 0);
+        Position<Integer> d = tree.add(4, b);
+        assertEquals(Long.valueOf(10), tree.aggregate());
+        assertEquals(Long.valueOf(6), tree.aggregate(b));
+        tree.replace(d, 40);
+        assertEquals(Long.valueOf(42), tree.aggregate(b));
+        assertEquals(Long.valueOf(46), tree.aggregate());
+        tree.swapElements(d, c);
+        assertEquals(Long.valueOf(5), tree.aggregate(b));
+        assertEquals(Long.valueOf(40), tree.aggregate(c));
+        tree.remove(b);
+        assertEquals(Long.valueOf(41), tree.aggregate());
+        try {
+            tree.aggregate(d);
+            fail("A removed node still has an aggregate");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testOrderedMonoid() {
+        // Concatenation is associative but not commutative: the aggregate is the
+        // preorder of the subtree.
+        AggregateTree<String, String> tree = new AggregateTree<>(new LCRSTree<>(), e -> e, String::concat, "");
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        tree.add("D", a);
+        tree.add("C", a, 1);
+        tree.add("E", b);
+        assertEquals("ABECD", tree.aggregate());
+        LCRSTree<String> other = new LCRSTree<>();
+        other.add("Y", other.addRoot("X"));
+        tree.attach(b, other);
+        assertEquals("ABEXYCD", tree.aggregate());
+        assertEquals("XY", tree.aggregate(tree.child(b, 1)));
+        tree.removeChild(a, 1);
+        assertEquals("ABEXYD", tree.aggregate());
+    }
+
+    @Test
+    public void testExistingNodes() {
+        LinkedTree<Integer> plain = new LinkedTree<>();
+        Position<Integer> root = plain.addRoot(5);
+        plain.add(7, plain.add(6, root));
+        AggregateTree<Integer, Integer> max = new AggregateTree<>(plain, e -> e, Math::max, Integer.MIN_VALUE);
+        assertEquals(Integer.valueOf(7), max.aggregate());
+        plain.add(9, root);
+        assertEquals(Integer.valueOf(7), max.aggregate());
+        max.rebuild();
+        assertEquals(Integer.valueOf(9), max.aggregate());
+    }
+
+    @Test
+    public void testAgainstWalk() {
+        List<Supplier<NAryTree<Integer>>> implementations = List.of(LinkedTree::new, ArrayTree::new);
+        for (Supplier<NAryTree<Integer>> implementation : implementations) {
+            Random random = new Random(11);
+            AggregateTree<Integer, Long> tree = sum(implementation.get());
+            List<Position<Integer>> nodes = new ArrayList<>();
+            nodes.add(tree.addRoot(random.nextInt(100)));
+            for (int i = 0; i < 3000; i++) {
+                Position<Integer> p = nodes.get(random.nextInt(nodes.size()));
+                switch (random.nextInt(6)) {
+                    case 0:
+                        tree.replace(p, random.nextInt(100));
+                        break;
+                    case 1:
+                        tree.swapElements(p, nodes.get(random.nextInt(nodes.size())));
+                        break;
+                    case 2:
+                        if (!tree.isRoot(p) && tree.subtreeSize(p) < 20) {
+                            tree.remove(p);
+                            nodes.clear();
+                            for (Position<Integer> q : tree) {
+                                nodes.add(q);
+                            }
+                        }
+                        break;
+                    case 3:
+                        NAryTree<Integer> other = implementation.get();
+                        Position<Integer> r = other.addRoot(random.nextInt(100));
+                        other.add(random.nextInt(100), r);
+                        tree.attach(p, other);
+                        nodes.clear();
+                        for (Position<Integer> q : tree) {
+                            nodes.add(q);
+                        }
+                        break;
+                    default:
+                        nodes.add(tree.add(random.nextInt(100), p));
+                }
+            }
+            for (Position<Integer> p : tree) {
+                assertEquals(Long.valueOf(walk(tree, p)), tree.aggregate(p));
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * This class is a test class for the AncestorIndex class.
+ */
+public class AncestorIndexTest {
+
+    private LinkedTree<String> tree = new LinkedTree<>();
+    private Position<String> a, b, c, d, e, f, g;
+
+    /**
+     *        A
+     *      / | \
+     *     B  C  D
+     *    / \    |
+     *   E   F   G
+     */
+    private void setTree() {
+        a = tree.addRoot("A");
+        b = tree.add("B", a);
+        c = tree.add("C", a);
+        d = tree.add("D", a);
+        e = tree.add("E", b);
+        f = tree.add("F", b);
+        g = tree.add("G", d);
+    }
+
+    @Test
+    public void testQueries() {
+        setTree();
+        AncestorIndex<String> index = new AncestorIndex<>(tree);
+        assertEquals(0, index.depth(a));
+        assertEquals(1, index.depth(c));
+        assertEquals(2, index.depth(g));
+        assertTrue(index.isAncestor(a, g));
+        assertTrue(index.isAncestor(b, f));
+        assertTrue(index.isAncestor(f, f));
+        assertFalse(index.isAncestor(f, b));
+        assertFalse(index.isAncestor(b, g));
+        assertEquals(b, index.lca(e, f));
+        assertEquals(a, index.lca(e, g));
+        assertEquals(b, index.lca(b, f));
+        assertEquals(c, index.lca(c, c));
+        assertEquals(g, index.kthAncestor(g, 0));
+        assertEquals(d, index.kthAncestor(g, 1));
+        assertEquals(a, index.kthAncestor(g, 2));
+        assertNull(index.kthAncestor(g, 3));
+    }
+
+    @Test
+    public void testPatches() {
+        setTree();
+        AncestorIndex<String> index = new AncestorIndex<>(tree);
+        Position<String> h = tree.add("H", g);
+        index.added(h);
+        Position<String> i = tree.add("I", h);
+        index.added(i);
+        assertEquals(4, index.depth(i));
+        assertTrue(index.isAncestor(d, i));
+        assertTrue(index.isAncestor(h, i));
+        assertFalse(index.isAncestor(i, h));
+        assertFalse(index.isAncestor(b, i));
+        assertEquals(a, index.lca(i, e));
+        assertEquals(g, index.lca(i, g));
+        assertEquals(d, index.kthAncestor(i, 3));
+
+        index.removed(b);
+        tree.remove(b);
+        assertEquals(a, index.lca(c, i));
+        try {
+            index.depth(e);
+            fail("A removed position is still in the index");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+
+        Position<String> j = tree.add("J", c);
+        try {
+            index.isAncestor(c, j);
+            fail("A position that was not added is in the index");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+        index.rebuild();
+        assertTrue(index.isAncestor(c, j));
+        assertEquals(4, index.depth(i));
+    }
+
+    @Test
+    public void testUnreportedChanges() {
+        setTree();
+        ModCountTree<String> counted = new ModCountTree<>(tree);
+        AncestorIndex<String> index = new AncestorIndex<>(counted);
+        Position<String> h = counted.add("H", g);
+        index.added(h);
+        index.removed(b);
+        // A reported removal may be queried before and after it happens.
+        assertEquals(a, index.lca(c, h));
+        counted.remove(b);
+        assertEquals(a, index.lca(c, h));
+        counted.replace(c, "c");
+        assertEquals(1, index.depth(c));
+
+        counted.add("I", c);
+        try {
+            index.depth(h);
+            fail("An unreported change has not been detected");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+        index.rebuild();
+        assertEquals(3, index.depth(h));
+        counted.subTree(d).remove(h);
+        try {
+            index.depth(g);
+            fail("An unreported change has not been detected");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+        assertEquals(4, counted.modifications());
+    }
+
+    @Test
+    public void testEmpty() {
+        AncestorIndex<String> index = new AncestorIndex<>(tree);
+        Position<String> root = tree.addRoot("A");
+        try {
+            index.depth(root);
+            fail("The root of an empty tree is in the index");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+        index.rebuild();
+        assertEquals(0, index.depth(root));
+        assertEquals(root, index.lca(root, root));
+    }
+
+    private static int depth(Tree<Integer> t, Position<Integer> p) {
+        int d = 0;
+        for (Position<Integer> q = t.parent(p); q != null; q = t.parent(q)) {
+            d++;
+        }
+        return d;
+    }
+
+    private static Position<Integer> lca(Tree<Integer> t, Position<Integer> v, Position<Integer> w) {
+        int dv = depth(t, v);
+        int dw = depth(t, w);
+        for (; dv > dw; dv--) {
+            v = t.parent(v);
+        }
+        for (; dw > dv; dw--) {
+            w = t.parent(w);
+        }
+        while (!v.equals(w)) {
+            v = t.parent(v);
+            w = t.parent(w);
+        }
+        return v;
+    }
+
+    @Test
+    public void testAgainstParentWalk() {
+        Random random = new Random(7);
+        ArrayTree<Integer> t = new ArrayTree<>();
+        List<Position<Integer>> positions = new ArrayList<>();
+        positions.add(t.addRoot(0));
+        for (int i = 1; i < 300; i++) {
+            positions.add(t.add(i, positions.get(random.nextInt(i))));
+        }
+        AncestorIndex<Integer> index = new AncestorIndex<>(t);
+        for (int i = 300; i < 400; i++) {
+            Position<Integer> p = t.add(i, positions.get(random.nextInt(i)));
+            positions.add(p);
+            index.added(p);
+        }
+        for (int i = 0; i < 2000; i++) {
+            Position<Integer> v = positions.get(random.nextInt(positions.size()));
+            Position<Integer> w = positions.get(random.nextInt(positions.size()));
+            Position<Integer> l = lca(t, v, w);
+            assertEquals(l, index.lca(v, w));
+            assertEquals(depth(t, w), index.depth(w));
+            assertEquals(l.equals(v), index.isAncestor(v, w));
+            int k = random.nextInt(index.depth(w) + 2);
+            Position<Integer> up = w;
+            for (int j = 0; j < k && up != null; j++) {
+                up = t.parent(up);
+            }
+            assertEquals(up, index.kthAncestor(w, k));
+        }
+    }
+}
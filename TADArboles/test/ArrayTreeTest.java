@@ -0,0 +1,193 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+
+
+/**
+ * This class is a test class for the ArrayTree class.
+ */
+public class ArrayTreeTest {
+
+    private ArrayTree<String> tree = new ArrayTree<>();
+
+    public void setTree() {
+
+        Position<String> p = tree.addRoot("A");
+        tree.add("B", p);
+        Position<String> p1 = tree.add("C", p);
+        tree.add("D", p);
+
+        tree.add("E", p1);
+        Position<String> p2 = tree.add("F", p1);
+
+        tree.add("G", p2);
+        Position<String> p3 = tree.add("H", p2);
+
+        tree.add("I", p3);
+        tree.add("J", p3);
+        tree.add("K", p3);
+        tree.add("L", p3);
+    }
+
+    private String elements(Iterator<Position<String>> it) {
+        StringBuilder s = new StringBuilder();
+        while (it.hasNext()) {
+            s.append(it.next().getElement());
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void testSize() {
+        this.setTree();
+        assertEquals(12, this.tree.size());
+    }
+
+    @Test
+    public void testIsEmpty() {
+        assertTrue(this.tree.isEmpty());
+        this.tree.addRoot("A");
+        assertFalse(this.tree.isEmpty());
+    }
+
+    @Test
+    public void testRoot() {
+        this.setTree();
+        assertEquals("A", this.tree.root().getElement());
+        assertTrue(this.tree.isRoot(this.tree.root()));
+        assertNull(this.tree.parent(this.tree.root()));
+    }
+
+    @Test
+    public void testParent() {
+        Position<String> p = tree.addRoot("A");
+        Position<String> p1 = tree.add("B", p);
+        Position<String> p2 = tree.add("C", p1);
+        assertEquals(p1, tree.parent(p2));
+        assertEquals(p, tree.parent(p1));
+    }
+
+    @Test
+    public void testIterators() {
+        this.setTree();
+        assertEquals("ABCDEFGHIJKL", elements(this.tree.iterator()));
+        assertEquals("ABCEFGHIJKLD", elements(this.tree.iteratorPreOrden()));
+        assertEquals("BEGIJKLHFCDA", elements(this.tree.iteratorPostOrden()));
+    }
+
+    @Test
+    public void testAddN() {
+        Position<String> p = this.tree.addRoot("R");
+        this.tree.add("B", p);
+        this.tree.add("D", p);
+        this.tree.add("A", p, 0);
+        this.tree.add("C", p, 2);
+        this.tree.add("E", p, 4);
+        StringBuilder output = new StringBuilder();
+        for (Position<String> child : this.tree.children(p)) {
+            output.append(child.getElement());
+        }
+        assertEquals("ABCDE", output.toString());
+        this.tree.add("F", p);
+        assertEquals("RABCDEF", elements(this.tree.iterator()));
+    }
+
+    @Test
+    public void testRemove() {
+        Position<String> p = this.tree.addRoot("+");
+        this.tree.add("2", p);
+        Position<String> h = this.tree.add("*", p);
+        this.tree.add("3", h);
+        this.tree.add("5", h);
+        this.tree.remove(h);
+        assertEquals(2, this.tree.size());
+        assertEquals("+2", elements(this.tree.iterator()));
+        this.tree.add("4", p);
+        assertEquals("+24", elements(this.tree.iterator()));
+    }
+
+    @Test
+    public void testRemoveReusesSlotsAndRejectsStalePositions() {
+        Position<String> p = this.tree.addRoot("A");
+        Position<String> b = this.tree.add("B", p);
+        this.tree.remove(b);
+        Position<String> c = this.tree.add("C", p);
+        assertNotEquals(b, c);
+        try {
+            this.tree.parent(b);
+            fail("A removed position has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        assertEquals("C", c.getElement());
+    }
+
+    @Test
+    public void testRemoveRoot() {
+        this.setTree();
+        this.tree.remove(this.tree.root());
+        assertEquals(0, this.tree.size());
+        assertFalse(this.tree.iterator().hasNext());
+    }
+
+    @Test
+    public void testSwapAndReplace() {
+        Position<String> p = tree.addRoot("A");
+        Position<String> p1 = tree.add("B", p);
+        tree.swapElements(p, p1);
+        assertEquals("B", tree.root().getElement());
+        assertEquals("B", tree.replace(p, "X"));
+        assertEquals("XA", elements(tree.iterator()));
+    }
+
+    @Test
+    public void testSubTreeAndAttach() {
+        this.setTree();
+        Position<String> f = null;
+        for (Position<String> pos : this.tree) {
+            if (pos.getElement().equals("F")) {
+                f = pos;
+            }
+        }
+        ArrayTree<String> sub = (ArrayTree<String>) this.tree.subTree(f);
+        assertEquals(7, sub.size());
+        assertEquals(7, this.tree.subtreeSize(f));
+        assertEquals("FGHIJKL", elements(sub.iteratorPreOrden()));
+
+        ArrayTree<String> other = new ArrayTree<>();
+        Position<String> x = other.addRoot("X");
+        other.add("Y", x);
+        sub.attach(sub.root(), other);
+        assertEquals(9, sub.size());
+        assertEquals(9, sub.subtreeSize(sub.root()));
+        assertEquals("FGHIJKLXY", elements(sub.iteratorPreOrden()));
+        assertEquals(12, this.tree.size());
+    }
+
+    @Test
+    public void testGetUnmodifiableChildren() {
+        Position<String> p = this.tree.addRoot("+");
+        this.tree.add("2", p);
+        try {
+            this.tree.children(p).iterator().remove();
+            fail("The children collection has been modified");
+        } catch (Exception e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testDeepChain() {
+        Position<String> p = this.tree.addRoot("0");
+        for (int i = 1; i < 20000; i++) {
+            p = this.tree.add("n", p);
+        }
+        assertEquals(20000, this.tree.subtreeSize(this.tree.root()));
+        this.tree.remove(this.tree.children(this.tree.root()).iterator().next());
+        assertEquals(1, this.tree.size());
+        assertEquals(1, this.tree.subtreeSize(this.tree.root()));
+    }
+}
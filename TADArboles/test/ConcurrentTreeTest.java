@@ -0,0 +1,227 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * This class is a test class for the ConcurrentTree class.
+ */
+public class ConcurrentTreeTest {
+
+    private ConcurrentTree<String> tree = new ConcurrentTree<>();
+
+    /**
+     *        A
+     *      / | \
+     *     B  C  D
+     *    / \    |
+     *   E   F   G
+     */
+    private Position<String> setTree() {
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        tree.add("C", a);
+        Position<String> d = tree.add("D", a);
+        tree.add("E", b);
+        tree.add("F", b);
+        tree.add("G", d);
+        return b;
+    }
+
+    private static String elements(Iterator<Position<String>> it) {
+        StringBuilder s = new StringBuilder();
+        while (it.hasNext()) {
+            s.append(it.next().getElement());
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void testIterators() {
+        setTree();
+        assertEquals("ABCDEFG", elements(tree.iterator()));
+        assertEquals("ABEFCDG", elements(tree.iteratorPreOrden()));
+        assertEquals("EFBCGDA", elements(tree.iteratorPostOrden()));
+        assertEquals(7, tree.size());
+    }
+
+    @Test
+    public void testAddAt() {
+        Position<String> b = setTree();
+        tree.add("X", b, 1);
+        tree.add("Y", tree.root(), 0);
+        assertEquals("AYBEXFCDG", elements(tree.iteratorPreOrden()));
+        assertEquals(4, tree.subtreeSize(b));
+        assertEquals(9, tree.size());
+        try {
+            tree.add("Z", b, 5);
+            fail("A child has been added at an unreachable position");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        Position<String> b = setTree();
+        Position<String> e = tree.child(b, 0);
+        tree.remove(b);
+        assertEquals("ACDG", elements(tree.iteratorPreOrden()));
+        assertEquals(4, tree.size());
+        assertNull(tree.parent(b));
+        try {
+            tree.add("H", e);
+            fail("A node has been added below a removed one");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+        try {
+            tree.replace(e, "H");
+            fail("A removed node has been changed");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+        try {
+            tree.swapElements(e, tree.root());
+            fail("A removed node has been changed");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+        assertEquals("E", e.getElement());
+        assertEquals("ACDG", elements(tree.iteratorPreOrden()));
+        tree.remove(tree.root());
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.size());
+    }
+
+    @Test
+    public void testElements() {
+        Position<String> b = setTree();
+        assertEquals("B", tree.replace(b, "b"));
+        tree.swapElements(b, tree.root());
+        assertEquals("bAEFCDG", elements(tree.iteratorPreOrden()));
+        assertTrue(tree.isLeaf(tree.child(b, 0)));
+        assertTrue(tree.isInternal(b));
+        assertTrue(tree.isRoot(tree.root()));
+    }
+
+    @Test
+    public void testSubTreeAndAttach() {
+        Position<String> b = setTree();
+        NAryTree<String> copy = tree.subTree(b);
+        assertEquals(3, copy.subtreeSize(copy.root()));
+        LinkedTree<String> other = new LinkedTree<>();
+        Position<String> x = other.addRoot("X");
+        other.add("Y", x);
+        tree.attach(tree.root(), other);
+        assertEquals("ABEFCDGXY", elements(tree.iteratorPreOrden()));
+        assertEquals(9, tree.size());
+        assertEquals(2, other.size());
+        tree.add("Z", b);
+        assertEquals(3, copy.subtreeSize(copy.root()));
+    }
+
+    @Test
+    public void testNullRootAndAttachToRoot() {
+        assertNull(tree.root());
+        LinkedTree<String> other = new LinkedTree<>();
+        other.addRoot("X");
+        try {
+            tree.attach(null, other);
+            fail("A tree has been attached to an empty tree");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        setTree();
+        tree.attach(null, other);
+        assertEquals("ABEFCDGX", elements(tree.iteratorPreOrden()));
+        try {
+            ((List<?>) tree.children(tree.root())).set(0, null);
+            fail("The children of a node can be modified from outside");
+        } catch (UnsupportedOperationException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testConcurrentAdds() throws InterruptedException {
+        int threads = 8;
+        int perThread = 20000;
+        Position<String> root = tree.addRoot("R");
+        List<Position<String>> branches = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            branches.add(tree.add("T" + t, root));
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Position<String> branch = branches.get(t);
+            workers.add(new Thread(() -> {
+                try {
+                    Position<String> last = branch;
+                    for (int i = 0; i < perThread; i++) {
+                        // Half of the nodes go to a shared parent, half down the branch.
+                        if (i % 2 == 0) {
+                            tree.add("s", root);
+                        } else {
+                            last = tree.add("n", (i % 64 == 1) ? branch : last);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                }
+            }));
+        }
+        Thread reader = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20; i++) {
+                    Iterator<Position<String>> it = tree.iteratorPreOrden();
+                    while (it.hasNext()) {
+                        it.next().getElement();
+                    }
+                }
+            } catch (RuntimeException e) {
+                failed.set(true);
+            }
+        });
+        for (Thread w : workers) {
+            w.start();
+        }
+        reader.start();
+        for (Thread w : workers) {
+            w.join();
+        }
+        reader.join();
+
+        assertFalse(failed.get());
+        int expected = 1 + threads + threads * perThread;
+        assertEquals(expected, tree.size());
+        int count = 0;
+        Iterator<Position<String>> it = tree.iteratorPostOrden();
+        while (it.hasNext()) {
+            Position<String> p = it.next();
+            int size = 1;
+            for (Position<String> c : tree.children(p)) {
+                size += tree.subtreeSize(c);
+            }
+            assertEquals(size, tree.subtreeSize(p));
+            count++;
+        }
+        assertEquals(expected, count);
+        assertEquals(threads + threads * perThread / 2, count(tree.children(root)));
+    }
+
+    private static int count(Iterable<?> it) {
+        int count = 0;
+        for (Object o : it) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,200 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * This class is a test class for the HeavyLightDecomposition class.
+ */
+public class HeavyLightDecompositionTest {
+
+    private LinkedTree<Integer> tree = new LinkedTree<>();
+    private Position<Integer> a, b, c, d, e, f, g;
+
+    /**
+     *        1
+     *      / | \
+     *     2  3  4
+     *    / \    |
+     *   5   6   7
+     */
+    private void setTree() {
+        a = tree.addRoot(1);
+        b = tree.add(2, a);
+        c = tree.add(3, a);
+        d = tree.add(4, a);
+        e = tree.add(5, b);
+        f = tree.add(6, b);
+        g = tree.add(7, d);
+    }
+
+    @Test
+    public void testQueries() {
+        setTree();
+        HeavyLightDecomposition<Integer> hld = new HeavyLightDecomposition<>(tree, x -> x);
+        assertEquals(5 + 2 + 1 + 4 + 7, hld.pathSum(e, g));
+        assertEquals(5 + 2 + 6, hld.pathSum(e, f));
+        assertEquals(1 + 4 + 7, hld.pathSum(a, g));
+        assertEquals(3, hld.pathSum(c, c));
+        assertEquals(1, hld.pathMin(e, g));
+        assertEquals(7, hld.pathMax(e, g));
+        assertEquals(a, hld.lca(e, g));
+        assertEquals(b, hld.lca(e, f));
+        assertEquals(d, hld.lca(d, g));
+    }
+
+    @Test
+    public void testUpdates() {
+        setTree();
+        HeavyLightDecomposition<Integer> hld = new HeavyLightDecomposition<>(tree, x -> x);
+        hld.pathAdd(f, c, 10);
+        assertEquals(16, hld.value(f));
+        assertEquals(12, hld.value(b));
+        assertEquals(11, hld.value(a));
+        assertEquals(13, hld.value(c));
+        assertEquals(5, hld.value(e));
+        assertEquals(5 + 12 + 11 + 4 + 7, hld.pathSum(e, g));
+        assertEquals(5, hld.pathMin(e, f));
+        hld.set(e, -3);
+        assertEquals(-3, hld.pathMin(e, g));
+        assertEquals(16, hld.pathMax(e, f));
+        // The elements of the tree do not change
+        assertEquals(Integer.valueOf(6), f.getElement());
+    }
+
+    @Test
+    public void testPatches() {
+        setTree();
+        HeavyLightDecomposition<Integer> hld = new HeavyLightDecomposition<>(tree, x -> x);
+        hld.pathAdd(a, g, 100);
+        Position<Integer> h = tree.add(8, g);
+        hld.added(h);
+        Position<Integer> i = tree.add(9, h);
+        hld.added(i);
+        assertEquals(101 + 104 + 107 + 8 + 9, hld.pathSum(a, i));
+        assertEquals(d, hld.lca(i, d));
+        assertEquals(a, hld.lca(i, e));
+
+        hld.removed(b);
+        tree.remove(b);
+        assertEquals(3 + 101 + 104, hld.pathSum(c, d));
+        try {
+            hld.value(e);
+            fail("A removed position is still in the decomposition");
+        } catch (RuntimeException ex) {
+        }
+
+        // The values survive a rebuild
+        hld.rebuild();
+        assertEquals(101 + 104 + 107 + 8 + 9, hld.pathSum(a, i));
+        assertEquals(3, hld.value(c));
+
+        try {
+            hld.added(d);
+            fail("Only leaves can be patched in");
+        } catch (RuntimeException ex) {
+        }
+    }
+
+    @Test
+    public void testRandomAgainstParentWalk() {
+        Random random = new Random(7);
+        List<Position<Integer>> positions = new ArrayList<>();
+        positions.add(tree.addRoot(random.nextInt(100)));
+        for (int i = 1; i < 300; i++) {
+            Position<Integer> parent = positions.get(Math.max(0, i - 1 - random.nextInt(4)));
+            positions.add(tree.add(random.nextInt(100), parent));
+        }
+        HeavyLightDecomposition<Integer> hld = new HeavyLightDecomposition<>(tree, x -> x);
+        Map<Position<Integer>, Long> values = new HashMap<>();
+        for (Position<Integer> p : positions) {
+            values.put(p, (long) p.getElement());
+        }
+        for (int step = 0; step < 2000; step++) {
+            Position<Integer> u = positions.get(random.nextInt(positions.size()));
+            Position<Integer> v = positions.get(random.nextInt(positions.size()));
+            List<Position<Integer>> path = path(u, v);
+            switch (random.nextInt(4)) {
+                case 0:
+                    long delta = random.nextInt(21) - 10;
+                    hld.pathAdd(u, v, delta);
+                    for (Position<Integer> p : path) {
+                        values.put(p, values.get(p) + delta);
+                    }
+                    break;
+                case 1:
+                    Position<Integer> leaf = tree.add(random.nextInt(100), u);
+                    hld.added(leaf);
+                    positions.add(leaf);
+                    values.put(leaf, (long) leaf.getElement());
+                    break;
+                default:
+                    long sum = 0;
+                    long min = Long.MAX_VALUE;
+                    long max = Long.MIN_VALUE;
+                    for (Position<Integer> p : path) {
+                        sum += values.get(p);
+                        min = Math.min(min, values.get(p));
+                        max = Math.max(max, values.get(p));
+                    }
+                    assertEquals(sum, hld.pathSum(u, v));
+                    assertEquals(min, hld.pathMin(u, v));
+                    assertEquals(max, hld.pathMax(u, v));
+                    assertEquals(path.get(path.size() - 1), hld.lca(u, v));
+            }
+        }
+    }
+
+    /**
+     * Returns the nodes on the path from u to v walking up with parent(), with
+     * their lowest common ancestor last.
+     */
+    private List<Position<Integer>> path(Position<Integer> u, Position<Integer> v) {
+        List<Position<Integer>> up = new ArrayList<>();
+        for (Position<Integer> p = u; p != null; p = tree.parent(p)) {
+            up.add(p);
+        }
+        List<Position<Integer>> path = new ArrayList<>();
+        Position<Integer> q = v;
+        while (!up.contains(q)) {
+            path.add(q);
+            q = tree.parent(q);
+        }
+        for (Position<Integer> p : up) {
+            if (p == q) {
+                break;
+            }
+            path.add(p);
+        }
+        path.add(q);
+        return path;
+    }
+
+    @Test
+    public void testDeepChain() {
+        List<Integer> elements = new ArrayList<>();
+        int n = 200000;
+        int[] parents = new int[n];
+        for (int i = 0; i < n; i++) {
+            elements.add(1);
+            parents[i] = i - 1;
+        }
+        LinkedTree<Integer> deep = LinkedTree.build(elements, TreeTopology.fromParents(parents));
+        Position<Integer> last = null;
+        for (Position<Integer> p : deep) {
+            last = p;
+        }
+        HeavyLightDecomposition<Integer> hld = new HeavyLightDecomposition<>(deep, x -> x);
+        assertEquals(n, hld.pathSum(deep.root(), last));
+        hld.pathAdd(last, deep.root(), 1);
+        assertEquals(2L * n, hld.pathSum(last, deep.root()));
+        assertEquals(deep.root(), hld.lca(deep.root(), last));
+    }
+}
@@ -0,0 +1,83 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * This class is a test class for the IndexedList class.
+ */
+public class IndexedListTest {
+
+    @Test
+    public void testAgainstArrayList() {
+        Random random = new Random(7);
+        List<Integer> expected = new ArrayList<>();
+        IndexedList<Integer> list = new IndexedList<>();
+        for (int i = 0; i < 20000; i++) {
+            int op = random.nextInt(4);
+            if (op < 2 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, i);
+                list.add(index, i);
+            } else if (op == 2) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            } else {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.set(index, -i), list.set(index, -i));
+            }
+            assertEquals(expected.size(), list.size());
+        }
+        assertEquals(expected, list);
+        assertEquals(expected, new IndexedList<>(expected));
+    }
+
+    @Test
+    public void testRemoveObject() {
+        IndexedList<String> list = new IndexedList<>(List.of("a", "b", "c"));
+        assertEquals(1, list.indexOf("b"));
+        assertTrue(list.remove("b"));
+        assertFalse(list.remove("b"));
+        assertEquals(List.of("a", "c"), list);
+    }
+
+    @Test
+    public void testHandlesFollowTheirEntries() {
+        Random random = new Random(11);
+        List<Integer> expected = new ArrayList<>();
+        List<Object> handles = new ArrayList<>();
+        IndexedList<Integer> list = new IndexedList<>();
+        for (int i = 0; i < 5000; i++) {
+            if (random.nextInt(3) > 0 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, i);
+                list.add(index, i);
+                handles.add(index, list.handle(index));
+            } else {
+                int index = random.nextInt(expected.size());
+                Object removed = handles.remove(index);
+                list.remove(list.indexOfHandle(removed));
+                expected.remove(index);
+                try {
+                    list.indexOfHandle(removed);
+                    fail("The handle of a removed entry is still valid");
+                } catch (RuntimeException e) {
+                    assertTrue(true);
+                }
+            }
+        }
+        assertEquals(expected, list);
+        for (int i = 0; i < handles.size(); i++) {
+            assertEquals(i, list.indexOfHandle(handles.get(i)));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfRange() {
+        new IndexedList<>(List.of("a")).get(1);
+    }
+}
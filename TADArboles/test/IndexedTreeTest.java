@@ -0,0 +1,175 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+/**
+ * This class is a test class for the IndexedTree class.
+ */
+public class IndexedTreeTest {
+
+    /**
+     *        A
+     *      / | \
+     *     B  C  D
+     *    / \    |
+     *   E   F   G
+     */
+    private static Position<String> setTree(NAryTree<String> tree) {
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        tree.add("C", a);
+        Position<String> d = tree.add("D", a);
+        tree.add("E", b);
+        tree.add("F", b);
+        tree.add("G", d);
+        return b;
+    }
+
+    private static IndexedTree<String, String> unique(NAryTree<String> tree) {
+        return new IndexedTree<>(tree, Function.identity(), IndexedTree.Mode.UNIQUE);
+    }
+
+    @Test
+    public void testFind() {
+        IndexedTree<String, String> tree = unique(new LinkedTree<>());
+        Position<String> b = setTree(tree);
+        assertEquals(b, tree.find("B"));
+        assertEquals("G", tree.find("G").getElement());
+        assertNull(tree.find("X"));
+        assertTrue(tree.contains("E"));
+        assertEquals(7, tree.size());
+    }
+
+    @Test
+    public void testExistingNodesAreIndexed() {
+        LinkedTree<String> plain = new LinkedTree<>();
+        Position<String> b = setTree(plain);
+        IndexedTree<String, String> tree = unique(plain);
+        assertEquals(b, tree.find("B"));
+        assertEquals(7, tree.size());
+    }
+
+    @Test
+    public void testUniqueRejectsDuplicates() {
+        IndexedTree<String, String> tree = unique(new LinkedTree<>());
+        Position<String> b = setTree(tree);
+        try {
+            tree.add("C", b);
+            fail("A repeated key has been added");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        try {
+            tree.replace(b, "C");
+            fail("A repeated key has been set");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        assertEquals(7, tree.size());
+        assertEquals(b, tree.find("B"));
+        // Replacing an element by itself keeps its key.
+        tree.replace(b, "B");
+        assertEquals(b, tree.find("B"));
+    }
+
+    @Test
+    public void testReplaceAndSwap() {
+        IndexedTree<String, String> tree = unique(new LinkedTree<>());
+        Position<String> b = setTree(tree);
+        tree.replace(b, "X");
+        assertNull(tree.find("B"));
+        assertEquals(b, tree.find("X"));
+        Position<String> g = tree.find("G");
+        tree.swapElements(b, g);
+        assertEquals(g, tree.find("X"));
+        assertEquals(b, tree.find("G"));
+    }
+
+    @Test
+    public void testRemoveSubtree() {
+        IndexedTree<String, String> tree = unique(new LinkedTree<>());
+        Position<String> b = setTree(tree);
+        tree.remove(b);
+        assertNull(tree.find("B"));
+        assertNull(tree.find("E"));
+        assertNull(tree.find("F"));
+        assertNotNull(tree.find("G"));
+        tree.removeChild(tree.root(), 1);
+        assertNull(tree.find("D"));
+        assertNull(tree.find("G"));
+        assertEquals(2, tree.size());
+        // Removed keys can be used again.
+        tree.add("B", tree.root());
+        assertEquals("B", tree.find("B").getElement());
+    }
+
+    @Test
+    public void testAttach() {
+        List<Supplier<NAryTree<String>>> implementations = List.of(LinkedTree::new, ArrayTree::new);
+        for (Supplier<NAryTree<String>> implementation : implementations) {
+            IndexedTree<String, String> tree = unique(implementation.get());
+            Position<String> b = setTree(tree);
+            NAryTree<String> other = implementation.get();
+            Position<String> x = other.addRoot("X");
+            other.add("Y", x);
+            tree.attach(b, other);
+            assertEquals(9, tree.size());
+            assertEquals(b, tree.parent(tree.find("X")));
+            assertEquals("Y", tree.find("Y").getElement());
+            assertEquals(tree.find("X"), tree.parent(tree.find("Y")));
+
+            NAryTree<String> repeated = implementation.get();
+            Position<String> z = repeated.addRoot("Z");
+            repeated.add("A", z);
+            try {
+                tree.attach(b, repeated);
+                fail("A tree with a repeated key has been attached");
+            } catch (RuntimeException e) {
+                assertTrue(true);
+            }
+            assertEquals(9, tree.size());
+            assertNull(tree.find("Z"));
+        }
+    }
+
+    @Test
+    public void testAttachIndexedTree() {
+        IndexedTree<String, String> tree = unique(new LinkedTree<>());
+        Position<String> b = setTree(tree);
+        IndexedTree<String, String> other = unique(new LinkedTree<>());
+        other.add("Y", other.addRoot("X"));
+        tree.attach(b, other);
+        assertEquals(b, tree.parent(tree.find("X")));
+        assertEquals(9, tree.size());
+    }
+
+    @Test
+    public void testMulti() {
+        IndexedTree<String, Character> tree = new IndexedTree<>(new LinkedTree<>(), s -> s.charAt(0), IndexedTree.Mode.MULTI);
+        Position<String> root = tree.addRoot("root");
+        Position<String> r1 = tree.add("red", root);
+        Position<String> r2 = tree.add("rose", r1);
+        Position<String> b = tree.add("blue", root);
+        Set<Position<String>> expected = new HashSet<>();
+        expected.add(root);
+        expected.add(r1);
+        expected.add(r2);
+        assertEquals(expected, new HashSet<>(tree.findAll('r')));
+        assertEquals(b, tree.find('b'));
+
+        tree.remove(r1);
+        assertEquals(1, tree.findAll('r').size());
+        tree.replace(b, "rust");
+        assertEquals(2, tree.findAll('r').size());
+        assertFalse(tree.contains('b'));
+        assertTrue(tree.findAll('b').isEmpty());
+    }
+}
@@ -0,0 +1,106 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.PrimitiveIterator;
+
+
+/**
+ * This class is a test class for the IntArrayTree class.
+ */
+public class IntArrayTreeTest {
+
+    private IntArrayTree tree = new IntArrayTree();
+
+    public void setTree() {
+
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+    }
+
+    private String elements(PrimitiveIterator.OfInt it) {
+        StringBuilder s = new StringBuilder();
+        while (it.hasNext()) {
+            s.append(it.nextInt());
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void testPrimitiveIterators() {
+        this.setTree();
+        assertEquals("123456789101112", elements(this.tree.intIterator()));
+        assertEquals("123567891011124", elements(this.tree.intIteratorPreOrden()));
+        assertEquals("257910111286341", elements(this.tree.intIteratorPostOrden()));
+    }
+
+    @Test
+    public void testGetAndReplace() {
+        Position<Integer> p = this.tree.addRoot(1);
+        Position<Integer> q = this.tree.add(2, p);
+        Position<Integer> r = this.tree.add(3, p, 0);
+        assertEquals(2, this.tree.getInt(q));
+        assertEquals(2, this.tree.replace(q, 20));
+        assertEquals(20, this.tree.getInt(q));
+        assertEquals(Integer.valueOf(20), q.getElement());
+        this.tree.swapElements(p, r);
+        assertEquals("3120", elements(this.tree.intIterator()));
+    }
+
+    @Test
+    public void testBoxedInterface() {
+        NAryTree<Integer> boxed = this.tree;
+        Position<Integer> p = boxed.addRoot(Integer.valueOf(7));
+        boxed.add(Integer.valueOf(8), p);
+        assertEquals(Integer.valueOf(7), boxed.replace(p, Integer.valueOf(9)));
+        assertEquals("98", elements(this.tree.intIteratorPreOrden()));
+    }
+
+    @Test
+    public void testRemoveAndSubTree() {
+        this.setTree();
+        Position<Integer> p1 = null;
+        for (Position<Integer> pos : this.tree) {
+            if (this.tree.getInt(pos) == 6) {
+                p1 = pos;
+            }
+        }
+        IntArrayTree sub = (IntArrayTree) this.tree.subTree(p1);
+        assertEquals("6789101112", elements(sub.intIteratorPreOrden()));
+        this.tree.remove(p1);
+        assertEquals(5, this.tree.size());
+        assertEquals("12345", elements(this.tree.intIterator()));
+    }
+
+    @Test
+    public void testNullElement() {
+        NAryTree<Integer> boxed = this.tree;
+        Position<Integer> p = boxed.addRoot(7);
+        try {
+            boxed.add(null, p);
+            fail("Null elements cannot be stored");
+        } catch (RuntimeException e) {
+        }
+        try {
+            boxed.replace(p, null);
+            fail("Null elements cannot be stored");
+        } catch (RuntimeException e) {
+        }
+        assertEquals(1, this.tree.size());
+        assertEquals("7", elements(this.tree.intIteratorPreOrden()));
+    }
+}
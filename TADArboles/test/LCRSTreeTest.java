@@ -3,6 +3,11 @@ import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
 import javax.swing.tree.TreeNode;
 
 
@@ -136,7 +141,7 @@ public class LCRSTreeTest {
         this.tree.add(400, h);
         this.tree.add(500, h);
         this.tree.remove(h);
-        assertEquals(this.tree.size(), 4);
+        assertEquals(this.tree.size(), 2);
 
     }
 
@@ -313,7 +318,7 @@ public class LCRSTreeTest {
     }
 
     @Test
-    public void testReplacePreOrden() { //acuerdate de cambiar el metodo del iterator
+    public void testReplacePreOrden() {
         Position<Integer> p = tree.addRoot(1);
         tree.add(2, p);
         Position<Integer> p1 = tree.add(3, p);
@@ -334,14 +339,15 @@ public class LCRSTreeTest {
         this.tree.replace(p3, -4);
 
         StringBuilder salida = new StringBuilder();
-        for (Position<Integer> e : this.tree) {
-            salida.append(e.getElement());
+        Iterator<Position<Integer>> it = this.tree.iteratorPreOrden();
+        while (it.hasNext()) {
+            salida.append(it.next().getElement());
         }
         assertEquals(salida.toString(), "-12-25-37-491011124");
     }
 
     @Test
-    public void testReplacePostOrden() {    //acuerdate de cambiar el metodo del iterator
+    public void testReplacePostOrden() {
         Position<Integer> p = tree.addRoot(1);
         tree.add(2, p);
         Position<Integer> p1 = tree.add(3, p);
@@ -362,9 +368,381 @@ public class LCRSTreeTest {
         this.tree.replace(p3, -4);
 
         StringBuilder salida = new StringBuilder();
-        for (Position<Integer> e : this.tree) {
-            salida.append(e.getElement());
+        Iterator<Position<Integer>> it = this.tree.iteratorPostOrden();
+        while (it.hasNext()) {
+            salida.append(it.next().getElement());
         }
         assertEquals(salida.toString(), "2579101112-4-3-24-1");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIteratorsStayInsideSubTree() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> p1 = tree.add(2, p);
+        tree.add(3, p1);
+        tree.add(4, p1);
+        tree.add(5, p);
+
+        LCRSTree<Integer> sub = (LCRSTree<Integer>) this.tree.subTree(p1);
+        StringBuilder pre = new StringBuilder();
+        Iterator<Position<Integer>> it = sub.iteratorPreOrden();
+        while (it.hasNext()) {
+            pre.append(it.next().getElement());
+        }
+        StringBuilder post = new StringBuilder();
+        it = sub.iteratorPostOrden();
+        while (it.hasNext()) {
+            post.append(it.next().getElement());
+        }
+        assertEquals("234", pre.toString());
+        assertEquals("342", post.toString());
+    }
+
+    @Test
+    public void testDeepChain() {
+        // Built from the bottom up, attaching the chain under a new root each time,
+        // so that every step only updates the subtree size of that root.
+        Position<Integer> middle = null;
+        for (int i = 500000 - 1; i >= 0; i--) {
+            LCRSTree<Integer> top = new LCRSTree<>();
+            Position<Integer> p = top.addRoot(i);
+            if (!this.tree.isEmpty()) {
+                top.attach(p, this.tree);
+            }
+            this.tree = top;
+            if (i == 250000) {
+                middle = p;
+            }
+        }
+        assertEquals(250000, this.tree.subtreeSize(middle));
+        assertEquals(250000, ((LCRSTree<Integer>) this.tree.subTree(middle)).size());
+        int count = 0;
+        Iterator<Position<Integer>> it = this.tree.iteratorPostOrden();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(500000, count);
+        this.tree.remove(middle);
+        assertEquals(250000, this.tree.size());
+        assertEquals(250000, this.tree.subtreeSize(this.tree.root()));
+    }
+
+    @Test
+    public void testAttach() {
+        Position<Integer> p = this.tree.addRoot(1);
+        this.tree.add(2, p);
+        LCRSTree<Integer> other = new LCRSTree<>();
+        Position<Integer> q = other.addRoot(3);
+        other.add(4, q);
+        this.tree.attach(p, other);
+
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : this.tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals("1234", s.toString());
+        assertEquals(4, this.tree.size());
+        assertEquals(4, this.tree.subtreeSize(p));
+        assertEquals(2, this.tree.subtreeSize(q));
+        assertEquals(p, this.tree.parent(q));
+    }
+
+    @Test
+    public void testAppendAfterRemovingLastChild() {
+        Position<Integer> p = this.tree.addRoot(1);
+        this.tree.add(2, p);
+        Position<Integer> last = this.tree.add(3, p);
+        this.tree.remove(last);
+        Position<Integer> four = this.tree.add(4, p);
+        this.tree.add(5, p, 2);
+        this.tree.add(6, p);
+        Position<Integer> only = this.tree.add(7, four);
+        this.tree.remove(only);
+        this.tree.add(8, four);
+
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : this.tree.children(p)) {
+            s.append(pos.getElement());
+        }
+        assertEquals("2456", s.toString());
+        assertEquals(6, this.tree.size());
+        assertEquals("8", this.tree.children(four).iterator().next().getElement().toString());
+    }
+
+    @Test
+    public void testAddOutOfRange() {
+        Position<Integer> p = this.tree.addRoot(1);
+        try {
+            this.tree.add(2, p, 1);
+            fail("A child has been added at an unreachable position");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testChild() {
+        Position<Integer> p = this.tree.addRoot(1);
+        this.tree.add(2, p);
+        this.tree.add(3, p);
+        this.tree.add(4, p, 1);
+        assertEquals(Integer.valueOf(4), this.tree.child(p, 1).getElement());
+        this.tree.removeChild(p, 0);
+        assertEquals(Integer.valueOf(4), this.tree.child(p, 0).getElement());
+        assertEquals(Integer.valueOf(3), this.tree.child(p, 1).getElement());
+        assertEquals(3, this.tree.size());
+        try {
+            this.tree.child(p, 2);
+            fail("A child has been returned at an unreachable position");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testWideNode() {
+        Random random = new Random(5);
+        List<Position<Integer>> expected = new ArrayList<>();
+        Position<Integer> p = this.tree.addRoot(-1);
+        for (int i = 0; i < 3000; i++) {
+            expected.add(this.tree.add(i, p));
+        }
+        for (int i = 0; i < 3000; i++) {
+            int op = random.nextInt(4);
+            if (op == 0) {
+                int n = random.nextInt(expected.size() + 1);
+                expected.add(n, this.tree.add(3000 + i, p, n));
+            } else if (op == 1) {
+                int n = random.nextInt(expected.size());
+                this.tree.removeChild(p, n);
+                expected.remove(n);
+            } else if (op == 2) {
+                this.tree.remove(expected.remove(random.nextInt(expected.size())));
+            } else {
+                expected.add(this.tree.add(3000 + i, p));
+            }
+            int n = random.nextInt(expected.size());
+            assertEquals(expected.get(n), this.tree.child(p, n));
+        }
+        assertEquals(expected.size() + 1, this.tree.size());
+        assertEquals(expected, this.tree.children(p));
+    }
+
+    private static boolean walkUp(NAryTree<Integer> t, Position<Integer> v, Position<Integer> w) {
+        for (Position<Integer> p = w; p != null; p = t.parent(p)) {
+            if (p == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testIsAncestorCrowded() {
+        // Every insert goes into the same gap of labels, first at the front of
+        // a wide node and then down a chain, so the ranges around it are
+        // spread out again over and over.
+        Random random = new Random(7);
+        LCRSTree<Integer> t = new LCRSTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        Position<Integer> root = t.addRoot(0);
+        nodes.add(root);
+        for (int i = 0; i < 3000; i++) {
+            nodes.add(t.add(1, root, 0));
+        }
+        Position<Integer> p = t.child(root, 1500);
+        for (int i = 0; i < 3000; i++) {
+            p = t.add(2, p, 0);
+            nodes.add(p);
+        }
+        for (int i = 0; i < 500; i++) {
+            Position<Integer> gone = t.child(root, 1 + random.nextInt(1000));
+            t.remove(gone);
+            nodes.remove(gone);
+            nodes.add(t.add(3, root, 1 + random.nextInt(1000)));
+        }
+        // A tree larger than the one it joins keeps its labels, and the nodes
+        // of the smaller one are labelled around it.
+        LCRSTree<Integer> small = new LCRSTree<>();
+        Position<Integer> s = small.addRoot(4);
+        nodes.add(s);
+        nodes.add(small.add(5, s));
+        small.attach(s, t);
+        nodes.add(small.add(6, s, 1));
+        nodes.add(small.add(7, s));
+        for (int i = 0; i < 20000; i++) {
+            Position<Integer> v = nodes.get(random.nextInt(nodes.size()));
+            Position<Integer> w = nodes.get(random.nextInt(nodes.size()));
+            assertEquals(walkUp(small, v, w), small.isAncestor(v, w));
+            if (w != s) {
+                assertTrue(small.isAncestor(small.parent(w), w));
+                assertFalse(small.isAncestor(w, small.parent(w)));
+            }
+        }
+    }
+
+    @Test
+    public void testIsAncestor() {
+        Random random = new Random(3);
+        LCRSTree<Integer> t = new LCRSTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(0));
+        for (int i = 1; i < 3000; i++) {
+            Position<Integer> parent = nodes.get(random.nextInt(nodes.size()));
+            int op = random.nextInt(10);
+            if (op == 0 && t.subtreeSize(parent) < t.size() / 4) {
+                // Remove a subtree and attach it back somewhere else.
+                if (parent != t.root()) {
+                    Position<Integer> target = nodes.get(0);
+                    LCRSTree<Integer> moved = (LCRSTree<Integer>) t.subTree(parent);
+                    t.remove(parent);
+                    LCRSTree<Integer> other = new LCRSTree<>();
+                    Position<Integer> r = other.addRoot(i);
+                    other.attach(r, moved);
+                    t.attach(target, other);
+                    nodes.add(r);
+                }
+            } else if (op < 4) {
+                nodes.add(t.add(i, parent, 0));
+            } else {
+                nodes.add(t.add(i, parent));
+            }
+            if (i % 100 == 0) {
+                // Queries between changes see the labels every change keeps up.
+                Position<Integer> v = nodes.get(random.nextInt(nodes.size()));
+                Position<Integer> w = nodes.get(random.nextInt(nodes.size()));
+                assertEquals(walkUp(t, v, w), t.isAncestor(v, w));
+                // A subtree shares the labels of its nodes.
+                NAryTree<Integer> sub = t.subTree(v);
+                assertTrue(sub.isAncestor(v, v));
+                assertEquals(walkUp(t, v, w), t.isAncestor(v, w));
+            }
+        }
+        for (int i = 0; i < 20000; i++) {
+            Position<Integer> v = nodes.get(random.nextInt(nodes.size()));
+            Position<Integer> w = nodes.get(random.nextInt(nodes.size()));
+            assertEquals(walkUp(t, v, w), t.isAncestor(v, w));
+            assertTrue(t.isAncestor(t.root(), w));
+        }
+    }
+
+    @Test
+    public void testArena() {
+        LCRSTree.Arena arena = new LCRSTree.Arena(4);
+        LCRSTree<Integer> first = new LCRSTree<>(arena);
+        LCRSTree<Integer> second = new LCRSTree<>(arena);
+        Position<Integer> a = first.addRoot(1);
+        Position<Integer> b = first.add(2, a);
+        first.add(3, b);
+        Position<Integer> c = second.addRoot(4);
+        second.add(5, c);
+        assertEquals(5, arena.used());
+        assertEquals(3, first.size());
+
+        first.clear();
+        assertEquals(0, arena.used());
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        assertNull(second.root());
+        try {
+            first.add(6, b);
+            fail("A position of a cleared arena is still valid");
+        } catch (RuntimeException e) {
+        }
+
+        // The released nodes are reused and behave as new ones
+        for (int round = 0; round < 3; round++) {
+            Position<Integer> r = second.addRoot(10);
+            Position<Integer> x = second.add(11, r);
+            Position<Integer> y = second.add(12, r, 0);
+            Position<Integer> z = second.add(13, x);
+            assertEquals(4, second.size());
+            assertEquals(y, second.child(r, 0));
+            assertEquals(3, second.subtreeSize(r) - 1);
+            assertTrue(second.isAncestor(x, z));
+            assertFalse(second.isAncestor(y, z));
+            assertTrue(second.isLeaf(z));
+            arena.clear();
+            assertTrue(second.isEmpty());
+        }
+    }
+
+    @Test
+    public void testArenaAttach() {
+        LCRSTree.Arena arena = new LCRSTree.Arena();
+        LCRSTree<Integer> host = new LCRSTree<>(arena);
+        LCRSTree<Integer> guest = new LCRSTree<>(arena);
+        Position<Integer> a = host.addRoot(1);
+        Position<Integer> b = guest.addRoot(2);
+        Position<Integer> c = guest.add(3, b);
+        host.attach(a, guest);
+        assertEquals(3, host.size());
+        assertTrue(host.isAncestor(a, c));
+        NAryTree<Integer> sub = host.subTree(b);
+        assertEquals(2, sub.subtreeSize(sub.root()));
+
+        LCRSTree<Integer> other = new LCRSTree<>();
+        other.addRoot(4);
+        try {
+            host.attach(a, other);
+            fail("Trees with nodes from different arenas cannot be joined");
+        } catch (RuntimeException e) {
+        }
+
+        arena.clear();
+        assertTrue(sub.isEmpty());
+    }
+
+    @Test
+    public void testArenaRejectsOtherPositions() {
+        LCRSTree.Arena arena = new LCRSTree.Arena(4);
+        LCRSTree<Integer> first = new LCRSTree<>(arena);
+        LCRSTree<Integer> second = new LCRSTree<>(arena);
+        Position<Integer> a = first.addRoot(1);
+        Position<Integer> b = first.add(2, a);
+        try {
+            second.add(3, b);
+            fail("A position of another tree of the arena is valid");
+        } catch (RuntimeException e) {
+        }
+
+        // After the clear, second reuses the node of b, which is still stale
+        arena.clear();
+        Position<Integer> c = second.addRoot(3);
+        Position<Integer> d = second.add(4, c);
+        first.addRoot(5);
+        try {
+            first.replace(b, 99);
+            fail("A position of a cleared arena is still valid");
+        } catch (RuntimeException e) {
+        }
+        try {
+            first.add(5, b);
+            fail("A position of a cleared arena is still valid");
+        } catch (RuntimeException e) {
+        }
+        try {
+            b.getElement();
+            fail("A position of a cleared arena is still valid");
+        } catch (RuntimeException e) {
+        }
+        assertEquals(Integer.valueOf(4), d.getElement());
+        assertEquals(2, second.size());
+        assertEquals(2, second.subtreeSize(c));
+        try {
+            second.add(6, new LCRSTree<Integer>().addRoot(7));
+            fail("A position of a tree without an arena is valid");
+        } catch (RuntimeException e) {
+        }
+
+        // An invalid child number does not take a node from the arena
+        int used = arena.used();
+        try {
+            second.add(8, c, 5);
+            fail("The child number is out of range");
+        } catch (RuntimeException e) {
+        }
+        assertEquals(used, arena.used());
+    }
+}
@@ -1,5 +1,10 @@
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
 import junit.framework.TestCase;
 import material.Position;
 
@@ -287,4 +292,256 @@ public class LinkedTreeTest extends TestCase {
         }
         assertEquals(salida.toString(), "XBYDEZGWIJKL");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIteratorPreOrden() {
+        this.setTree();
+
+        StringBuilder s = new StringBuilder();
+        Iterator<Position<String>> it = this.tree.iteratorPreOrden();
+        while (it.hasNext()) {
+            s.append(it.next().getElement());
+        }
+        assertEquals(s.toString(), "ABCEFGHIJKLD");
+    }
+
+    @Test
+    public void testIteratorPostOrden() {
+        this.setTree();
+
+        StringBuilder s = new StringBuilder();
+        Iterator<Position<String>> it = this.tree.iteratorPostOrden();
+        while (it.hasNext()) {
+            s.append(it.next().getElement());
+        }
+        assertEquals(s.toString(), "BEGIJKLHFCDA");
+    }
+
+    @Test
+    public void testIteratorEmpty() {
+        assertFalse(this.tree.iterator().hasNext());
+        assertFalse(this.tree.iteratorPreOrden().hasNext());
+        assertFalse(this.tree.iteratorPostOrden().hasNext());
+    }
+
+    @Test
+    public void testDeepChain() {
+        // Built from the bottom up, attaching the chain under a new root each time,
+        // so that every step only updates the subtree size of that root.
+        Position<String> middle = null;
+        for (int i = 500000 - 1; i >= 0; i--) {
+            LinkedTree<String> top = new LinkedTree<>();
+            Position<String> p = top.addRoot("n");
+            if (!this.tree.isEmpty()) {
+                top.attach(p, this.tree);
+            }
+            this.tree = top;
+            if (i == 250000) {
+                middle = p;
+            }
+        }
+        assertEquals(250000, this.tree.subtreeSize(middle));
+        assertEquals(250000, ((LinkedTree<String>) this.tree.subTree(middle)).size());
+        int count = 0;
+        Iterator<Position<String>> it = this.tree.iteratorPostOrden();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(500000, count);
+        this.tree.remove(middle);
+        assertEquals(250000, this.tree.size());
+        assertEquals(250000, this.tree.subtreeSize(this.tree.root()));
+    }
+
+    @Test
+    public void testAttach() {
+        Position<String> p = this.tree.addRoot("A");
+        this.tree.add("B", p);
+        LinkedTree<String> other = new LinkedTree<>();
+        Position<String> q = other.addRoot("C");
+        other.add("D", q);
+        this.tree.attach(p, other);
+
+        StringBuilder s = new StringBuilder();
+        for (Position<String> pos : this.tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals("ABCD", s.toString());
+        assertEquals(4, this.tree.size());
+        assertEquals(4, this.tree.subtreeSize(p));
+        assertEquals(2, this.tree.subtreeSize(q));
+        assertEquals(p, this.tree.parent(q));
+    }
+
+    @Test
+    public void testWideNode() {
+        Position<String> p = this.tree.addRoot("R");
+        for (int i = 0; i < 3000; i++) {
+            this.tree.add(Integer.toString(i), p);
+        }
+        this.tree.add("X", p, 1500);
+        assertEquals("X", this.tree.child(p, 1500).getElement());
+        assertEquals("1500", this.tree.child(p, 1501).getElement());
+        this.tree.removeChild(p, 0);
+        assertEquals("1", this.tree.child(p, 0).getElement());
+        assertEquals("X", this.tree.child(p, 1499).getElement());
+        Position<String> last = this.tree.child(p, 2999);
+        assertEquals("2999", last.getElement());
+        this.tree.remove(last);
+        assertEquals(3000, this.tree.size());
+        assertEquals(3000, this.tree.subtreeSize(p));
+        Position<String> middle = this.tree.child(p, 1000);
+        this.tree.remove(middle);
+        assertEquals("1002", this.tree.child(p, 1000).getElement());
+        this.tree.add("Y", p, 1000);
+        assertEquals("Y", this.tree.child(p, 1000).getElement());
+
+        int count = 0;
+        for (Position<String> c : this.tree.children(p)) {
+            assertEquals(this.tree.child(p, count), c);
+            count++;
+        }
+        assertEquals(2999, count);
+    }
+
+    private static boolean walkUp(NAryTree<String> t, Position<String> v, Position<String> w) {
+        for (Position<String> p = w; p != null; p = t.parent(p)) {
+            if (p == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testIsAncestorCrowded() {
+        // Every insert goes into the same gap of labels, first at the front of
+        // a wide node and then down a chain, so the ranges around it are
+        // spread out again over and over.
+        Random random = new Random(7);
+        LinkedTree<String> t = new LinkedTree<>();
+        List<Position<String>> nodes = new ArrayList<>();
+        Position<String> root = t.addRoot("0");
+        nodes.add(root);
+        for (int i = 0; i < 3000; i++) {
+            nodes.add(t.add("1", root, 0));
+        }
+        Position<String> p = t.child(root, 1500);
+        for (int i = 0; i < 3000; i++) {
+            p = t.add("2", p, 0);
+            nodes.add(p);
+        }
+        for (int i = 0; i < 500; i++) {
+            Position<String> gone = t.child(root, 1 + random.nextInt(1000));
+            t.remove(gone);
+            nodes.remove(gone);
+            nodes.add(t.add("3", root, 1 + random.nextInt(1000)));
+        }
+        // A tree larger than the one it joins keeps its labels, and the nodes
+        // of the smaller one are labelled around it.
+        LinkedTree<String> small = new LinkedTree<>();
+        Position<String> s = small.addRoot("4");
+        nodes.add(s);
+        nodes.add(small.add("5", s));
+        small.attach(s, t);
+        nodes.add(small.add("6", s, 1));
+        nodes.add(small.add("7", s));
+        for (int i = 0; i < 20000; i++) {
+            Position<String> v = nodes.get(random.nextInt(nodes.size()));
+            Position<String> w = nodes.get(random.nextInt(nodes.size()));
+            assertEquals(walkUp(small, v, w), small.isAncestor(v, w));
+            if (w != s) {
+                assertTrue(small.isAncestor(small.parent(w), w));
+                assertFalse(small.isAncestor(w, small.parent(w)));
+            }
+        }
+    }
+
+    @Test
+    public void testIsAncestor() {
+        Random random = new Random(3);
+        LinkedTree<String> t = new LinkedTree<>();
+        List<Position<String>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(Integer.toString(0)));
+        for (int i = 1; i < 3000; i++) {
+            Position<String> parent = nodes.get(random.nextInt(nodes.size()));
+            int op = random.nextInt(10);
+            if (op == 0 && t.subtreeSize(parent) < t.size() / 4) {
+                // Remove a subtree and attach it back somewhere else.
+                if (parent != t.root()) {
+                    Position<String> target = nodes.get(0);
+                    LinkedTree<String> moved = (LinkedTree<String>) t.subTree(parent);
+                    t.remove(parent);
+                    LinkedTree<String> other = new LinkedTree<>();
+                    Position<String> r = other.addRoot(Integer.toString(i));
+                    other.attach(r, moved);
+                    t.attach(target, other);
+                    nodes.add(r);
+                }
+            } else if (op < 4) {
+                nodes.add(t.add(Integer.toString(i), parent, 0));
+            } else {
+                nodes.add(t.add(Integer.toString(i), parent));
+            }
+            if (i % 100 == 0) {
+                // Queries between changes see the labels every change keeps up.
+                Position<String> v = nodes.get(random.nextInt(nodes.size()));
+                Position<String> w = nodes.get(random.nextInt(nodes.size()));
+                assertEquals(walkUp(t, v, w), t.isAncestor(v, w));
+                // A subtree shares the labels of its nodes.
+                NAryTree<String> sub = t.subTree(v);
+                assertTrue(sub.isAncestor(v, v));
+                assertEquals(walkUp(t, v, w), t.isAncestor(v, w));
+            }
+        }
+        for (int i = 0; i < 20000; i++) {
+            Position<String> v = nodes.get(random.nextInt(nodes.size()));
+            Position<String> w = nodes.get(random.nextInt(nodes.size()));
+            assertEquals(walkUp(t, v, w), t.isAncestor(v, w));
+            assertTrue(t.isAncestor(t.root(), w));
+        }
+    }
+
+    @Test
+    public void testIsLeaf() {
+        Position<String> a = tree.addRoot("A");
+        assertTrue(tree.isLeaf(a));
+        assertFalse(tree.isInternal(a));
+        Position<String> b = tree.add("B", a);
+        assertFalse(tree.isLeaf(a));
+        assertTrue(tree.isInternal(a));
+        assertTrue(tree.isLeaf(b));
+        tree.remove(b);
+        assertTrue(tree.isLeaf(a));
+        tree.add("C", a, 0);
+        tree.removeChild(a, 0);
+        assertTrue(tree.isLeaf(a));
+        tree.add("D", a);
+        assertTrue(tree.isInternal(a));
+    }
+
+    @Test
+    public void testCompact() {
+        this.setTree();
+        Position<String> root = tree.root();
+        Position<String> c = tree.child(root, 1);
+        tree.remove(tree.child(root, 0));
+        tree.compact();
+        assertEquals(11, tree.size());
+        assertEquals(c, tree.child(root, 0));
+        Iterator<Position<String>> it = tree.iteratorPreOrden();
+        StringBuilder order = new StringBuilder();
+        while (it.hasNext()) {
+            order.append(it.next().getElement());
+        }
+        assertEquals("ACEFGHIJKLD", order.toString());
+        // The nodes can still grow after compacting
+        Position<String> d = tree.child(root, 1);
+        assertTrue(tree.isLeaf(d));
+        tree.add("M", d);
+        tree.add("N", tree.child(c, 0));
+        assertEquals(13, tree.size());
+        assertTrue(tree.isInternal(d));
+    }
+}
@@ -0,0 +1,65 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.PrimitiveIterator;
+
+
+/**
+ * This class is a test class for the LongArrayTree class.
+ */
+public class LongArrayTreeTest {
+
+    private LongArrayTree tree = new LongArrayTree();
+
+    private String elements(PrimitiveIterator.OfLong it) {
+        StringBuilder s = new StringBuilder();
+        while (it.hasNext()) {
+            s.append(it.nextLong()).append(' ');
+        }
+        return s.toString().trim();
+    }
+
+    @Test
+    public void testPrimitiveAccess() {
+        Position<Long> p = this.tree.addRoot(1L << 40);
+        Position<Long> q = this.tree.add(2L, p);
+        this.tree.add(3L, p, 0);
+        this.tree.add(4L, q);
+        assertEquals(2L, this.tree.getLong(q));
+        assertEquals(2L, this.tree.replace(q, 5L));
+        assertEquals("1099511627776 3 5 4", elements(this.tree.longIterator()));
+        assertEquals("1099511627776 3 5 4", elements(this.tree.longIteratorPreOrden()));
+        assertEquals("3 4 5 1099511627776", elements(this.tree.longIteratorPostOrden()));
+    }
+
+    @Test
+    public void testAttach() {
+        Position<Long> p = this.tree.addRoot(1L);
+        LongArrayTree other = new LongArrayTree();
+        Position<Long> q = other.addRoot(2L);
+        other.add(3L, q);
+        this.tree.attach(p, other);
+        assertEquals(3, this.tree.size());
+        assertEquals("1 2 3", elements(this.tree.longIteratorPreOrden()));
+    }
+
+    @Test
+    public void testNullElement() {
+        NAryTree<Long> boxed = this.tree;
+        Position<Long> p = boxed.addRoot(7L);
+        try {
+            boxed.add(null, p);
+            fail("Null elements cannot be stored");
+        } catch (RuntimeException e) {
+        }
+        try {
+            boxed.replace(p, null);
+            fail("Null elements cannot be stored");
+        } catch (RuntimeException e) {
+        }
+        assertEquals(1, this.tree.size());
+        assertEquals("7", elements(this.tree.longIteratorPreOrden()));
+    }
+}
@@ -0,0 +1,235 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * This class is a test class for the MeteredTree class.
+ */
+public class MeteredTreeTest {
+
+    private MeteredTree<String> tree = new MeteredTree<>(new LinkedTree<>(), 1);
+    private Position<String> a, b, c, d, e, f, g;
+
+    /**
+     *        A
+     *      / | \
+     *     B  C  D
+     *    / \    |
+     *   E   F   G
+     */
+    private void setTree() {
+        a = tree.addRoot("A");
+        b = tree.add("B", a);
+        c = tree.add("C", a);
+        d = tree.add("D", a);
+        e = tree.add("E", b);
+        f = tree.add("F", b, 1);
+        g = tree.add("G", d);
+    }
+
+    @Test
+    public void testCounts() {
+        setTree();
+        for (Position<String> p : tree.children(a)) {
+            tree.children(p);
+        }
+        tree.removeChild(a, 0);
+        tree.remove(g);
+
+        Map<MeteredTree.Operation, MeteredTree.Stats> stats = tree.snapshot();
+        assertEquals(7, stats.get(MeteredTree.Operation.ADD).count());
+        assertEquals(7, stats.get(MeteredTree.Operation.ADD).visits());
+        assertEquals(4, stats.get(MeteredTree.Operation.CHILDREN).count());
+        assertEquals(3 + 2 + 0 + 1, stats.get(MeteredTree.Operation.CHILDREN).visits());
+        assertEquals(2, stats.get(MeteredTree.Operation.REMOVE).count());
+        assertEquals(3 + 1, stats.get(MeteredTree.Operation.REMOVE).visits());
+        assertEquals(0, stats.get(MeteredTree.Operation.ATTACH).count());
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    public void testLatency() {
+        setTree();
+        MeteredTree.Stats add = tree.snapshot().get(MeteredTree.Operation.ADD);
+        assertEquals(7, add.timed());
+        long buckets = 0;
+        for (int i = 0; i < MeteredTree.BUCKETS; i++) {
+            buckets += add.bucket(i);
+        }
+        assertEquals(7, buckets);
+        assertTrue(add.meanNanos() > 0);
+        assertTrue(add.percentileNanos(50) <= add.percentileNanos(99));
+        assertTrue(add.percentileNanos(100) >= add.meanNanos());
+
+        MeteredTree.Stats attach = tree.snapshot().get(MeteredTree.Operation.ATTACH);
+        assertEquals(0, attach.timed());
+        assertEquals(0, attach.percentileNanos(99));
+    }
+
+    @Test
+    public void testSampling() {
+        MeteredTree<Integer> sampled = new MeteredTree<>(new LCRSTree<>(), 16);
+        Position<Integer> root = sampled.addRoot(0);
+        // The first call of each kind is timed
+        assertEquals(1, sampled.snapshot().get(MeteredTree.Operation.ADD).timed());
+        for (int i = 1; i < 10000; i++) {
+            sampled.add(i, root);
+        }
+        MeteredTree.Stats add = sampled.snapshot().get(MeteredTree.Operation.ADD);
+        assertEquals(10000, add.count());
+        assertTrue(add.timed() > 0);
+        assertTrue(add.timed() < add.count());
+        try {
+            new MeteredTree<>(new LinkedTree<Integer>(), 3);
+            fail("The sampling rate must be a power of two");
+        } catch (RuntimeException e) {
+        }
+    }
+
+    @Test
+    public void testIterator() {
+        setTree();
+        Iterator<Position<String>> it = tree.iterator();
+        it.next();
+        it.next();
+        assertEquals(1, tree.snapshot().get(MeteredTree.Operation.ITERATOR).count());
+        assertEquals(0, tree.snapshot().get(MeteredTree.Operation.ITERATOR).timed());
+        int visited = 2;
+        while (it.hasNext()) {
+            it.next();
+            visited++;
+        }
+        assertEquals(7, visited);
+        MeteredTree.Stats stats = tree.snapshot().get(MeteredTree.Operation.ITERATOR);
+        assertEquals(1, stats.count());
+        assertEquals(7, stats.visits());
+        assertFalse(it.hasNext());
+        assertEquals(1, tree.snapshot().get(MeteredTree.Operation.ITERATOR).count());
+
+        int count = 0;
+        for (Position<String> p : tree) {
+            count++;
+        }
+        assertEquals(7, count);
+        assertEquals(14, tree.snapshot().get(MeteredTree.Operation.ITERATOR).visits());
+
+        // A walk given up early is counted, and never adds more visits than
+        // it made
+        it = tree.iterator();
+        it.next();
+        it.next();
+        stats = tree.snapshot().get(MeteredTree.Operation.ITERATOR);
+        assertEquals(3, stats.count());
+        assertEquals(2, stats.timed());
+        assertTrue(stats.visits() <= 16);
+
+        MeteredTree<String> empty = new MeteredTree<>(new LinkedTree<>(), 1);
+        assertFalse(empty.iterator().hasNext());
+        stats = empty.snapshot().get(MeteredTree.Operation.ITERATOR);
+        assertEquals(1, stats.count());
+        assertEquals(0, stats.visits());
+        assertEquals(1, stats.timed());
+    }
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        setTree();
+        Runnable walks = () -> {
+            for (int i = 0; i < 1000; i++) {
+                for (Position<String> p : tree) {
+                    p.getElement();
+                }
+            }
+        };
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(walks);
+            threads[i].start();
+        }
+        walks.run();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        MeteredTree.Stats stats = tree.snapshot().get(MeteredTree.Operation.ITERATOR);
+        assertEquals(5000, stats.count());
+        assertEquals(5000 * 7, stats.visits());
+        assertEquals(5000, stats.timed());
+    }
+
+    @Test
+    public void testChildrenSampling() throws InterruptedException {
+        MeteredTree<Integer> sampled = new MeteredTree<>(new LinkedTree<>(), 16);
+        Position<Integer> root = sampled.addRoot(0);
+        sampled.add(1, root);
+        sampled.add(2, root);
+        for (int i = 0; i < 10000; i++) {
+            sampled.children(root);
+        }
+        // Every call is counted; the 625 timed ones, the first of every 16,
+        // stand for the visits of the rest
+        MeteredTree.Stats children = sampled.snapshot().get(MeteredTree.Operation.CHILDREN);
+        assertEquals(10000, children.count());
+        assertEquals(20000, children.visits());
+        assertEquals(625, children.timed());
+
+        // The calls of other threads are counted exactly too
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int k = 0; k < 10000; k++) {
+                    sampled.children(root);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        children = sampled.snapshot().get(MeteredTree.Operation.CHILDREN);
+        assertEquals(50000, children.count());
+        assertTrue(children.timed() > 625 && children.timed() < 50000);
+    }
+
+    @Test
+    public void testIteratorSampling() {
+        MeteredTree<String> sampled = new MeteredTree<>(new LinkedTree<>(), 16);
+        Position<String> root = sampled.addRoot("A");
+        for (int i = 0; i < 6; i++) {
+            sampled.add("B", root);
+        }
+        for (int walk = 0; walk < 100; walk++) {
+            for (Position<String> p : sampled) {
+                p.getElement();
+            }
+        }
+        // Every walk is counted, and the 7 followed ones, the first of every
+        // 16, stand for the visits of the rest
+        MeteredTree.Stats stats = sampled.snapshot().get(MeteredTree.Operation.ITERATOR);
+        assertEquals(100, stats.count());
+        assertEquals(7, stats.timed());
+        assertEquals(100 + 7 * 6 * 16, stats.visits());
+    }
+
+    @Test
+    public void testSubTreeAndAttach() {
+        setTree();
+        NAryTree<String> sub = tree.subTree(b);
+        sub.add("H", e);
+        assertEquals(8, tree.snapshot().get(MeteredTree.Operation.ADD).count());
+        assertEquals(3, tree.snapshot().get(MeteredTree.Operation.SUB_TREE).visits());
+
+        MeteredTree<String> other = new MeteredTree<>(new LinkedTree<>());
+        Position<String> x = other.addRoot("X");
+        other.add("Y", x);
+        tree.attach(c, other);
+        MeteredTree.Stats attach = tree.snapshot().get(MeteredTree.Operation.ATTACH);
+        assertEquals(1, attach.count());
+        assertEquals(2, attach.visits());
+        assertEquals(10, tree.size());
+    }
+}
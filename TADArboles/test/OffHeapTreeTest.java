@@ -0,0 +1,138 @@
+import material.Position;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+
+/**
+ * This class is a test class for the OffHeapTree class.
+ */
+public class OffHeapTreeTest {
+
+    private OffHeapTree<Integer> tree = new OffHeapTree<>(FixedWidthCodec.INTEGER);
+
+    @After
+    public void close() {
+        tree.close();
+    }
+
+    public void setTree() {
+
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+    }
+
+    private String elements(Iterator<Position<Integer>> it) {
+        StringBuilder s = new StringBuilder();
+        while (it.hasNext()) {
+            s.append(it.next().getElement());
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void testIterators() {
+        this.setTree();
+        assertEquals(12, this.tree.size());
+        assertEquals("123456789101112", elements(this.tree.iterator()));
+        assertEquals("123567891011124", elements(this.tree.iteratorPreOrden()));
+        assertEquals("257910111286341", elements(this.tree.iteratorPostOrden()));
+    }
+
+    @Test
+    public void testReplaceSwapAndAddN() {
+        Position<Integer> p = this.tree.addRoot(1);
+        Position<Integer> q = this.tree.add(3, p);
+        this.tree.add(2, p, 0);
+        assertEquals(Integer.valueOf(3), this.tree.replace(q, 4));
+        this.tree.swapElements(p, q);
+        assertEquals("421", elements(this.tree.iterator()));
+        assertEquals(p, this.tree.parent(q));
+    }
+
+    @Test
+    public void testRemoveReusesSlots() {
+        this.setTree();
+        Position<Integer> p = this.tree.root();
+        Position<Integer> c = this.tree.children(p).iterator().next();
+        long reserved = this.tree.reservedBytes();
+        for (int i = 0; i < 100000; i++) {
+            Position<Integer> leaf = this.tree.add(i, c);
+            this.tree.remove(leaf);
+        }
+        assertEquals(12, this.tree.size());
+        assertEquals(reserved, this.tree.reservedBytes());
+    }
+
+    @Test
+    public void testGrowsAcrossChunks() {
+        Position<Integer> root = this.tree.addRoot(0);
+        Position<Integer> p = root;
+        for (int i = 1; i < 300000; i++) {
+            p = this.tree.add(i, root);
+        }
+        assertEquals(300000, this.tree.subtreeSize(root));
+        OffHeapTree<Integer> sub = (OffHeapTree<Integer>) this.tree.subTree(p);
+        assertEquals(1, sub.size());
+        sub.close();
+        Iterator<Position<Integer>> it = this.tree.iteratorPostOrden();
+        assertEquals(Integer.valueOf(1), it.next().getElement());
+        this.tree.remove(p);
+        assertEquals(299999, this.tree.size());
+        assertEquals(299999, this.tree.subtreeSize(root));
+    }
+
+    @Test
+    public void testClosedTreeRejectsOperations() {
+        Position<Integer> p = this.tree.addRoot(1);
+        this.tree.close();
+        try {
+            this.tree.add(2, p);
+            fail("A closed tree has been modified");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testCodecTooWideIsRejected() {
+        FixedWidthCodec<Integer> wide = new FixedWidthCodec<Integer>() {
+            @Override
+            public int width() {
+                return 32768;
+            }
+
+            @Override
+            public void write(ByteBuffer buffer, int offset, Integer e) {
+            }
+
+            @Override
+            public Integer read(ByteBuffer buffer, int offset) {
+                return null;
+            }
+        };
+        try {
+            new OffHeapTree<>(wide);
+            fail("A chunk of records that does not fit in a buffer has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * This class is a test class for the PersistentTree class.
+ */
+public class PersistentTreeTest {
+
+    private PersistentTree<String> tree = new PersistentTree<>();
+
+    /**
+     *        A
+     *      / | \
+     *     B  C  D
+     *    / \    |
+     *   E   F   G
+     */
+    private Position<String> setTree() {
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        tree.add("C", a);
+        Position<String> d = tree.add("D", a);
+        tree.add("E", b);
+        tree.add("F", b);
+        tree.add("G", d);
+        return b;
+    }
+
+    private static String elements(Iterator<Position<String>> it) {
+        StringBuilder s = new StringBuilder();
+        while (it.hasNext()) {
+            s.append(it.next().getElement());
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void testIterators() {
+        setTree();
+        assertEquals("ABCDEFG", elements(tree.iterator()));
+        assertEquals("ABEFCDG", elements(tree.iteratorPreOrden()));
+        assertEquals("EFBCGDA", elements(tree.iteratorPostOrden()));
+        assertEquals(7, tree.size());
+        assertEquals(0, new PersistentTree<String>().size());
+        assertFalse(new PersistentTree<String>().iterator().hasNext());
+    }
+
+    @Test
+    public void testAddAt() {
+        Position<String> b = setTree();
+        tree.add("X", b, 1);
+        tree.add("Y", tree.root(), 0);
+        assertEquals("AYBEXFCDG", elements(tree.iteratorPreOrden()));
+        assertEquals(4, tree.subtreeSize(b));
+        assertEquals(9, tree.size());
+        assertEquals("X", tree.child(b, 1).getElement());
+        try {
+            tree.add("Z", b, 5);
+            fail("A child has been added at an unreachable position");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testSnapshotIsolation() {
+        Position<String> b = setTree();
+        PersistentTree<String> snapshot = tree.snapshot();
+        Position<String> e = tree.child(b, 0);
+
+        tree.add("H", e);
+        tree.replace(b, "b");
+        tree.remove(tree.child(tree.root(), 1));
+        assertEquals("AbEHFDG", elements(tree.iteratorPreOrden()));
+        assertEquals(7, tree.size());
+
+        assertEquals("ABEFCDG", elements(snapshot.iteratorPreOrden()));
+        assertEquals(7, snapshot.size());
+        assertEquals(3, snapshot.subtreeSize(b));
+        assertTrue(snapshot.isLeaf(e));
+        assertEquals(4, tree.subtreeSize(b));
+
+        // Changing the snapshot does not change the tree.
+        snapshot.add("S", snapshot.root());
+        assertEquals(8, snapshot.size());
+        assertEquals(7, tree.size());
+        assertEquals("AbEHFDG", elements(tree.iteratorPreOrden()));
+    }
+
+    @Test
+    public void testIteratorIgnoresLaterChanges() {
+        setTree();
+        Iterator<Position<String>> it = tree.iteratorPreOrden();
+        Iterator<Position<String>> snapshot = tree.snapshot().iteratorPreOrden();
+        tree.remove(tree.child(tree.root(), 0));
+        tree.add("X", tree.root());
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(7, count);
+        assertEquals("ABEFCDG", elements(snapshot));
+        assertEquals("ACDGX", elements(tree.iteratorPreOrden()));
+    }
+
+    @Test
+    public void testRemove() {
+        Position<String> b = setTree();
+        Position<String> e = tree.child(b, 0);
+        PersistentTree<String> snapshot = tree.snapshot();
+        tree.remove(b);
+        assertEquals("ACDG", elements(tree.iteratorPreOrden()));
+        assertEquals(4, tree.size());
+        try {
+            tree.add("H", e);
+            fail("A node has been added below a removed one");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+        // The removed node is still there in the snapshot.
+        assertEquals(b, snapshot.parent(e));
+
+        tree.remove(tree.root());
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.size());
+        tree.addRoot("Z");
+        assertEquals("Z", tree.root().getElement());
+        assertEquals(7, snapshot.size());
+    }
+
+    @Test
+    public void testSwapElements() {
+        Position<String> b = setTree();
+        PersistentTree<String> snapshot = tree.snapshot();
+        tree.swapElements(b, tree.root());
+        assertEquals("BAEFCDG", elements(tree.iteratorPreOrden()));
+        assertEquals("ABEFCDG", elements(snapshot.iteratorPreOrden()));
+    }
+
+    @Test
+    public void testSubTree() {
+        Position<String> b = setTree();
+        NAryTree<String> sub = tree.subTree(b);
+        assertEquals(b, sub.root());
+        assertNull(sub.parent(sub.root()));
+        assertEquals(3, sub.subtreeSize(sub.root()));
+        sub.add("X", sub.root());
+        assertEquals(4, sub.subtreeSize(sub.root()));
+        // The view is a version of its own.
+        assertEquals(3, tree.subtreeSize(b));
+        assertEquals(7, tree.size());
+        // The nodes outside the subtree are not part of it.
+        Position<String> c = tree.child(tree.root(), 1);
+        try {
+            sub.subtreeSize(c);
+            fail("A node outside the subtree has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        try {
+            sub.add("Y", tree.root());
+            fail("A node outside the subtree has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        assertEquals(4, sub.subtreeSize(sub.root()));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        Position<String> root = tree.addRoot("R");
+        int threads = 4;
+        int perThread = 2000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    tree.add("x", root);
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(1 + threads * perThread, tree.size());
+        int children = 0;
+        for (Position<String> c : tree.children(root)) {
+            children++;
+        }
+        assertEquals(threads * perThread, children);
+    }
+
+    @Test
+    public void testAttach() {
+        Position<String> b = setTree();
+        LinkedTree<String> other = new LinkedTree<>();
+        Position<String> x = other.addRoot("X");
+        other.add("Y", x);
+        other.add("Z", x);
+        PersistentTree<String> snapshot = tree.snapshot();
+        tree.attach(b, other);
+        assertEquals("ABEFXYZCDG", elements(tree.iteratorPreOrden()));
+        assertEquals(6, tree.subtreeSize(b));
+        assertEquals(3, tree.subtreeSize(tree.child(b, 2)));
+        assertEquals(10, tree.size());
+        assertEquals(7, snapshot.size());
+        assertEquals(3, other.size());
+        try {
+            tree.attach(b, tree);
+            fail("A tree has been attached to itself");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testManyVersions() {
+        Position<String> root = tree.addRoot("R");
+        List<PersistentTree<String>> versions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            tree.add(Integer.toString(i), root);
+            versions.add(tree.snapshot());
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(i + 2, versions.get(i).size());
+            assertEquals(Integer.toString(i), versions.get(i).child(root, i).getElement());
+        }
+    }
+
+    @Test
+    public void testSlotsAreReused() {
+        Position<String> root = tree.addRoot("R");
+        for (int round = 0; round < 1000; round++) {
+            Position<String> p = tree.add("A", root);
+            Position<String> q = tree.add("B", p);
+            PersistentTree<String> snapshot = tree.snapshot();
+            tree.remove(p);
+            assertEquals("B", snapshot.child(p, 0).getElement());
+            try {
+                tree.parent(q);
+                fail("A removed position is still valid");
+            } catch (RuntimeException e) {
+                assertTrue(true);
+            }
+        }
+        assertEquals(1, tree.size());
+        assertEquals(3, tree.capacity());
+
+        LinkedTree<String> other = new LinkedTree<>();
+        other.add("Y", other.addRoot("X"));
+        Position<String> a = tree.add("A", root);
+        tree.remove(a);
+        tree.attach(null, other);
+        assertEquals(3, tree.capacity());
+        assertEquals("X", tree.child(root, 0).getElement());
+        assertEquals("Y", tree.child(tree.child(root, 0), 0).getElement());
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    public void testEmptyTree() {
+        assertNull(tree.root());
+        LinkedTree<String> other = new LinkedTree<>();
+        other.addRoot("X");
+        try {
+            tree.attach(null, other);
+            fail("A tree has been attached to an empty tree");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        tree.addRoot("R");
+        tree.remove(tree.root());
+        assertNull(tree.root());
+        assertEquals(0, tree.capacity());
+    }
+
+    @Test
+    public void testInvalidPosition() {
+        setTree();
+        LinkedTree<String> other = new LinkedTree<>();
+        try {
+            tree.add("X", other.addRoot("Y"));
+            fail("A position of another tree has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        try {
+            tree.addRoot("X");
+            fail("A second root has been added");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+}
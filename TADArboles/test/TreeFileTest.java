@@ -0,0 +1,155 @@
+import material.Position;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * This class is a test class for the TreeFile and MappedTree classes.
+ */
+public class TreeFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LinkedTree<String> tree = new LinkedTree<>();
+
+    /**
+     *        A
+     *      / | \
+     *     B  C  D
+     *    / \    |
+     *   E   F   G
+     */
+    private void setTree() {
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        tree.add("C", a);
+        Position<String> d = tree.add("D", a);
+        tree.add("E", b);
+        tree.add("F", b);
+        tree.add("G", d);
+    }
+
+    private static <E> String preorder(Iterator<Position<E>> it) {
+        StringBuilder s = new StringBuilder();
+        while (it.hasNext()) {
+            s.append(it.next().getElement()).append(' ');
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        setTree();
+        Path path = folder.newFile().toPath();
+        TreeFile.write(tree, ElementCodec.STRING, path);
+
+        LinkedTree<String> linked = TreeFile.readLinkedTree(path, ElementCodec.STRING);
+        LCRSTree<String> lcrs = TreeFile.readLCRSTree(path, ElementCodec.STRING);
+        assertEquals(preorder(tree.iteratorPreOrden()), preorder(linked.iteratorPreOrden()));
+        assertEquals(preorder(tree.iteratorPostOrden()), preorder(lcrs.iteratorPostOrden()));
+        assertEquals(7, lcrs.size());
+        assertEquals(3, linked.subtreeSize(linked.child(linked.root(), 0)));
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        setTree();
+        Path path = folder.newFile().toPath();
+        TreeFile.write(tree, ElementCodec.STRING, path);
+        MappedTree<String> mapped = TreeFile.map(path, ElementCodec.STRING);
+
+        assertEquals(7, mapped.size());
+        assertEquals("A B C D E F G ", preorder(mapped.iterator()));
+        assertEquals("A B E F C D G ", preorder(mapped.iteratorPreOrden()));
+        Position<String> root = mapped.root();
+        assertTrue(mapped.isRoot(root));
+        assertEquals("A", root.getElement());
+        StringBuilder children = new StringBuilder();
+        for (Position<String> c : mapped.children(root)) {
+            children.append(c.getElement());
+            assertEquals(root, mapped.parent(c));
+        }
+        assertEquals("BCD", children.toString());
+        Position<String> d = mapped.child(root, 2);
+        assertEquals(2, mapped.subtreeSize(d));
+        assertTrue(mapped.isInternal(d));
+        assertTrue(mapped.isLeaf(mapped.child(d, 0)));
+        assertNull(mapped.parent(root));
+        assertEquals(Integer.valueOf(7), mapped.reduce(0, (acc, e) -> acc + 1, Integer::sum));
+    }
+
+    @Test
+    public void testMappedEmpty() throws IOException {
+        Path path = folder.newFile().toPath();
+        TreeFile.write(tree, ElementCodec.STRING, path);
+        MappedTree<String> mapped = TreeFile.map(path, ElementCodec.STRING);
+        assertTrue(mapped.isEmpty());
+        assertNull(mapped.root());
+        assertFalse(mapped.iterator().hasNext());
+        assertFalse(mapped.iteratorPreOrden().hasNext());
+    }
+
+    @Test
+    public void testElements() throws IOException {
+        Position<String> root = tree.addRoot("ñandú");
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            big.append((char) ('a' + i % 26));
+        }
+        tree.add(big.toString(), root);
+        tree.add("", root);
+        tree.add("€", root);
+        Path path = folder.newFile().toPath();
+        TreeFile.write(tree, ElementCodec.STRING, path);
+        LinkedTree<String> read = TreeFile.readLinkedTree(path, ElementCodec.STRING);
+        assertEquals(preorder(tree.iteratorPreOrden()), preorder(read.iteratorPreOrden()));
+    }
+
+    @Test
+    public void testLargeTree() throws IOException {
+        int n = 100000;
+        Random random = new Random(9);
+        ArrayTree<Integer> array = new ArrayTree<>();
+        List<Position<Integer>> positions = new ArrayList<>(n);
+        positions.add(array.addRoot(0));
+        for (int i = 1; i < n; i++) {
+            positions.add(array.add(i, positions.get(random.nextInt(i))));
+        }
+        Path path = folder.newFile().toPath();
+        TreeFile.write(array, ElementCodec.INTEGER, path);
+        assertEquals(TreeFile.dataOffset(n) + 4L * n, Files.size(path));
+
+        MappedTree<Integer> mapped = TreeFile.map(path, ElementCodec.INTEGER);
+        assertEquals(preorder(array.iteratorPreOrden()), preorder(mapped.iteratorPreOrden()));
+        assertEquals(preorder(array.iterator()), preorder(mapped.iterator()));
+        LCRSTree<Integer> lcrs = TreeFile.readLCRSTree(path, ElementCodec.INTEGER);
+        assertEquals(preorder(array.iteratorPostOrden()), preorder(lcrs.iteratorPostOrden()));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path path = folder.newFile().toPath();
+        TreeFile.write(tree, ElementCodec.STRING, path);
+        assertTrue(TreeFile.map(path, ElementCodec.STRING).isEmpty());
+        assertTrue(TreeFile.readLCRSTree(path, ElementCodec.STRING).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotATreeFile() throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, "not a tree at all, just some text".getBytes());
+        TreeFile.map(path, ElementCodec.STRING);
+    }
+}
@@ -0,0 +1,88 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+
+/**
+ * This class is a test class for the parallel reduce of the trees.
+ */
+public class TreeReductionTest {
+
+    private static final int N = 100000;
+
+    /**
+     * Builds a tree of N nodes where node i holds i and hangs from a node
+     * smaller than i, with the bulk builder of the tree: adding the nodes one
+     * by one takes time proportional to the depth of each of them.
+     */
+    private static <T extends NAryTree<Integer>> T build(BiFunction<List<Integer>, TreeTopology, T> builder,
+                                                         boolean deep, long seed) {
+        Random random = new Random(seed);
+        List<Integer> elements = new ArrayList<>(N);
+        int[] parents = new int[N];
+        parents[0] = -1;
+        elements.add(0);
+        for (int i = 1; i < N; i++) {
+            parents[i] = deep ? Math.max(0, i - 1 - random.nextInt(3)) : random.nextInt(i);
+            elements.add(i);
+        }
+        return builder.apply(elements, TreeTopology.fromParents(parents));
+    }
+
+    private void checkTree(NAryTree<Integer> tree) {
+        long sum = tree.reduce(0L, (acc, e) -> acc + e, Long::sum);
+        assertEquals((long) N * (N - 1) / 2, sum);
+        assertEquals(Integer.valueOf(N), tree.reduce(0, (acc, e) -> acc + 1, Integer::sum));
+
+    }
+
+    @Test
+    public void testSum() {
+        checkTree(build(LinkedTree::build, false, 1));
+        checkTree(build(LCRSTree::build, false, 2));
+        checkTree(build(ArrayTree::build, false, 3));
+    }
+
+    @Test
+    public void testKeepsPreorder() {
+        for (boolean deep : new boolean[]{false, true}) {
+            LinkedTree<Integer> tree = build(LinkedTree::build, deep, 4);
+            // Polynomial hash of the preorder sequence: {hash, 31^length}. It is
+            // associative but not commutative, so any reordering changes it.
+            long hash = 0;
+            Iterator<Position<Integer>> it = tree.iteratorPreOrden();
+            while (it.hasNext()) {
+                hash = hash * 31 + it.next().getElement();
+            }
+            long[] result = tree.reduce(new long[]{0, 1},
+                    (acc, e) -> new long[]{acc[0] * 31 + e, acc[1] * 31},
+                    (a, b) -> new long[]{a[0] * b[1] + b[0], a[1] * b[1]});
+            assertEquals(hash, result[0]);
+        }
+    }
+
+    @Test
+    public void testDeepTree() {
+        LCRSTree<Integer> tree = build(LCRSTree::build, true, 5);
+        long sum = tree.reduce(0L, (acc, e) -> acc + e, Long::sum);
+        assertEquals((long) N * (N - 1) / 2, sum);
+    }
+
+    @Test
+    public void testSubtree() {
+        LinkedTree<Integer> tree = new LinkedTree<>();
+        Position<Integer> root = tree.addRoot(1);
+        Position<Integer> child = tree.add(2, root);
+        tree.add(3, child);
+        tree.add(4, root);
+        assertEquals(Integer.valueOf(5), tree.reduce(child, 0, (acc, e) -> acc + e, Integer::sum));
+        assertEquals(Integer.valueOf(7), new LinkedTree<Integer>().reduce(7, (acc, e) -> acc + e, Integer::sum));
+    }
+}
@@ -0,0 +1,115 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+
+/**
+ * This class is a test class for the spliterator and the streams of the trees.
+ */
+public class TreeSpliteratorTest {
+
+    private static final int N = 50000;
+
+    private static <T extends NAryTree<Integer>> T build(T tree, boolean deep, long seed) {
+        Random random = new Random(seed);
+        List<Position<Integer>> positions = new ArrayList<>(N);
+        positions.add(tree.addRoot(0));
+        for (int i = 1; i < N; i++) {
+            int parent = deep ? i - 1 : random.nextInt(i);
+            positions.add(tree.add(i, positions.get(parent)));
+        }
+        return tree;
+    }
+
+    private static List<Integer> preorder(Iterator<Position<Integer>> it) {
+        List<Integer> elements = new ArrayList<>();
+        while (it.hasNext()) {
+            elements.add(it.next().getElement());
+        }
+        return elements;
+    }
+
+    /**
+     * Splits recursively, checking that the sizes are exact, and appends the
+     * elements of every part in order.
+     */
+    private static void splitAll(Spliterator<Position<Integer>> s, List<Integer> out, int depth) {
+        long size = s.estimateSize();
+        Spliterator<Position<Integer>> prefix = depth < 12 ? s.trySplit() : null;
+        if (prefix != null) {
+            assertEquals(size, prefix.estimateSize() + s.estimateSize());
+            splitAll(prefix, out, depth + 1);
+            splitAll(s, out, depth + 1);
+        } else {
+            int before = out.size();
+            s.forEachRemaining(p -> out.add(p.getElement()));
+            assertEquals(size, out.size() - before);
+        }
+    }
+
+    @Test
+    public void testStreamIsPreorder() {
+        LinkedTree<Integer> tree = build(new LinkedTree<>(), false, 1);
+        List<Integer> expected = preorder(tree.iteratorPreOrden());
+        assertEquals(expected, tree.stream().map(Position::getElement).collect(Collectors.toList()));
+        assertEquals(expected, tree.parallelStream().map(Position::getElement).collect(Collectors.toList()));
+        assertEquals((long) N * (N - 1) / 2, tree.parallelStream().mapToLong(Position::getElement).sum());
+    }
+
+    @Test
+    public void testSplit() {
+        LCRSTree<Integer> tree = build(new LCRSTree<>(), false, 2);
+        List<Integer> expected = preorder(tree.iteratorPreOrden());
+        Spliterator<Position<Integer>> s = tree.spliterator();
+        assertTrue(s.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        assertEquals(N, s.estimateSize());
+        Spliterator<Position<Integer>> prefix = s.trySplit();
+        assertNotNull(prefix);
+        assertTrue(prefix.estimateSize() > N / 64);
+        assertTrue(s.estimateSize() > N / 64);
+
+        List<Integer> elements = new ArrayList<>();
+        splitAll(prefix, elements, 0);
+        splitAll(s, elements, 0);
+        assertEquals(expected, elements);
+    }
+
+    @Test
+    public void testSplitAfterAdvance() {
+        ArrayTree<Integer> tree = build(new ArrayTree<>(), false, 3);
+        List<Integer> expected = preorder(tree.iteratorPreOrden());
+        Spliterator<Position<Integer>> s = tree.spliterator();
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(s.tryAdvance(p -> elements.add(p.getElement())));
+        }
+        splitAll(s, elements, 0);
+        assertEquals(expected, elements);
+    }
+
+    @Test
+    public void testChain() {
+        LinkedTree<Integer> tree = new LinkedTree<>();
+        Position<Integer> p = tree.addRoot(0);
+        for (int i = 1; i < 10000; i++) {
+            p = tree.add(i, p);
+        }
+        assertNull(tree.spliterator().trySplit());
+        assertEquals(9999 * 10000 / 2, tree.parallelStream().mapToInt(Position::getElement).sum());
+    }
+
+    @Test
+    public void testEmpty() {
+        LinkedTree<Integer> tree = new LinkedTree<>();
+        assertEquals(0, tree.stream().count());
+        assertNull(tree.spliterator().trySplit());
+    }
+}
@@ -0,0 +1,169 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+
+/**
+ * This class is a test class for the streaming tree writer and reader.
+ */
+public class TreeStreamTest {
+
+    private LinkedTree<String> tree = new LinkedTree<>();
+
+    /**
+     *        A
+     *      / | \
+     *     B  C  D
+     *    / \    |
+     *   E   F   G
+     */
+    private void setTree() {
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        tree.add("C", a);
+        Position<String> d = tree.add("D", a);
+        tree.add("E", b);
+        tree.add("F", b);
+        tree.add("G", d);
+    }
+
+    private static String preorder(Iterator<Position<String>> it) {
+        StringBuilder s = new StringBuilder();
+        while (it.hasNext()) {
+            s.append(it.next().getElement());
+        }
+        return s.toString();
+    }
+
+    /**
+     * Writes the events it receives as a string: "(A" for startNode, ")" for endNode.
+     */
+    private static class Recorder implements TreeHandler<String> {
+        private final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void startNode(String e) {
+            events.append('(').append(e);
+        }
+
+        @Override
+        public void endNode() {
+            events.append(')');
+        }
+    }
+
+    @Test
+    public void testEmit() throws IOException {
+        setTree();
+        Recorder recorder = new Recorder();
+        TreeEvents.emit(tree, recorder);
+        assertEquals("(A(B(E)(F))(C)(D(G)))", recorder.events.toString());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        setTree();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TreeStreamWriter<String> writer = new TreeStreamWriter<>(bytes, ElementCodec.STRING)) {
+            TreeEvents.emit(tree, writer);
+            TreeEvents.emit(tree, tree.child(tree.root(), 0), writer);
+        }
+
+        TreeStreamReader<String> reader = new TreeStreamReader<>(new ByteArrayInputStream(bytes.toByteArray()), ElementCodec.STRING);
+        TreeBuilder<String> builder = new TreeBuilder<>(new LCRSTree<>());
+        assertTrue(reader.read(builder));
+        assertTrue(builder.isComplete());
+        LCRSTree<String> copy = (LCRSTree<String>) builder.getTree();
+        assertEquals(preorder(tree.iteratorPreOrden()), preorder(copy.iteratorPreOrden()));
+        assertEquals(7, copy.size());
+
+        Recorder recorder = new Recorder();
+        assertTrue(reader.read(recorder));
+        assertEquals("(B(E)(F))", recorder.events.toString());
+        assertFalse(reader.read(recorder));
+    }
+
+    @Test
+    public void testDeepStream() throws IOException {
+        int n = 200000;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TreeStreamWriter<Integer> writer = new TreeStreamWriter<>(bytes, ElementCodec.INTEGER);
+        for (int i = 0; i < n; i++) {
+            writer.startNode(i);
+        }
+        for (int i = 0; i < n; i++) {
+            writer.endNode();
+        }
+        writer.close();
+
+        // A visitor that only keeps the current depth.
+        int[] depth = new int[2];
+        TreeHandler<Integer> visitor = new TreeHandler<Integer>() {
+            @Override
+            public void startNode(Integer e) {
+                assertEquals(depth[0], e.intValue());
+                depth[1] = Math.max(depth[1], ++depth[0]);
+            }
+
+            @Override
+            public void endNode() {
+                depth[0]--;
+            }
+        };
+        TreeStreamReader<Integer> reader = new TreeStreamReader<>(new ByteArrayInputStream(bytes.toByteArray()), ElementCodec.INTEGER);
+        assertTrue(reader.read(visitor));
+        assertEquals(0, depth[0]);
+        assertEquals(n, depth[1]);
+    }
+
+    @Test
+    public void testPipe() throws Exception {
+        setTree();
+        PipedInputStream in = new PipedInputStream();
+        PipedOutputStream out = new PipedOutputStream(in);
+        Thread producer = new Thread(() -> {
+            try (TreeStreamWriter<String> writer = new TreeStreamWriter<>(out, ElementCodec.STRING)) {
+                TreeEvents.emit(tree, writer);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        TreeBuilder<String> builder = new TreeBuilder<>(new ArrayTree<>());
+        new TreeStreamReader<>(in, ElementCodec.STRING).read(builder);
+        producer.join();
+        assertEquals("ABEFCDG", preorder(((ArrayTree<String>) builder.getTree()).iteratorPreOrden()));
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        setTree();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TreeStreamWriter<String> writer = new TreeStreamWriter<>(bytes, ElementCodec.STRING)) {
+            TreeEvents.emit(tree, writer);
+        }
+        byte[] data = bytes.toByteArray();
+        TreeStreamReader<String> reader = new TreeStreamReader<>(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 3)), ElementCodec.STRING);
+        try {
+            reader.read(new Recorder());
+            fail("A truncated stream was accepted");
+        } catch (EOFException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotATreeStream() throws IOException {
+        new TreeStreamReader<>(new ByteArrayInputStream("hello".getBytes()), ElementCodec.STRING);
+    }
+}
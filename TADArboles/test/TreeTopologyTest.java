@@ -0,0 +1,163 @@
+import material.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * This class is a test class for the TreeTopology class and the bulk builders.
+ */
+public class TreeTopologyTest {
+
+    /**
+     *        0
+     *      / | \
+     *     1  2  3
+     *    / \    |
+     *   4   5   6
+     */
+    private static final int[] PARENTS = {-1, 0, 0, 0, 1, 1, 3};
+    private static final List<String> ELEMENTS = Arrays.asList("A", "B", "C", "D", "E", "F", "G");
+
+    private static String preorder(Iterator<Position<String>> it) {
+        StringBuilder s = new StringBuilder();
+        while (it.hasNext()) {
+            s.append(it.next().getElement());
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void testFormats() {
+        TreeTopology parents = TreeTopology.fromParents(PARENTS);
+        TreeTopology edges = TreeTopology.fromEdges(7, new int[]{0, 0, 0, 1, 1, 3}, new int[]{1, 2, 3, 4, 5, 6});
+        // The same tree numbered in preorder: A B E F C D G.
+        TreeTopology preorder = TreeTopology.fromPreorder(new int[]{3, 2, 0, 0, 0, 1, 0});
+        assertEquals(0, parents.root());
+        assertEquals(3, parents.childCount(0));
+        assertEquals(5, parents.child(1, 1));
+        assertEquals(3, edges.parent(6));
+        assertEquals(5, preorder.parent(6));
+        assertEquals(Arrays.toString(new int[]{7, 3, 1, 2, 1, 1, 1}), Arrays.toString(parents.subtreeSizes()));
+        assertEquals(Arrays.toString(parents.subtreeSizes()), Arrays.toString(edges.subtreeSizes()));
+        assertEquals(Arrays.toString(new int[]{7, 3, 1, 1, 1, 2, 1}), Arrays.toString(preorder.subtreeSizes()));
+    }
+
+    @Test
+    public void testEdgesKeepOrder() {
+        TreeTopology t = TreeTopology.fromEdges(3, new int[]{0, 0}, new int[]{2, 1});
+        assertEquals(2, t.child(0, 0));
+        assertEquals(1, t.child(0, 1));
+    }
+
+    @Test
+    public void testBuild() {
+        TreeTopology t = TreeTopology.fromParents(PARENTS);
+        LinkedTree<String> linked = LinkedTree.build(ELEMENTS, t);
+        LCRSTree<String> lcrs = LCRSTree.build(ELEMENTS, t);
+        ArrayTree<String> array = ArrayTree.build(ELEMENTS, t);
+        assertEquals("ABEFCDG", preorder(linked.iteratorPreOrden()));
+        assertEquals("ABEFCDG", preorder(lcrs.iteratorPreOrden()));
+        assertEquals("ABEFCDG", preorder(array.iteratorPreOrden()));
+        assertEquals("EFBCGDA", preorder(lcrs.iteratorPostOrden()));
+        assertEquals(7, linked.size());
+        assertEquals(7, lcrs.size());
+        assertEquals(7, array.size());
+        assertEquals(3, linked.subtreeSize(linked.child(linked.root(), 0)));
+        assertEquals(2, lcrs.subtreeSize(lcrs.child(lcrs.root(), 2)));
+
+        // The built trees keep working as usual.
+        Position<String> d = lcrs.child(lcrs.root(), 2);
+        Position<String> h = lcrs.add("H", d);
+        assertEquals("ABEFCDGH", preorder(lcrs.iteratorPreOrden()));
+        assertEquals(8, lcrs.subtreeSize(lcrs.root()));
+        assertTrue(lcrs.isAncestor(d, h));
+        assertFalse(lcrs.isAncestor(lcrs.child(lcrs.root(), 0), h));
+        Position<String> b = linked.child(linked.root(), 0);
+        assertTrue(linked.isAncestor(b, linked.child(b, 1)));
+        assertFalse(linked.isAncestor(b, linked.child(linked.root(), 1)));
+        assertTrue(linked.isAncestor(linked.root(), linked.add("H", linked.child(b, 1))));
+        array.remove(array.child(array.root(), 0));
+        assertEquals("ACDG", preorder(array.iteratorPreOrden()));
+    }
+
+    @Test
+    public void testBuildPrimitives() {
+        TreeTopology t = TreeTopology.fromParents(PARENTS);
+        IntArrayTree ints = IntArrayTree.build(new int[]{0, 1, 2, 3, 4, 5, 6}, t);
+        LongArrayTree longs = LongArrayTree.build(new long[]{0, 1, 2, 3, 4, 5, 6}, t);
+        StringBuilder s = new StringBuilder();
+        ints.intIteratorPreOrden().forEachRemaining((int e) -> s.append(e));
+        longs.longIteratorPreOrden().forEachRemaining((long e) -> s.append(e));
+        assertEquals("01452360145236", s.toString());
+
+        try (OffHeapTree<Integer> offHeap = OffHeapTree.build(FixedWidthCodec.INTEGER, Arrays.asList(0, 1, 2, 3, 4, 5, 6), t)) {
+            assertEquals(7, offHeap.size());
+            assertEquals(3, offHeap.subtreeSize(offHeap.child(offHeap.root(), 0)));
+            assertEquals(Integer.valueOf(6), offHeap.child(offHeap.child(offHeap.root(), 2), 0).getElement());
+        }
+    }
+
+    @Test
+    public void testSameAsIncremental() {
+        int n = 20000;
+        Random random = new Random(3);
+        int[] parents = new int[n];
+        List<Integer> elements = new ArrayList<>(n);
+        LCRSTree<Integer> incremental = new LCRSTree<>();
+        List<Position<Integer>> positions = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            parents[i] = (i == 0) ? -1 : random.nextInt(i);
+            elements.add(i);
+            positions.add((i == 0) ? incremental.addRoot(i) : incremental.add(i, positions.get(parents[i])));
+        }
+        LCRSTree<Integer> built = LCRSTree.build(elements, TreeTopology.fromParents(parents));
+        Iterator<Position<Integer>> a = incremental.iteratorPreOrden();
+        Iterator<Position<Integer>> b = built.iteratorPreOrden();
+        while (a.hasNext()) {
+            Position<Integer> p = a.next();
+            Position<Integer> q = b.next();
+            assertEquals(p.getElement(), q.getElement());
+            assertEquals(incremental.subtreeSize(p), built.subtreeSize(q));
+        }
+        assertFalse(b.hasNext());
+    }
+
+    @Test
+    public void testEmpty() {
+        TreeTopology t = TreeTopology.fromParents(new int[0]);
+        assertTrue(LinkedTree.build(new ArrayList<String>(), t).isEmpty());
+        assertTrue(ArrayTree.build(new ArrayList<String>(), t).isEmpty());
+    }
+
+    @Test
+    public void testInvalid() {
+        int[][] parents = {{-1, -1}, {1, 0}, {-1, 2, 1}, {-1, 5}};
+        for (int[] p : parents) {
+            try {
+                TreeTopology.fromParents(p);
+                fail("Invalid parents " + Arrays.toString(p) + " were accepted");
+            } catch (RuntimeException e) {
+                assertTrue(true);
+            }
+        }
+        try {
+            TreeTopology.fromEdges(3, new int[]{0, 1}, new int[]{1, 1});
+            fail("A node with two parents was accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        try {
+            TreeTopology.fromPreorder(new int[]{2, 0});
+            fail("A node with missing children was accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+}